@@ -17,6 +17,7 @@ public class AllTests {
 	public static Test suite() {
 		TestSuite suite = new TestSuite("Tests for Equinox EventAdmin"); //$NON-NLS-1$
 		suite.addTestSuite(EventAdminTest.class);
+		suite.addTestSuite(AsyncEventDispatcherTest.class);
 		return suite;
 	}
 }
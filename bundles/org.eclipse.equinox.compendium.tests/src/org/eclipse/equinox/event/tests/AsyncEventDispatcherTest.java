@@ -0,0 +1,260 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.event.tests;
+
+import java.util.*;
+import junit.framework.TestCase;
+import org.eclipse.equinox.compendium.tests.Activator;
+import org.osgi.framework.*;
+import org.osgi.service.event.*;
+
+/*
+ * Tests the delivery of posted events. EventAdmin reads the dispatcher settings
+ * when it starts, so every test sets them and then starts the event bundle.
+ */
+public class AsyncEventDispatcherTest extends TestCase {
+	private static final String PROP_ASYNC_THREADS = "org.eclipse.equinox.event.async.threads"; //$NON-NLS-1$
+	private static final String PROP_ASYNC_QUEUE_CAPACITY = "org.eclipse.equinox.event.async.queueCapacity"; //$NON-NLS-1$
+	private static final String PROP_ASYNC_HANDLER_TIMEOUT = "org.eclipse.equinox.event.async.handlerTimeout"; //$NON-NLS-1$
+	private static final String TOPIC = "org/eclipse/equinox/event/tests/async"; //$NON-NLS-1$
+	private static final long TIMEOUT = 10000;
+
+	private EventAdmin eventAdmin;
+	private ServiceReference eventAdminReference;
+	private final List registrations = new ArrayList();
+	private final List gates = new ArrayList();
+
+	protected void tearDown() throws Exception {
+		for (Iterator i = gates.iterator(); i.hasNext();)
+			((Gate) i.next()).open();
+		for (Iterator i = registrations.iterator(); i.hasNext();)
+			((ServiceRegistration) i.next()).unregister();
+		if (eventAdminReference != null)
+			Activator.getBundleContext().ungetService(eventAdminReference);
+		Activator.getBundle(Activator.BUNDLE_EVENT).stop();
+		System.getProperties().remove(PROP_ASYNC_THREADS);
+		System.getProperties().remove(PROP_ASYNC_QUEUE_CAPACITY);
+		System.getProperties().remove(PROP_ASYNC_HANDLER_TIMEOUT);
+	}
+
+	/*
+	 * Ensures every handler receives the events of each posting thread in the
+	 * order they were posted, while several threads post at once.
+	 */
+	public void testOrderPerHandler() throws Exception {
+		startEventAdmin(4, 0, 0);
+		RecordingHandler[] handlers = new RecordingHandler[3];
+		for (int i = 0; i < handlers.length; i++)
+			handlers[i] = registerHandler(null);
+
+		final int posters = 4;
+		final int count = 200;
+		Thread[] threads = new Thread[posters];
+		for (int i = 0; i < posters; i++) {
+			final int poster = i;
+			threads[i] = new Thread("Poster " + i) { //$NON-NLS-1$
+				public void run() {
+					for (int seq = 0; seq < count; seq++)
+						eventAdmin.postEvent(createEvent(poster, seq));
+				}
+			};
+			threads[i].start();
+		}
+		for (int i = 0; i < posters; i++)
+			threads[i].join(TIMEOUT);
+
+		for (int i = 0; i < handlers.length; i++) {
+			List events = handlers[i].waitFor(posters * count);
+			assertEquals("Events received by handler " + i, posters * count, events.size()); //$NON-NLS-1$
+			int[] next = new int[posters];
+			for (Iterator j = events.iterator(); j.hasNext();) {
+				Event event = (Event) j.next();
+				int poster = ((Integer) event.getProperty("poster")).intValue(); //$NON-NLS-1$
+				int seq = ((Integer) event.getProperty("seq")).intValue(); //$NON-NLS-1$
+				assertEquals("Event of poster " + poster + " received by handler " + i, next[poster], seq); //$NON-NLS-1$ //$NON-NLS-2$
+				next[poster]++;
+			}
+		}
+	}
+
+	/*
+	 * Ensures a handler that takes long to return from an event does not hold
+	 * up the delivery to the other handlers.
+	 */
+	public void testSlowHandlerDoesNotDelayOthers() throws Exception {
+		startEventAdmin(2, 0, 0);
+		Gate gate = new Gate();
+		RecordingHandler slow = registerHandler(gate);
+		RecordingHandler fast = registerHandler(null);
+
+		for (int seq = 0; seq < 10; seq++)
+			eventAdmin.postEvent(createEvent(0, seq));
+
+		assertEquals("Events received by the fast handler", 10, fast.waitFor(10).size()); //$NON-NLS-1$
+		assertEquals("Events received by the slow handler", 1, slow.waitFor(1).size()); //$NON-NLS-1$
+
+		gate.open();
+		assertEquals("Events received by the slow handler", 10, slow.waitFor(10).size()); //$NON-NLS-1$
+	}
+
+	/*
+	 * Ensures a handler that does not return from an event within the handler
+	 * timeout is blacklisted: its queued events are dropped, it receives no more
+	 * posted events, and the other handlers are still served.
+	 */
+	public void testBlockedHandlerIsBlacklisted() throws Exception {
+		startEventAdmin(1, 0, 200);
+		Gate gate = new Gate();
+		RecordingHandler blocked = registerHandler(gate);
+		RecordingHandler other = registerHandler(null);
+
+		for (int seq = 0; seq < 5; seq++)
+			eventAdmin.postEvent(createEvent(0, seq));
+
+		// the only worker is stuck in the blocked handler until it is blacklisted
+		assertEquals("Events received by the other handler", 5, other.waitFor(5).size()); //$NON-NLS-1$
+		assertEquals("Events received by the blocked handler", 1, blocked.waitFor(1).size()); //$NON-NLS-1$
+
+		gate.open();
+		for (int seq = 5; seq < 10; seq++)
+			eventAdmin.postEvent(createEvent(0, seq));
+
+		assertEquals("Events received by the other handler", 10, other.waitFor(10).size()); //$NON-NLS-1$
+		assertEquals("Events received by the blacklisted handler", 1, blocked.size()); //$NON-NLS-1$
+
+		// synchronous delivery is not affected
+		eventAdmin.sendEvent(createEvent(0, 10));
+		assertEquals("Events sent to the blacklisted handler", 2, blocked.size()); //$NON-NLS-1$
+	}
+
+	/*
+	 * Ensures postEvent waits while the queue capacity is reached and returns
+	 * once the handler catches up.
+	 */
+	public void testPostEventWaitsAtQueueCapacity() throws Exception {
+		startEventAdmin(1, 2, 0);
+		Gate gate = new Gate();
+		RecordingHandler handler = registerHandler(gate);
+
+		// the first event is taken by the worker, the next two fill the queue
+		eventAdmin.postEvent(createEvent(0, 0));
+		handler.waitFor(1);
+		eventAdmin.postEvent(createEvent(0, 1));
+		eventAdmin.postEvent(createEvent(0, 2));
+
+		Thread poster = new Thread("Poster") { //$NON-NLS-1$
+			public void run() {
+				eventAdmin.postEvent(createEvent(0, 3));
+			}
+		};
+		poster.start();
+		poster.join(500);
+		assertTrue("postEvent did not wait for the full queue", poster.isAlive()); //$NON-NLS-1$
+
+		gate.open();
+		poster.join(TIMEOUT);
+		assertFalse("postEvent still waits for the drained queue", poster.isAlive()); //$NON-NLS-1$
+
+		List events = handler.waitFor(4);
+		assertEquals("Events received", 4, events.size()); //$NON-NLS-1$
+		for (int seq = 0; seq < 4; seq++)
+			assertEquals("Event received", new Integer(seq), ((Event) events.get(seq)).getProperty("seq")); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	private void startEventAdmin(int threads, int queueCapacity, int handlerTimeout) throws BundleException {
+		System.setProperty(PROP_ASYNC_THREADS, String.valueOf(threads));
+		System.setProperty(PROP_ASYNC_QUEUE_CAPACITY, String.valueOf(queueCapacity));
+		System.setProperty(PROP_ASYNC_HANDLER_TIMEOUT, String.valueOf(handlerTimeout));
+		Bundle bundle = Activator.getBundle(Activator.BUNDLE_EVENT);
+		bundle.stop();
+		bundle.start();
+		eventAdminReference = Activator.getBundleContext().getServiceReference(EventAdmin.class.getName());
+		eventAdmin = (EventAdmin) Activator.getBundleContext().getService(eventAdminReference);
+	}
+
+	private RecordingHandler registerHandler(Gate gate) {
+		Dictionary properties = new Hashtable();
+		properties.put(EventConstants.EVENT_TOPIC, TOPIC);
+		RecordingHandler handler = new RecordingHandler(gate);
+		registrations.add(Activator.getBundleContext().registerService(EventHandler.class.getName(), handler, properties));
+		if (gate != null)
+			gates.add(gate);
+		return handler;
+	}
+
+	static Event createEvent(int poster, int seq) {
+		Dictionary properties = new Hashtable();
+		properties.put("poster", new Integer(poster)); //$NON-NLS-1$
+		properties.put("seq", new Integer(seq)); //$NON-NLS-1$
+		return new Event(TOPIC, properties);
+	}
+
+	/*
+	 * Holds the threads passing it until it is opened.
+	 */
+	static class Gate {
+		private boolean open = false;
+
+		synchronized void open() {
+			open = true;
+			notifyAll();
+		}
+
+		synchronized void pass() {
+			while (!open) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+		}
+	}
+
+	/*
+	 * Records the events it receives; when it has a gate, it does not return
+	 * from an event before the gate is opened.
+	 */
+	static class RecordingHandler implements EventHandler {
+		private final List events = new ArrayList();
+		private final Gate gate;
+
+		RecordingHandler(Gate gate) {
+			this.gate = gate;
+		}
+
+		public void handleEvent(Event event) {
+			synchronized (this) {
+				events.add(event);
+				notifyAll();
+			}
+			if (gate != null)
+				gate.pass();
+		}
+
+		synchronized int size() {
+			return events.size();
+		}
+
+		/*
+		 * Waits until the handler received the number of events or the time is up.
+		 */
+		synchronized List waitFor(int count) throws InterruptedException {
+			long end = System.currentTimeMillis() + TIMEOUT;
+			long remaining = TIMEOUT;
+			while (events.size() < count && remaining > 0) {
+				wait(remaining);
+				remaining = end - System.currentTimeMillis();
+			}
+			return new ArrayList(events);
+		}
+	}
+}
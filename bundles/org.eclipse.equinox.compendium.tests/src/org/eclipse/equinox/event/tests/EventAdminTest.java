@@ -10,8 +10,7 @@
  *******************************************************************************/
 package org.eclipse.equinox.event.tests;
 
-import java.util.Dictionary;
-import java.util.Hashtable;
+import java.util.*;
 import junit.framework.TestCase;
 import org.eclipse.equinox.compendium.tests.Activator;
 import org.osgi.framework.*;
@@ -150,4 +149,107 @@ public class EventAdminTest extends TestCase {
 		assertNotNull("Did not receive event published to topic 'a/b/c/d' while listening to 'a/b/c/*'", handler.lastEvent()); //$NON-NLS-1$
 		handlerRegistration.unregister();
 	}
+
+	/*
+	 * Ensures escaped wildcards and parentheses in a handler filter are matched
+	 * literally.
+	 */
+	public void testEventFilterEscapes() throws InvalidSyntaxException {
+		assertFilter("(name=a\\*b)", "name", "a*b", true); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		assertFilter("(name=a\\*b)", "name", "axb", false); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		assertFilter("(name=a\\)b)", "name", "a)b", true); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		assertFilter("(name=a\\(b)", "name", "a(b", true); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		assertFilter("(name=a\\*b*)", "name", "a*bcd", true); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		assertFilter("(name=a\\*b*)", "name", "axbcd", false); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+	}
+
+	/*
+	 * Ensures white space around attributes is ignored while white space in
+	 * string values is significant.
+	 */
+	public void testEventFilterWhitespace() throws InvalidSyntaxException {
+		assertFilter("( name =x)", "name", "x", true); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		assertFilter("(& ( name=x ) ( count>=2 ) )", "name", "x", false); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		assertFilter("(name= x)", "name", "x", false); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		assertFilter("(name= x)", "name", " x", true); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		assertFilter("(count= 2 )", "count", new Integer(2), true); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	/*
+	 * Ensures approximate matches ignore case and white space.
+	 */
+	public void testEventFilterApprox() throws InvalidSyntaxException {
+		assertFilter("(name~=Hello World)", "name", "helloworld", true); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		assertFilter("(name~=Hello World)", "name", "hello", false); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+	}
+
+	/*
+	 * Ensures >= and <= compare String, Integer, Long and Boolean properties
+	 * as the framework filter does.
+	 */
+	public void testEventFilterOrdering() throws InvalidSyntaxException {
+		assertFilter("(name>=b)", "name", "c", true); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		assertFilter("(name>=b)", "name", "a", false); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		assertFilter("(name<=b)", "name", "a", true); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		assertFilter("(name<=b)", "name", "c", false); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		assertFilter("(count>=10)", "count", new Integer(10), true); //$NON-NLS-1$ //$NON-NLS-2$
+		assertFilter("(count>=10)", "count", new Integer(9), false); //$NON-NLS-1$ //$NON-NLS-2$
+		assertFilter("(count<=10)", "count", new Integer(11), false); //$NON-NLS-1$ //$NON-NLS-2$
+		assertFilter("(count>=abc)", "count", new Integer(3), false); //$NON-NLS-1$ //$NON-NLS-2$
+		assertFilter("(size>=5000000000)", "size", new Long(5000000001L), true); //$NON-NLS-1$ //$NON-NLS-2$
+		assertFilter("(size>=5000000000)", "size", new Long(4999999999L), false); //$NON-NLS-1$ //$NON-NLS-2$
+		assertFilter("(size<=5)", "size", new Long(5), true); //$NON-NLS-1$ //$NON-NLS-2$
+		// booleans are only compared for equality
+		assertFilter("(flag>=true)", "flag", Boolean.TRUE, true); //$NON-NLS-1$ //$NON-NLS-2$
+		assertFilter("(flag<=false)", "flag", Boolean.FALSE, true); //$NON-NLS-1$ //$NON-NLS-2$
+		assertFilter("(flag<=false)", "flag", Boolean.TRUE, false); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	/*
+	 * Ensures properties of other types, such as arrays and collections, are
+	 * matched by the framework filter.
+	 */
+	public void testEventFilterFrameworkFallback() throws InvalidSyntaxException {
+		assertFilter("(names=b)", "names", new String[] {"a", "b"}, true); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+		assertFilter("(names=b*)", "names", new String[] {"a", "bc"}, true); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+		assertFilter("(names=b)", "names", new Vector(Arrays.asList(new String[] {"a", "c"})), false); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+		assertFilter("(names=c)", "names", new Vector(Arrays.asList(new String[] {"a", "c"})), true); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+		assertFilter("(counts>=5)", "counts", new int[] {1, 7}, true); //$NON-NLS-1$ //$NON-NLS-2$
+		assertFilter("(counts>=5)", "counts", new int[] {1, 3}, false); //$NON-NLS-1$ //$NON-NLS-2$
+		assertFilter("(ratio>=1.5)", "ratio", new Double(2.0), true); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	/*
+	 * Ensures a filter the framework accepts in a form the compiled filters do
+	 * not parse is still matched. The framework reads an operator that is not
+	 * followed by a filter as part of the attribute name.
+	 */
+	public void testEventFilterUnsupportedSyntax() throws InvalidSyntaxException {
+		assertFilter("(&name=x)", "&name", "x", true); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		assertFilter("(&name=x)", "name", "x", false); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		assertFilter("(|name=*)", "|name", "x", true); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+	}
+
+	/*
+	 * Sends an event with the property to a handler registered with the filter
+	 * and checks it is delivered exactly when the framework filter matches it.
+	 */
+	private void assertFilter(String filter, String key, Object value, boolean expected) throws InvalidSyntaxException {
+		Dictionary properties = new Hashtable();
+		properties.put(EventConstants.EVENT_TOPIC, "a/b/c"); //$NON-NLS-1$
+		properties.put(EventConstants.EVENT_FILTER, filter);
+		BundleContext bundleContext = Activator.getBundleContext();
+		EventHandlerHelper handler = new EventHandlerHelper();
+		ServiceRegistration handlerRegistration = bundleContext.registerService(EventHandler.class.getName(), handler, properties);
+		try {
+			Dictionary eventProperties = new Hashtable();
+			eventProperties.put(key, value);
+			Event event = new Event("a/b/c", eventProperties); //$NON-NLS-1$
+			assertEquals("Framework filter " + filter + " on " + key + "=" + value, expected, event.matches(FrameworkUtil.createFilter(filter))); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			eventAdmin.sendEvent(event);
+			assertEquals("Delivery with filter " + filter + " on " + key + "=" + value, expected, handler.lastEvent() != null); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		} finally {
+			handlerRegistration.unregister();
+		}
+	}
 }
@@ -0,0 +1,314 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.equinox.internal.event;
+
+import java.security.Permission;
+import java.util.*;
+import org.eclipse.osgi.util.NLS;
+import org.osgi.service.event.Event;
+import org.osgi.service.log.LogService;
+
+/**
+ * Delivers posted events on a pool of worker threads.
+ * <p>
+ * Every handler has its own queue of events, which is served by at most one worker
+ * at a time, so a handler receives events in the order they were posted while
+ * different handlers receive them in parallel. The queues waiting for a worker are
+ * served in turn, one event each, so a handler receiving many events does not hold
+ * up the others.
+ * </p>
+ * <p>
+ * When a capacity is set, publishers wait while that many deliveries are queued.
+ * Workers posting events never wait, as the queues could then never drain. When
+ * a timeout is set, a handler that does not return from an event in time is
+ * blacklisted: its queued events are dropped, it receives no more asynchronous
+ * events, and another worker takes the place of the blocked one.
+ * </p>
+ */
+public class AsyncEventDispatcher {
+	private final ThreadGroup group;
+	private final LogService log;
+	private final int threads;
+	private final int capacity; // 0 if unbounded
+	private final long timeout; // 0 if handlers are never blacklisted
+
+	// guarded by this
+	private final Map<EventHandlerWrapper, HandlerQueue> queues = new IdentityHashMap<EventHandlerWrapper, HandlerQueue>();
+	private final LinkedList<HandlerQueue> ready = new LinkedList<HandlerQueue>(); // queues with events and no worker
+	private final List<HandlerQueue> running = new ArrayList<HandlerQueue>(); // queues being served by a worker
+	private int workers = 0; // workers not abandoned to a blocked handler
+	private int idleWorkers = 0;
+	private int waitingPublishers = 0;
+	private int workerCount = 0; // for the thread names
+	private boolean stopped = false;
+	private Thread watchdog = null;
+	private final Object watchdogLock = new Object(); // the watchdog sleeps on it, so posting events does not wake it
+
+	// metrics, guarded by this
+	private int queueDepth = 0;
+	private int maxQueueDepth = 0;
+	private long blockedPublishes = 0;
+	private int blacklistedHandlers = 0;
+
+	// an event with the permission the handlers must have to receive it
+	private static final class Delivery {
+		final Event event;
+		final Permission perm;
+
+		Delivery(Event event, Permission perm) {
+			this.event = event;
+			this.perm = perm;
+		}
+	}
+
+	private static final class HandlerQueue {
+		final EventHandlerWrapper handler;
+		final LinkedList<Delivery> deliveries = new LinkedList<Delivery>();
+		Worker worker; // serving the queue, or null
+		long started; // when the worker called the handler
+		Event current;
+
+		HandlerQueue(EventHandlerWrapper handler) {
+			this.handler = handler;
+		}
+	}
+
+	/**
+	 * @param group the thread group of the workers
+	 * @param log the log
+	 * @param threads the number of workers
+	 * @param capacity the number of queued deliveries at which publishers wait, or 0
+	 * @param timeout the time in milliseconds after which a handler is blacklisted, or 0
+	 */
+	public AsyncEventDispatcher(ThreadGroup group, LogService log, int threads, int capacity, long timeout) {
+		this.group = group;
+		this.log = log;
+		this.threads = Math.max(threads, 1);
+		this.capacity = Math.max(capacity, 0);
+		this.timeout = Math.max(timeout, 0);
+	}
+
+	/**
+	 * Queues the event for the given handlers.
+	 *
+	 * @param handlers the handlers
+	 * @param event the event
+	 * @param perm the permission the handlers must have, or <code>null</code>
+	 */
+	public synchronized void dispatch(EventHandlerWrapper[] handlers, Event event, Permission perm) {
+		if (capacity > 0 && queueDepth >= capacity && !(Thread.currentThread() instanceof Worker)) {
+			blockedPublishes++;
+			boolean interrupted = false;
+			waitingPublishers++;
+			while (!stopped && queueDepth >= capacity) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			waitingPublishers--;
+			if (interrupted)
+				Thread.currentThread().interrupt();
+		}
+		if (stopped)
+			return;
+
+		Delivery delivery = new Delivery(event, perm);
+		int readied = 0;
+		for (EventHandlerWrapper handler : handlers) {
+			if (handler.isBlacklisted())
+				continue;
+			HandlerQueue queue = queues.get(handler);
+			if (queue == null) {
+				queue = new HandlerQueue(handler);
+				queues.put(handler, queue);
+			}
+			if (queue.worker == null && queue.deliveries.isEmpty()) {
+				ready.addLast(queue);
+				readied++;
+			}
+			queue.deliveries.addLast(delivery);
+			queueDepth++;
+		}
+		if (queueDepth > maxQueueDepth)
+			maxQueueDepth = queueDepth;
+		if (idleWorkers < ready.size() && workers < threads)
+			startWorker();
+		if (waitingPublishers > 0) {
+			// a single notification could wake a publisher instead of a worker
+			if (readied > 0)
+				notifyAll();
+		} else {
+			// wake one idle worker for every queue that needs one
+			for (int i = 0; i < readied && i < idleWorkers; i++)
+				notify();
+		}
+	}
+
+	/**
+	 * Stops the workers. The queued events are dropped.
+	 */
+	public synchronized void close() {
+		stopped = true;
+		queues.clear();
+		ready.clear();
+		queueDepth = 0;
+		notifyAll();
+		synchronized (watchdogLock) {
+			watchdogLock.notifyAll();
+		}
+	}
+
+	/**
+	 * Returns the number of deliveries queued.
+	 */
+	public synchronized int getQueueDepth() {
+		return queueDepth;
+	}
+
+	/**
+	 * Returns the highest number of deliveries queued at once.
+	 */
+	public synchronized int getMaxQueueDepth() {
+		return maxQueueDepth;
+	}
+
+	/**
+	 * Returns the number of events whose publisher had to wait for the queues to drain.
+	 */
+	public synchronized long getBlockedPublishCount() {
+		return blockedPublishes;
+	}
+
+	/**
+	 * Returns the number of handlers blacklisted for not returning in time.
+	 */
+	public synchronized int getBlacklistedHandlerCount() {
+		return blacklistedHandlers;
+	}
+
+	// Called while holding the lock
+	private void startWorker() {
+		Worker worker = new Worker(EventAdminMsg.EVENT_ASYNC_THREAD_NAME + ' ' + (++workerCount));
+		workers++;
+		worker.start();
+		if (timeout > 0 && watchdog == null) {
+			watchdog = new Thread(group, new Runnable() {
+				public void run() {
+					watch();
+				}
+			}, EventAdminMsg.EVENT_ASYNC_THREAD_NAME + " Watchdog"); //$NON-NLS-1$
+			watchdog.setDaemon(true);
+			watchdog.start();
+		}
+	}
+
+	private final class Worker extends Thread {
+		boolean abandoned = false; // the handler it serves is blocked; guarded by the dispatcher
+
+		Worker(String name) {
+			super(group, name);
+			setDaemon(true);
+		}
+
+		public void run() {
+			HandlerQueue queue = null;
+			while (true) {
+				Delivery delivery;
+				synchronized (AsyncEventDispatcher.this) {
+					if (queue != null)
+						finished(queue);
+					if (abandoned)
+						return;
+					idleWorkers++;
+					while (!stopped && ready.isEmpty()) {
+						try {
+							AsyncEventDispatcher.this.wait();
+						} catch (InterruptedException e) {
+							// only close() ends the workers
+						}
+					}
+					idleWorkers--;
+					if (stopped) {
+						workers--;
+						return;
+					}
+					queue = ready.removeFirst();
+					delivery = queue.deliveries.removeFirst();
+					queueDepth--;
+					queue.worker = this;
+					queue.started = System.currentTimeMillis();
+					queue.current = delivery.event;
+					running.add(queue);
+					if (waitingPublishers > 0)
+						AsyncEventDispatcher.this.notifyAll();
+				}
+				try {
+					// the wrapper logs the exceptions thrown by the handler
+					queue.handler.handleEvent(delivery.event, delivery.perm);
+				} catch (Throwable t) {
+					log.log(LogService.LOG_ERROR, NLS.bind(EventAdminMsg.EVENT_DISPATCH_HANDLER_EXCEPTION, delivery.event, queue.handler.reference), t);
+				}
+			}
+		}
+
+		// Called while holding the lock
+		private void finished(HandlerQueue queue) {
+			running.remove(queue);
+			queue.worker = null;
+			queue.current = null;
+			if (queue.deliveries.isEmpty() || queue.handler.isBlacklisted()) {
+				if (queues.get(queue.handler) == queue)
+					queues.remove(queue.handler);
+			} else {
+				ready.addLast(queue);
+			}
+		}
+	}
+
+	private void watch() {
+		while (true) {
+			List<String> messages = new ArrayList<String>();
+			synchronized (watchdogLock) {
+				try {
+					watchdogLock.wait(Math.max(timeout / 2, 1));
+				} catch (InterruptedException e) {
+					// continue
+				}
+			}
+			synchronized (this) {
+				if (stopped)
+					return;
+				long now = System.currentTimeMillis();
+				for (HandlerQueue queue : running) {
+					if (queue.worker.abandoned || now - queue.started <= timeout)
+						continue;
+					messages.add(NLS.bind(EventAdminMsg.EVENT_HANDLER_BLACKLISTED, new Object[] {queue.handler.reference, queue.current, Long.valueOf(timeout)}));
+					queue.handler.blacklist();
+					blacklistedHandlers++;
+					queueDepth -= queue.deliveries.size();
+					queue.deliveries.clear();
+					queues.remove(queue.handler);
+					// the worker leaves when the handler returns; another one takes its place
+					queue.worker.abandoned = true;
+					workers--;
+					if (!ready.isEmpty() && idleWorkers == 0)
+						startWorker();
+					notifyAll();
+				}
+			}
+			for (String message : messages)
+				log.log(LogService.LOG_ERROR, message);
+		}
+	}
+}
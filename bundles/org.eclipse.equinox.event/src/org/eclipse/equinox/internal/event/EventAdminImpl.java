@@ -13,7 +13,6 @@ package org.eclipse.equinox.internal.event;
 
 import java.security.Permission;
 import java.util.Map;
-import java.util.Set;
 import org.eclipse.osgi.framework.eventmgr.*;
 import org.eclipse.osgi.util.NLS;
 import org.osgi.framework.BundleContext;
@@ -26,9 +25,18 @@ import org.osgi.service.log.LogService;
  * org.eclipse.osgi.framework.eventmgr package is exported by some other bundle.
  */
 public class EventAdminImpl implements EventAdmin {
+	// the number of threads delivering posted events
+	private static final String PROP_ASYNC_THREADS = "org.eclipse.equinox.event.async.threads"; //$NON-NLS-1$
+	// the number of queued deliveries at which posting events waits; 0 for no limit
+	private static final String PROP_ASYNC_QUEUE_CAPACITY = "org.eclipse.equinox.event.async.queueCapacity"; //$NON-NLS-1$
+	// the time in milliseconds after which a handler not returning from a posted event is blacklisted; 0 to never blacklist
+	private static final String PROP_ASYNC_HANDLER_TIMEOUT = "org.eclipse.equinox.event.async.handlerTimeout"; //$NON-NLS-1$
+
+	private final BundleContext context;
 	private final LogTracker log;
 	private final EventHandlerTracker handlers;
 	private volatile EventManager eventManager;
+	private volatile AsyncEventDispatcher asyncDispatcher;
 
 	/**
 	 * Constructor for EventAdminImpl.
@@ -37,6 +45,7 @@ public class EventAdminImpl implements EventAdmin {
 	 */
 	EventAdminImpl(BundleContext context) {
 		super();
+		this.context = context;
 		log = new LogTracker(context, System.out);
 		handlers = new EventHandlerTracker(context, log);
 	}
@@ -49,19 +58,42 @@ public class EventAdminImpl implements EventAdmin {
 		ThreadGroup eventGroup = new ThreadGroup("Equinox Event Admin"); //$NON-NLS-1$
 		eventGroup.setDaemon(true);
 		eventManager = new EventManager(EventAdminMsg.EVENT_ASYNC_THREAD_NAME, eventGroup);
+		int threads = getIntProperty(PROP_ASYNC_THREADS, Math.min(Runtime.getRuntime().availableProcessors(), 4));
+		asyncDispatcher = new AsyncEventDispatcher(eventGroup, log, threads, getIntProperty(PROP_ASYNC_QUEUE_CAPACITY, 0), getIntProperty(PROP_ASYNC_HANDLER_TIMEOUT, 0));
 		handlers.open();
 	}
 
+	private int getIntProperty(String key, int defaultValue) {
+		String value = context.getProperty(key);
+		if (value == null)
+			return defaultValue;
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+
 	/**
 	 * This method should be called after unregistering EventAdmin service
 	 */
 	void stop() {
 		handlers.close();
+		asyncDispatcher.close();
 		eventManager.close();
 		eventManager = null; // signify we have stopped
 		log.close();
 	}
 
+	/**
+	 * Return the dispatcher of posted events, for its queue metrics.
+	 * 
+	 * @return the dispatcher or null if EventAdmin is stopped
+	 */
+	public AsyncEventDispatcher getAsyncDispatcher() {
+		return eventManager == null ? null : asyncDispatcher;
+	}
+
 	/**
 	 * @param event
 	 * @see org.osgi.service.event.EventAdmin#postEvent(org.osgi.service.event.Event)
@@ -90,6 +122,7 @@ public class EventAdminImpl implements EventAdmin {
 	private void dispatchEvent(Event event, boolean isAsync) {
 		// keep a local copy in case we are stopped in the middle of dispatching
 		EventManager currentManager = eventManager;
+		AsyncEventDispatcher currentDispatcher = asyncDispatcher;
 		if (currentManager == null) {
 			// EventAdmin is stopped
 			return;
@@ -110,15 +143,34 @@ public class EventAdminImpl implements EventAdmin {
 			throw e;
 		}
 
-		Set<EventHandlerWrapper> eventHandlers = handlers.getHandlers(topic);
+		EventHandlerWrapper[] eventHandlers = handlers.getHandlers(topic);
 		// If there are no handlers, then we are done
-		if (eventHandlers.isEmpty()) {
+		if (eventHandlers.length == 0) {
 			return;
 		}
 
 		SecurityManager sm = System.getSecurityManager();
 		Permission perm = (sm == null) ? null : new TopicPermission(topic, TopicPermission.SUBSCRIBE);
 
+		if (isAsync) {
+			// every handler has its own ordered queue
+			currentDispatcher.dispatch(eventHandlers, event, perm);
+			return;
+		}
+
+		if (perm == null) {
+			// no permissions to check; call the handlers directly
+			for (EventHandlerWrapper wrapper : eventHandlers) {
+				try {
+					wrapper.handleEvent(event, null);
+				} catch (Throwable t) {
+					// the wrapper logs the exceptions thrown by the handler
+					log.log(LogService.LOG_ERROR, NLS.bind(EventAdminMsg.EVENT_DISPATCH_HANDLER_EXCEPTION, event, wrapper.reference), t);
+				}
+			}
+			return;
+		}
+
 		Map<EventHandlerWrapper, Permission> listeners = new CopyOnWriteIdentityMap<EventHandlerWrapper, Permission>();
 		for (EventHandlerWrapper wrapper : eventHandlers)
 			listeners.put(wrapper, perm);
@@ -129,11 +181,7 @@ public class EventAdminImpl implements EventAdmin {
 		// dispatcher
 		listenerQueue.queueListeners(listeners.entrySet(), handlers);
 		// Deliver the event to the listeners.
-		if (isAsync) {
-			listenerQueue.dispatchEventAsynchronous(0, event);
-		} else {
-			listenerQueue.dispatchEventSynchronous(0, event);
-		}
+		listenerQueue.dispatchEventSynchronous(0, event);
 	}
 
 	/**
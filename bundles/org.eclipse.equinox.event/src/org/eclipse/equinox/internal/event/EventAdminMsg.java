@@ -22,6 +22,7 @@ public class EventAdminMsg extends NLS {
 	public static String EVENT_DISPATCH_HANDLER_EXCEPTION;
 	public static String EVENT_INVALID_HANDLER_FILTER;
 	public static String EVENT_INVALID_HANDLER_TOPICS;
+	public static String EVENT_HANDLER_BLACKLISTED;
 
 	static {
 		// initialize resource bundles
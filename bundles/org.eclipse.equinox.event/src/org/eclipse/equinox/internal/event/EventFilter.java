@@ -0,0 +1,470 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.equinox.internal.event;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.osgi.framework.Filter;
+import org.osgi.service.event.Event;
+
+/**
+ * An event handler filter compiled into a tree of predicates on the event properties.
+ * <p>
+ * The values of the filter are parsed once, when the handler is registered. Properties
+ * of type String, Integer, Long and Boolean are compared directly. When the outcome
+ * depends on a property of another type, the event is matched against the framework
+ * filter instead, so the result is always the one of {@link Event#matches(Filter)}.
+ * </p>
+ */
+public class EventFilter {
+	// results of the predicates
+	static final int FALSE = 0;
+	static final int TRUE = 1;
+	static final int UNKNOWN = 2; // left to the framework filter
+
+	private final Filter filter;
+	private final Predicate predicate; // null if the filter could not be compiled
+
+	private EventFilter(Filter filter, Predicate predicate) {
+		this.filter = filter;
+		this.predicate = predicate;
+	}
+
+	/**
+	 * Compile the filter of an event handler.
+	 *
+	 * @param filter the framework filter created from the filter string
+	 * @param filterString the filter string
+	 * @return the compiled filter
+	 */
+	public static EventFilter compile(Filter filter, String filterString) {
+		Predicate predicate;
+		try {
+			Parser parser = new Parser(filterString);
+			predicate = parser.parse();
+		} catch (IllegalArgumentException e) {
+			// the framework accepts a syntax we do not know; let it match the events
+			predicate = null;
+		}
+		return new EventFilter(filter, predicate);
+	}
+
+	/**
+	 * Check if the event matches the filter.
+	 *
+	 * @param event the event
+	 * @return true if the event matches
+	 */
+	public boolean matches(Event event) {
+		if (predicate != null) {
+			int result = predicate.evaluate(event);
+			if (result != UNKNOWN) {
+				return result == TRUE;
+			}
+		}
+		return event.matches(filter);
+	}
+
+	public String toString() {
+		return filter.toString();
+	}
+
+	static abstract class Predicate {
+		abstract int evaluate(Event event);
+	}
+
+	static final class And extends Predicate {
+		private final Predicate[] operands;
+
+		And(Predicate[] operands) {
+			this.operands = operands;
+		}
+
+		int evaluate(Event event) {
+			int result = TRUE;
+			for (Predicate operand : operands) {
+				int value = operand.evaluate(event);
+				if (value == FALSE) {
+					return FALSE;
+				}
+				if (value == UNKNOWN) {
+					result = UNKNOWN;
+				}
+			}
+			return result;
+		}
+	}
+
+	static final class Or extends Predicate {
+		private final Predicate[] operands;
+
+		Or(Predicate[] operands) {
+			this.operands = operands;
+		}
+
+		int evaluate(Event event) {
+			int result = FALSE;
+			for (Predicate operand : operands) {
+				int value = operand.evaluate(event);
+				if (value == TRUE) {
+					return TRUE;
+				}
+				if (value == UNKNOWN) {
+					result = UNKNOWN;
+				}
+			}
+			return result;
+		}
+	}
+
+	static final class Not extends Predicate {
+		private final Predicate operand;
+
+		Not(Predicate operand) {
+			this.operand = operand;
+		}
+
+		int evaluate(Event event) {
+			int value = operand.evaluate(event);
+			return value == UNKNOWN ? UNKNOWN : (value == TRUE ? FALSE : TRUE);
+		}
+	}
+
+	static final class Present extends Predicate {
+		private final String key;
+
+		Present(String key) {
+			this.key = key;
+		}
+
+		int evaluate(Event event) {
+			return event.getProperty(key) != null ? TRUE : FALSE;
+		}
+	}
+
+	static final class Substring extends Predicate {
+		private final String key;
+		// the parts between the wildcards; the first one is anchored at the start and the last one at the end
+		private final String[] parts;
+
+		Substring(String key, String[] parts) {
+			this.key = key;
+			this.parts = parts;
+		}
+
+		int evaluate(Event event) {
+			Object value = event.getProperty(key);
+			if (value == null) {
+				return FALSE;
+			}
+			if (!(value instanceof String)) {
+				return UNKNOWN;
+			}
+			String string = (String) value;
+			String first = parts[0];
+			String last = parts[parts.length - 1];
+			if (!string.startsWith(first)) {
+				return FALSE;
+			}
+			int pos = first.length();
+			for (int i = 1; i < parts.length - 1; i++) {
+				int index = string.indexOf(parts[i], pos);
+				if (index < 0) {
+					return FALSE;
+				}
+				pos = index + parts[i].length();
+			}
+			return string.length() - last.length() >= pos && string.endsWith(last) ? TRUE : FALSE;
+		}
+	}
+
+	/**
+	 * Compares a property with a value; the value is converted to the types compared
+	 * directly when the predicate is created.
+	 */
+	static final class Comparison extends Predicate {
+		static final int EQUAL = 0;
+		static final int APPROX = 1;
+		static final int GREATER = 2;
+		static final int LESS = 3;
+
+		private final String key;
+		private final int operation;
+		private final String value;
+		private final String approxValue;
+		private final Integer intValue; // null if the value is not an integer
+		private final Long longValue; // null if the value is not a long
+		private final boolean booleanValue;
+
+		Comparison(String key, int operation, String value) {
+			this.key = key;
+			this.operation = operation;
+			this.value = value;
+			this.approxValue = operation == APPROX ? approxString(value) : null;
+			String trimmed = value.trim();
+			this.intValue = parseInt(trimmed);
+			this.longValue = parseLong(trimmed);
+			this.booleanValue = Boolean.valueOf(trimmed).booleanValue();
+		}
+
+		int evaluate(Event event) {
+			Object property = event.getProperty(key);
+			if (property == null) {
+				return FALSE;
+			}
+			if (property instanceof String) {
+				String string = (String) property;
+				switch (operation) {
+					case APPROX :
+						return approxString(string).equalsIgnoreCase(approxValue) ? TRUE : FALSE;
+					case GREATER :
+						return string.compareTo(value) >= 0 ? TRUE : FALSE;
+					case LESS :
+						return string.compareTo(value) <= 0 ? TRUE : FALSE;
+					default :
+						return string.equals(value) ? TRUE : FALSE;
+				}
+			}
+			if (property instanceof Integer) {
+				return intValue == null ? FALSE : compare(((Integer) property).longValue(), intValue.longValue());
+			}
+			if (property instanceof Long) {
+				return longValue == null ? FALSE : compare(((Long) property).longValue(), longValue.longValue());
+			}
+			if (property instanceof Boolean) {
+				return ((Boolean) property).booleanValue() == booleanValue ? TRUE : FALSE;
+			}
+			return UNKNOWN;
+		}
+
+		private int compare(long property, long constant) {
+			switch (operation) {
+				case GREATER :
+					return property >= constant ? TRUE : FALSE;
+				case LESS :
+					return property <= constant ? TRUE : FALSE;
+				default :
+					return property == constant ? TRUE : FALSE;
+			}
+		}
+
+		private static Integer parseInt(String value) {
+			try {
+				return Integer.valueOf(value);
+			} catch (NumberFormatException e) {
+				return null;
+			}
+		}
+
+		private static Long parseLong(String value) {
+			try {
+				return Long.valueOf(value);
+			} catch (NumberFormatException e) {
+				return null;
+			}
+		}
+
+		// remove the white space, as the framework does for approximate matches
+		private static String approxString(String input) {
+			StringBuilder sb = null;
+			for (int i = 0; i < input.length(); i++) {
+				char c = input.charAt(i);
+				if (Character.isWhitespace(c)) {
+					if (sb == null) {
+						sb = new StringBuilder(input.length());
+						sb.append(input, 0, i);
+					}
+				} else if (sb != null) {
+					sb.append(c);
+				}
+			}
+			return sb == null ? input : sb.toString();
+		}
+	}
+
+	/**
+	 * Parses a filter string as defined by RFC 1960. A syntax error is thrown as an
+	 * IllegalArgumentException.
+	 */
+	static final class Parser {
+		private final String filter;
+		private int pos = 0;
+
+		Parser(String filter) {
+			this.filter = filter;
+		}
+
+		Predicate parse() {
+			Predicate result = parseFilter();
+			skipWhitespace();
+			if (pos != filter.length()) {
+				throw new IllegalArgumentException(filter);
+			}
+			return result;
+		}
+
+		private Predicate parseFilter() {
+			skipWhitespace();
+			expect('(');
+			skipWhitespace();
+			Predicate result;
+			switch (peek()) {
+				case '&' :
+					pos++;
+					result = new And(parseFilterList());
+					break;
+				case '|' :
+					pos++;
+					result = new Or(parseFilterList());
+					break;
+				case '!' :
+					pos++;
+					result = new Not(parseFilter());
+					break;
+				default :
+					result = parseItem();
+			}
+			skipWhitespace();
+			expect(')');
+			return result;
+		}
+
+		private Predicate[] parseFilterList() {
+			List<Predicate> operands = new ArrayList<Predicate>();
+			skipWhitespace();
+			while (peek() == '(') {
+				operands.add(parseFilter());
+				skipWhitespace();
+			}
+			if (operands.isEmpty()) {
+				throw new IllegalArgumentException(filter);
+			}
+			return operands.toArray(new Predicate[operands.size()]);
+		}
+
+		private Predicate parseItem() {
+			String key = parseAttribute();
+			int operation;
+			switch (peek()) {
+				case '~' :
+					pos++;
+					expect('=');
+					operation = Comparison.APPROX;
+					break;
+				case '>' :
+					pos++;
+					expect('=');
+					operation = Comparison.GREATER;
+					break;
+				case '<' :
+					pos++;
+					expect('=');
+					operation = Comparison.LESS;
+					break;
+				case '=' :
+					pos++;
+					operation = Comparison.EQUAL;
+					break;
+				default :
+					throw new IllegalArgumentException(filter);
+			}
+			if (operation != Comparison.EQUAL) {
+				return new Comparison(key, operation, parseValue());
+			}
+			// the parts between the unescaped wildcards
+			List<String> parts = new ArrayList<String>();
+			StringBuilder part = new StringBuilder();
+			while (true) {
+				char c = peek();
+				if (c == ')') {
+					break;
+				}
+				pos++;
+				if (c == '(') {
+					throw new IllegalArgumentException(filter);
+				} else if (c == '*') {
+					parts.add(part.toString());
+					part.setLength(0);
+				} else if (c == '\\') {
+					part.append(peek());
+					pos++;
+				} else {
+					part.append(c);
+				}
+			}
+			parts.add(part.toString());
+			if (parts.size() == 1) {
+				return new Comparison(key, Comparison.EQUAL, parts.get(0));
+			}
+			if (parts.size() == 2 && parts.get(0).length() == 0 && parts.get(1).length() == 0) {
+				return new Present(key);
+			}
+			return new Substring(key, parts.toArray(new String[parts.size()]));
+		}
+
+		private String parseAttribute() {
+			int start = pos;
+			while (true) {
+				char c = peek();
+				if (c == '~' || c == '<' || c == '>' || c == '=' || c == '(' || c == ')') {
+					break;
+				}
+				pos++;
+			}
+			String key = filter.substring(start, pos).trim();
+			if (key.length() == 0) {
+				throw new IllegalArgumentException(filter);
+			}
+			return key;
+		}
+
+		private String parseValue() {
+			StringBuilder value = new StringBuilder();
+			while (true) {
+				char c = peek();
+				if (c == ')') {
+					break;
+				}
+				pos++;
+				if (c == '(') {
+					throw new IllegalArgumentException(filter);
+				} else if (c == '\\') {
+					value.append(peek());
+					pos++;
+				} else {
+					value.append(c);
+				}
+			}
+			return value.toString();
+		}
+
+		private char peek() {
+			if (pos >= filter.length()) {
+				throw new IllegalArgumentException(filter);
+			}
+			return filter.charAt(pos);
+		}
+
+		private void expect(char c) {
+			if (peek() != c) {
+				throw new IllegalArgumentException(filter);
+			}
+			pos++;
+		}
+
+		private void skipWhitespace() {
+			while (pos < filter.length() && Character.isWhitespace(filter.charAt(pos))) {
+				pos++;
+			}
+		}
+	}
+}
@@ -29,7 +29,9 @@ public class EventHandlerWrapper {
 	final BundleContext context;
 	private EventHandler handler;
 	private String[] topics;
-	private Filter filter;
+	// read on every event without the lock
+	private volatile EventFilter filter;
+	private volatile boolean blacklisted = false;
 
 	/**
 	 * Create an EventHandlerWrapper. 
@@ -51,7 +53,6 @@ public class EventHandlerWrapper {
 	 */
 	public synchronized boolean init() {
 		topics = null;
-		filter = null;
 
 		// Get topic names
 		Object o = reference.getProperty(EventConstants.EVENT_TOPIC);
@@ -70,19 +71,23 @@ public class EventHandlerWrapper {
 		}
 
 		if (topics == null) {
+			filter = null;
 			return false;
 		}
 
 		// get filter
+		EventFilter eventFilter = null;
 		o = reference.getProperty(EventConstants.EVENT_FILTER);
 		if (o instanceof String) {
 			try {
-				filter = context.createFilter((String) o);
+				eventFilter = EventFilter.compile(context.createFilter((String) o), (String) o);
 			} catch (InvalidSyntaxException e) {
 				log.log(LogService.LOG_ERROR, NLS.bind(EventAdminMsg.EVENT_INVALID_HANDLER_FILTER, o), e);
+				filter = null;
 				return false;
 			}
 		}
+		filter = eventFilter;
 
 		return true;
 	}
@@ -104,6 +109,23 @@ public class EventHandlerWrapper {
 		}
 	}
 
+	/**
+	 * Stop the asynchronous delivery of events to the handler because it
+	 * did not return from an event in time.
+	 */
+	public void blacklist() {
+		blacklisted = true;
+	}
+
+	/**
+	 * Check if the handler was blacklisted.
+	 * 
+	 * @return true if the handler no longer receives asynchronous events
+	 */
+	public boolean isBlacklisted() {
+		return blacklisted;
+	}
+
 	/**
 	 * Get the event topics for the wrapped handler.
 	 * 
@@ -158,15 +180,6 @@ public class EventHandlerWrapper {
 		return tempHandler;
 	}
 
-	/**
-	 * Get the filter object
-	 * 
-	 * @return The handler's filter
-	 */
-	private synchronized Filter getFilter() {
-		return filter;
-	}
-
 	/**
 	 * Dispatch event to handler. Perform final tests before actually calling the handler.
 	 * 
@@ -181,8 +194,8 @@ public class EventHandlerWrapper {
 		}
 
 		// filter match
-		Filter eventFilter = getFilter();
-		if ((eventFilter != null) && !event.matches(eventFilter)) {
+		EventFilter eventFilter = filter;
+		if ((eventFilter != null) && !eventFilter.matches(event)) {
 			return;
 		}
 
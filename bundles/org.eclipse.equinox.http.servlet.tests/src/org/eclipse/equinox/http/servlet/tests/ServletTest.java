@@ -11,8 +11,12 @@
  *******************************************************************************/
 package org.eclipse.equinox.http.servlet.tests;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintWriter;
 
 import java.lang.reflect.InvocationTargetException;
@@ -21,6 +25,8 @@ import java.lang.reflect.Method;
 import java.net.CookieHandler;
 import java.net.CookieManager;
 import java.net.CookiePolicy;
+import java.net.MalformedURLException;
+import java.net.URL;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -33,8 +39,15 @@ import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
@@ -46,10 +59,12 @@ import javax.servlet.ServletContext;
 import javax.servlet.ServletContextAttributeListener;
 import javax.servlet.ServletContextListener;
 import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletRequestAttributeListener;
 import javax.servlet.ServletRequestListener;
 import javax.servlet.ServletResponse;
+import javax.servlet.WriteListener;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletRequestWrapper;
@@ -67,7 +82,11 @@ import javax.servlet.http.Part;
 import junit.framework.TestCase;
 
 import org.eclipse.equinox.http.servlet.ExtendedHttpService;
+import org.eclipse.equinox.http.servlet.ExtendedHttpServiceRuntime;
 import org.eclipse.equinox.http.servlet.context.ContextPathCustomizer;
+import org.eclipse.equinox.http.servlet.dto.DispatchCacheDTO;
+import org.eclipse.equinox.http.servlet.dto.RequestMetricsDTO;
+import org.eclipse.equinox.http.servlet.dto.RuntimeMetricsDTO;
 import org.eclipse.equinox.http.servlet.tests.bundle.Activator;
 import org.eclipse.equinox.http.servlet.tests.bundle.BundleAdvisor;
 import org.eclipse.equinox.http.servlet.tests.bundle.BundleInstaller;
@@ -784,6 +803,48 @@ public class ServletTest extends TestCase {
 		Assert.assertTrue("testFilter2 did not get called.", testFilter2.getCalled());
 	}
 
+	public void test_Filter_ServletNameAndRegex() throws Exception {
+		// Make sure servlet name, regex and pattern filters are combined per request
+		String expected = "a";
+		TestFilter testFilter1 = new TestFilter();
+		TestFilter testFilter2 = new TestFilter();
+		TestFilter testFilter3 = new TestFilter();
+		Servlet testServlet = new BaseServlet(expected);
+
+		Dictionary<String, Object> props = new Hashtable<String, Object>();
+		props.put(HttpWhiteboardConstants.HTTP_WHITEBOARD_FILTER_NAME, "F1");
+		props.put(HttpWhiteboardConstants.HTTP_WHITEBOARD_FILTER_SERVLET, "S1");
+		registrations.add(getBundleContext().registerService(Filter.class, testFilter1, props));
+
+		props = new Hashtable<String, Object>();
+		props.put(HttpWhiteboardConstants.HTTP_WHITEBOARD_FILTER_NAME, "F2");
+		props.put(HttpWhiteboardConstants.HTTP_WHITEBOARD_FILTER_REGEX, ".*\\.txt");
+		registrations.add(getBundleContext().registerService(Filter.class, testFilter2, props));
+
+		props = new Hashtable<String, Object>();
+		props.put(HttpWhiteboardConstants.HTTP_WHITEBOARD_FILTER_NAME, "F3");
+		props.put(HttpWhiteboardConstants.HTTP_WHITEBOARD_FILTER_PATTERN, "/other/*");
+		registrations.add(getBundleContext().registerService(Filter.class, testFilter3, props));
+
+		props = new Hashtable<String, Object>();
+		props.put(HttpWhiteboardConstants.HTTP_WHITEBOARD_SERVLET_NAME, "S1");
+		props.put(HttpWhiteboardConstants.HTTP_WHITEBOARD_SERVLET_PATTERN, "/named/*");
+		registrations.add(getBundleContext().registerService(Servlet.class, testServlet, props));
+
+		String actual = requestAdvisor.request("named/a");
+		Assert.assertEquals(expected, actual);
+		Assert.assertTrue("testFilter1 did not get called.", testFilter1.getCalled());
+		Assert.assertFalse("testFilter2 got called.", testFilter2.getCalled());
+		Assert.assertFalse("testFilter3 got called.", testFilter3.getCalled());
+
+		testFilter1.clear();
+		actual = requestAdvisor.request("named/a.txt");
+		Assert.assertEquals(expected, actual);
+		Assert.assertTrue("testFilter1 did not get called.", testFilter1.getCalled());
+		Assert.assertTrue("testFilter2 did not get called.", testFilter2.getCalled());
+		Assert.assertFalse("testFilter3 got called.", testFilter3.getCalled());
+	}
+
 	public void basicFilterTest22( String servlet1Pattern, String servlet2Pattern, String filterPattern, String expected, String[] dispatchers ) throws Exception {
 		final AtomicReference<HttpServletRequestWrapper> httpServletRequestWrapper = new AtomicReference<HttpServletRequestWrapper>();
 		final AtomicReference<HttpServletResponseWrapper> httpServletResponseWrapper = new AtomicReference<HttpServletResponseWrapper>();
@@ -1479,6 +1540,104 @@ public class ServletTest extends TestCase {
 		}
 	}
 
+	public void test_Sessions02() throws Exception {
+		final AtomicInteger sessionCreated = new AtomicInteger();
+		HttpSessionListener sessionListener = new HttpSessionListener() {
+
+			@Override
+			public void sessionDestroyed(HttpSessionEvent se) {
+				// nothing
+			}
+
+			@Override
+			public void sessionCreated(HttpSessionEvent se) {
+				sessionCreated.incrementAndGet();
+			}
+		};
+		HttpServlet sessionServlet = new HttpServlet() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected void service(HttpServletRequest request, HttpServletResponse response) throws IOException {
+				response.getWriter().print(request.getSession().getId());
+			}
+
+		};
+
+		BundleContext bundleContext = getBundleContext();
+
+		Dictionary<String, Object> servletProps = new Hashtable<String, Object>();
+		servletProps.put(HttpWhiteboardConstants.HTTP_WHITEBOARD_SERVLET_PATTERN, "/sessions02");
+		registrations.add(bundleContext.registerService(Servlet.class, sessionServlet, servletProps));
+
+		ServletContextHelper servletContextHelper = new ServletContextHelper(bundleContext.getBundle()){};
+		Dictionary<String, String> contextProps = new Hashtable<String, String>();
+		contextProps.put(HttpWhiteboardConstants.HTTP_WHITEBOARD_CONTEXT_NAME, "test.sessions02");
+		contextProps.put(HttpWhiteboardConstants.HTTP_WHITEBOARD_CONTEXT_PATH, "/sessions02ctx");
+		registrations.add(bundleContext.registerService(ServletContextHelper.class, servletContextHelper, contextProps));
+
+		String contextSelect = "(" + HttpWhiteboardConstants.HTTP_WHITEBOARD_CONTEXT_NAME + "=test.sessions02)";
+
+		servletProps = new Hashtable<String, Object>();
+		servletProps.put(HttpWhiteboardConstants.HTTP_WHITEBOARD_CONTEXT_SELECT, contextSelect);
+		servletProps.put(HttpWhiteboardConstants.HTTP_WHITEBOARD_SERVLET_PATTERN, "/s");
+		registrations.add(bundleContext.registerService(Servlet.class, sessionServlet, servletProps));
+
+		Dictionary<String, String> listenerProps = new Hashtable<String, String>();
+		listenerProps.put(HttpWhiteboardConstants.HTTP_WHITEBOARD_CONTEXT_SELECT, contextSelect);
+		listenerProps.put(HttpWhiteboardConstants.HTTP_WHITEBOARD_LISTENER, "true");
+		registrations.add(bundleContext.registerService(HttpSessionListener.class, sessionListener, listenerProps));
+
+		// create the container session outside of the test context
+		Map<String, List<String>> response = requestAdvisor.request("sessions02", null);
+
+		String sessionId = response.get("responseBody").get(0);
+		String cookie = null;
+
+		for (String setCookie : response.get("Set-Cookie")) {
+			if (setCookie.startsWith("JSESSIONID=")) {
+				int pos = setCookie.indexOf(';');
+				cookie = (pos == -1) ? setCookie : setCookie.substring(0, pos);
+			}
+		}
+
+		Assert.assertNotNull(cookie);
+
+		final Map<String, List<String>> requestHeaders = new HashMap<String, List<String>>();
+		requestHeaders.put("Cookie", Arrays.asList(cookie));
+
+		// all requests race to create the adaptor of the same session in the test context
+		int threads = 16;
+		final CountDownLatch start = new CountDownLatch(1);
+		List<Future<String>> futures = new ArrayList<Future<String>>();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+		try {
+			for (int i = 0; i < threads; i++) {
+				futures.add(executor.submit(new Callable<String>() {
+
+					@Override
+					public String call() throws Exception {
+						start.await();
+						return requestAdvisor.request("sessions02ctx/s", requestHeaders).get("responseBody").get(0);
+					}
+
+				}));
+			}
+
+			start.countDown();
+
+			for (Future<String> future : futures) {
+				Assert.assertEquals(sessionId, future.get());
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+
+		Assert.assertEquals(1, sessionCreated.get());
+	}
+
 	public void test_Resource1() throws Exception {
 		String expected = "a";
 		String actual;
@@ -1544,6 +1703,280 @@ public class ServletTest extends TestCase {
 		Assert.assertEquals(expected, actual);
 	}
 
+	public void test_Resource6() throws Exception {
+		final File dir = File.createTempFile("resource6", "");
+		Assert.assertTrue(dir.delete() && dir.mkdir());
+
+		File file = new File(dir, "resource1.txt");
+		File gzFile = new File(dir, "resource1.txt.gz");
+
+		try {
+			FileOutputStream fos = new FileOutputStream(file);
+			try {
+				fos.write("abcdefghij".getBytes("UTF-8"));
+			} finally {
+				fos.close();
+			}
+
+			GZIPOutputStream gos = new GZIPOutputStream(new FileOutputStream(gzFile));
+			try {
+				gos.write("abcdefghij".getBytes("UTF-8"));
+			} finally {
+				gos.close();
+			}
+
+			BundleContext bundleContext = getBundleContext();
+
+			ServletContextHelper servletContextHelper = new ServletContextHelper(bundleContext.getBundle()) {
+
+				@Override
+				public URL getResource(String name) {
+					File resource = new File(dir, name);
+					if (!resource.isFile()) {
+						return null;
+					}
+					try {
+						return resource.toURI().toURL();
+					} catch (MalformedURLException e) {
+						return null;
+					}
+				}
+
+			};
+			Dictionary<String, String> contextProps = new Hashtable<String, String>();
+			contextProps.put(HttpWhiteboardConstants.HTTP_WHITEBOARD_CONTEXT_NAME, "test.resource6");
+			contextProps.put(HttpWhiteboardConstants.HTTP_WHITEBOARD_CONTEXT_PATH, "/resource6");
+			registrations.add(bundleContext.registerService(ServletContextHelper.class, servletContextHelper, contextProps));
+
+			Dictionary<String, String> resourceProps = new Hashtable<String, String>();
+			resourceProps.put(HttpWhiteboardConstants.HTTP_WHITEBOARD_CONTEXT_SELECT, "(" + HttpWhiteboardConstants.HTTP_WHITEBOARD_CONTEXT_NAME + "=test.resource6)");
+			resourceProps.put(HttpWhiteboardConstants.HTTP_WHITEBOARD_RESOURCE_PATTERN, "/files/*");
+			resourceProps.put(HttpWhiteboardConstants.HTTP_WHITEBOARD_RESOURCE_PREFIX, "/");
+			resourceProps.put("equinox.http.resource.precompressed", "true");
+			registrations.add(bundleContext.registerService(Object.class, new Object(), resourceProps));
+
+			Map<String, List<String>> response = requestAdvisor.request("resource6/files/resource1.txt", null);
+
+			Assert.assertEquals("200", response.get("responseCode").get(0));
+			Assert.assertEquals("abcdefghij", response.get("responseBody").get(0));
+			Assert.assertEquals("bytes", response.get("Accept-Ranges").get(0));
+			Assert.assertNull(response.get("Content-Encoding"));
+
+			String etag = response.get("ETag").get(0);
+
+			Map<String, List<String>> requestHeaders = new HashMap<String, List<String>>();
+			requestHeaders.put("Range", Arrays.asList("bytes=2-4"));
+			response = requestAdvisor.request("resource6/files/resource1.txt", requestHeaders);
+
+			Assert.assertEquals("206", response.get("responseCode").get(0));
+			Assert.assertEquals("cde", response.get("responseBody").get(0));
+			Assert.assertEquals("bytes 2-4/10", response.get("Content-Range").get(0));
+
+			requestHeaders.put("Range", Arrays.asList("bytes=-3"));
+			response = requestAdvisor.request("resource6/files/resource1.txt", requestHeaders);
+
+			Assert.assertEquals("206", response.get("responseCode").get(0));
+			Assert.assertEquals("hij", response.get("responseBody").get(0));
+
+			requestHeaders.put("Range", Arrays.asList("bytes=20-"));
+			response = requestAdvisor.request("resource6/files/resource1.txt", requestHeaders);
+
+			Assert.assertEquals("416", response.get("responseCode").get(0));
+			Assert.assertEquals("bytes */10", response.get("Content-Range").get(0));
+
+			requestHeaders.clear();
+			requestHeaders.put("If-None-Match", Arrays.asList(etag));
+			response = requestAdvisor.request("resource6/files/resource1.txt", requestHeaders);
+
+			Assert.assertEquals("304", response.get("responseCode").get(0));
+
+			requestHeaders.clear();
+			requestHeaders.put("Accept-Encoding", Arrays.asList("gzip"));
+			response = requestAdvisor.request("resource6/files/resource1.txt", requestHeaders);
+
+			Assert.assertEquals("200", response.get("responseCode").get(0));
+			Assert.assertEquals("gzip", response.get("Content-Encoding").get(0));
+			Assert.assertEquals(String.valueOf(gzFile.length()), response.get("Content-Length").get(0));
+			Assert.assertFalse(etag.equals(response.get("ETag").get(0)));
+
+			// the variant requested directly is not served as the original
+			response = requestAdvisor.request("resource6/files/resource1.txt.gz", null);
+
+			Assert.assertEquals("200", response.get("responseCode").get(0));
+			Assert.assertNull(response.get("Content-Encoding"));
+			Assert.assertEquals(String.valueOf(gzFile.length()), response.get("Content-Length").get(0));
+		} finally {
+			file.delete();
+			gzFile.delete();
+			dir.delete();
+		}
+	}
+
+	public void test_Resource7() throws Exception {
+		final File file = File.createTempFile("resource7", ".txt");
+		final AtomicInteger getResourceCount = new AtomicInteger();
+
+		try {
+			FileOutputStream fos = new FileOutputStream(file);
+			try {
+				fos.write("abcdefghij".getBytes("UTF-8"));
+			} finally {
+				fos.close();
+			}
+
+			BundleContext bundleContext = getBundleContext();
+
+			ServletContextHelper servletContextHelper = new ServletContextHelper(bundleContext.getBundle()) {
+
+				@Override
+				public URL getResource(String name) {
+					getResourceCount.incrementAndGet();
+					try {
+						return file.toURI().toURL();
+					} catch (MalformedURLException e) {
+						return null;
+					}
+				}
+
+			};
+			Dictionary<String, String> contextProps = new Hashtable<String, String>();
+			contextProps.put(HttpWhiteboardConstants.HTTP_WHITEBOARD_CONTEXT_NAME, "test.resource7");
+			contextProps.put(HttpWhiteboardConstants.HTTP_WHITEBOARD_CONTEXT_PATH, "/resource7");
+			registrations.add(bundleContext.registerService(ServletContextHelper.class, servletContextHelper, contextProps));
+
+			Dictionary<String, String> resourceProps = new Hashtable<String, String>();
+			resourceProps.put(HttpWhiteboardConstants.HTTP_WHITEBOARD_CONTEXT_SELECT, "(" + HttpWhiteboardConstants.HTTP_WHITEBOARD_CONTEXT_NAME + "=test.resource7)");
+			resourceProps.put(HttpWhiteboardConstants.HTTP_WHITEBOARD_RESOURCE_PATTERN, "/files/*");
+			resourceProps.put(HttpWhiteboardConstants.HTTP_WHITEBOARD_RESOURCE_PREFIX, "/");
+			resourceProps.put("equinox.http.resource.cache.size", "1024");
+			registrations.add(bundleContext.registerService(Object.class, new Object(), resourceProps));
+
+			Map<String, List<String>> response = requestAdvisor.request("resource7/files/resource1.txt", null);
+
+			Assert.assertEquals("abcdefghij", response.get("responseBody").get(0));
+			Assert.assertEquals(1, getResourceCount.get());
+
+			String etag = response.get("ETag").get(0);
+
+			Assert.assertFalse(etag.startsWith("W/"));
+
+			Map<String, List<String>> requestHeaders = new HashMap<String, List<String>>();
+			requestHeaders.put("Range", Arrays.asList("bytes=2-4"));
+			requestHeaders.put("If-Range", Arrays.asList(etag));
+			response = requestAdvisor.request("resource7/files/resource1.txt", requestHeaders);
+
+			Assert.assertEquals("206", response.get("responseCode").get(0));
+			Assert.assertEquals("cde", response.get("responseBody").get(0));
+			Assert.assertEquals(1, getResourceCount.get());
+
+			Assert.assertTrue(file.setLastModified(file.lastModified() - 10000));
+
+			response = requestAdvisor.request("resource7/files/resource1.txt", null);
+
+			Assert.assertEquals("abcdefghij", response.get("responseBody").get(0));
+			Assert.assertEquals(2, getResourceCount.get());
+		} finally {
+			file.delete();
+		}
+	}
+
+	public void test_Resource8() throws Exception {
+		BundleContext bundleContext = getBundleContext();
+		URL entry = bundleContext.getBundle().getEntry("META-INF/MANIFEST.MF");
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		InputStream is = entry.openStream();
+		try {
+			byte[] buffer = new byte[1024];
+			int length;
+			while ((length = is.read(buffer)) != -1) {
+				baos.write(buffer, 0, length);
+			}
+		} finally {
+			is.close();
+		}
+		String expected = new String(baos.toByteArray(), "UTF-8");
+
+		// hides the container's output stream, so the resource cannot be transferred to it
+		Filter filter = new Filter() {
+
+			@Override
+			public void init(FilterConfig filterConfig) throws ServletException {
+				// nothing
+			}
+
+			@Override
+			public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+					throws IOException, ServletException {
+
+				chain.doFilter(request, new HttpServletResponseWrapper((HttpServletResponse) response) {
+
+					@Override
+					public ServletOutputStream getOutputStream() throws IOException {
+						final ServletOutputStream out = super.getOutputStream();
+
+						return new ServletOutputStream() {
+
+							@Override
+							public void write(int b) throws IOException {
+								out.write(b);
+							}
+
+							@Override
+							public void write(byte[] b, int off, int len) throws IOException {
+								out.write(b, off, len);
+							}
+
+							@Override
+							public boolean isReady() {
+								return out.isReady();
+							}
+
+							@Override
+							public void setWriteListener(WriteListener writeListener) {
+								out.setWriteListener(writeListener);
+							}
+
+						};
+					}
+
+				});
+			}
+
+			@Override
+			public void destroy() {
+				// nothing
+			}
+
+		};
+
+		Dictionary<String, Object> props = new Hashtable<String, Object>();
+		props.put(HttpWhiteboardConstants.HTTP_WHITEBOARD_RESOURCE_PATTERN, new String[] {"/entries/*", "/wrapped-entries/*"});
+		props.put(HttpWhiteboardConstants.HTTP_WHITEBOARD_RESOURCE_PREFIX, "/META-INF");
+		registrations.add(bundleContext.registerService(Object.class, new Object(), props));
+
+		props = new Hashtable<String, Object>();
+		props.put(HttpWhiteboardConstants.HTTP_WHITEBOARD_FILTER_PATTERN, "/wrapped-entries/*");
+		registrations.add(bundleContext.registerService(Filter.class, filter, props));
+
+		Map<String, List<String>> requestHeaders = new HashMap<String, List<String>>();
+		requestHeaders.put("Range", Arrays.asList("bytes=5-14"));
+
+		for (String path : new String[] {"entries/MANIFEST.MF", "wrapped-entries/MANIFEST.MF"}) {
+			Map<String, List<String>> response = requestAdvisor.request(path, null);
+
+			Assert.assertEquals("200", response.get("responseCode").get(0));
+			Assert.assertEquals(expected, response.get("responseBody").get(0));
+			Assert.assertEquals(String.valueOf(expected.length()), response.get("Content-Length").get(0));
+
+			response = requestAdvisor.request(path, requestHeaders);
+
+			Assert.assertEquals("206", response.get("responseCode").get(0));
+			Assert.assertEquals(expected.substring(5, 15), response.get("responseBody").get(0));
+			Assert.assertEquals("bytes 5-14/" + expected.length(), response.get("Content-Range").get(0));
+		}
+	}
+
 	public void test_Runtime() throws Exception {
 		Bundle bundle = installBundle(ServletTest.TEST_BUNDLE_1);
 		try {
@@ -1791,6 +2224,254 @@ public class ServletTest extends TestCase {
 		Assert.assertEquals("b", requestAdvisor.request("files/help.txt"));
 	}
 
+	public void test_ServletPathPrecedence() throws Exception {
+		class PathServlet extends HttpServlet {
+			private static final long serialVersionUID = 1L;
+			private final String name;
+
+			PathServlet(String name) {
+				this.name = name;
+			}
+
+			@Override
+			protected void service(HttpServletRequest request, HttpServletResponse response)
+				throws ServletException, IOException {
+
+				PrintWriter writer = response.getWriter();
+				writer.write(name);
+				writer.write("|");
+				writer.write(String.valueOf(request.getServletPath()));
+				writer.write("|");
+				writer.write(String.valueOf(request.getPathInfo()));
+			}
+		}
+
+		String[][] servlets = new String[][] {
+			{"default", "/", "0"},
+			{"wildcard", "/precedence/*", "0"},
+			{"deepWildcard", "/precedence/a/*", "0"},
+			{"deepWildcardLow", "/precedence/a/*", "-1"},
+			{"extension", "*.txt", "0"},
+			{"exact", "/precedence/a/b", "0"}
+		};
+
+		for (String[] servlet : servlets) {
+			Dictionary<String, Object> props = new Hashtable<String, Object>();
+			props.put(HttpWhiteboardConstants.HTTP_WHITEBOARD_SERVLET_NAME, servlet[0]);
+			props.put(HttpWhiteboardConstants.HTTP_WHITEBOARD_SERVLET_PATTERN, servlet[1]);
+			props.put(Constants.SERVICE_RANKING, Integer.valueOf(servlet[2]));
+			registrations.add(getBundleContext().registerService(Servlet.class, new PathServlet(servlet[0]), props));
+		}
+
+		Assert.assertEquals("exact|/precedence/a/b|null", requestAdvisor.request("precedence/a/b"));
+		Assert.assertEquals("deepWildcard|/precedence/a|/b/c", requestAdvisor.request("precedence/a/b/c"));
+		Assert.assertEquals("deepWildcard|/precedence/a|null", requestAdvisor.request("precedence/a"));
+		Assert.assertEquals("wildcard|/precedence|/b", requestAdvisor.request("precedence/b"));
+		Assert.assertEquals("extension|/precedence/a/b.txt|null", requestAdvisor.request("precedence/a/b.txt"));
+		Assert.assertEquals("default|/|/other/c", requestAdvisor.request("other/c"));
+	}
+
+	public void test_DispatchCache() throws Exception {
+		String expected = "a";
+		TestFilter testFilter = new TestFilter();
+		Servlet testServlet = new BaseServlet(expected);
+
+		BundleContext bundleContext = getBundleContext();
+
+		ServiceReference<ExtendedHttpServiceRuntime> serviceReference =
+			bundleContext.getServiceReference(ExtendedHttpServiceRuntime.class);
+		ExtendedHttpServiceRuntime runtime = bundleContext.getService(serviceReference);
+
+		Dictionary<String, String> props = new Hashtable<String, String>();
+		props.put(HttpWhiteboardConstants.HTTP_WHITEBOARD_SERVLET_PATTERN, "/cached/*");
+		registrations.add(bundleContext.registerService(Servlet.class, testServlet, props));
+
+		Assert.assertEquals(expected, requestAdvisor.request("cached/a"));
+
+		DispatchCacheDTO before = runtime.getDispatchCacheDTO();
+
+		Assert.assertEquals(expected, requestAdvisor.request("cached/a"));
+		Assert.assertEquals(expected, requestAdvisor.request("cached/a?p=1"));
+
+		DispatchCacheDTO after = runtime.getDispatchCacheDTO();
+
+		// the cache is enabled by default
+		Assert.assertTrue(after.maxSize > 0);
+		Assert.assertTrue(after.size > 0);
+		Assert.assertEquals(before.generation, after.generation);
+		Assert.assertEquals(before.hits + 2, after.hits);
+		Assert.assertEquals(before.misses, after.misses);
+
+		// adding a filter must invalidate the cached resolution
+		props = new Hashtable<String, String>();
+		props.put(HttpWhiteboardConstants.HTTP_WHITEBOARD_FILTER_NAME, "F1");
+		props.put(HttpWhiteboardConstants.HTTP_WHITEBOARD_FILTER_PATTERN, "/cached/*");
+		ServiceRegistration<Filter> filterRegistration =
+			bundleContext.registerService(Filter.class, testFilter, props);
+
+		try {
+			Assert.assertEquals(expected, requestAdvisor.request("cached/a"));
+			Assert.assertTrue("testFilter did not get called.", testFilter.getCalled());
+			Assert.assertTrue(runtime.getDispatchCacheDTO().generation > after.generation);
+		}
+		finally {
+			filterRegistration.unregister();
+		}
+
+		testFilter.clear();
+
+		Assert.assertEquals(expected, requestAdvisor.request("cached/a"));
+		Assert.assertFalse("testFilter got called.", testFilter.getCalled());
+	}
+
+	public void test_RuntimeMetrics() throws Exception {
+		String expected = "a";
+		Servlet testServlet = new BaseServlet(expected);
+		Servlet slowServlet = new HttpServlet() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected void doGet(HttpServletRequest req, HttpServletResponse resp)
+				throws IOException, ServletException {
+
+				try {
+					Thread.sleep(20);
+				}
+				catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+				}
+
+				resp.getWriter().write("slow");
+			}
+		};
+		Servlet errorServlet = new HttpServlet() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected void doGet(HttpServletRequest req, HttpServletResponse resp)
+				throws IOException, ServletException {
+
+				if (req.getPathInfo().equals("/throw")) {
+					throw new ServletException("metrics");
+				}
+
+				resp.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+			}
+		};
+		TestFilter testFilter = new TestFilter();
+
+		BundleContext bundleContext = getBundleContext();
+
+		// metrics are disabled by default; the runtime reads the setting when jetty starts it
+		System.setProperty(ExtendedHttpServiceRuntime.METRICS_ENABLED, "true");
+
+		try {
+			stopJetty();
+			startJetty();
+
+			ServiceReference<ExtendedHttpServiceRuntime> serviceReference =
+				bundleContext.getServiceReference(ExtendedHttpServiceRuntime.class);
+			ExtendedHttpServiceRuntime runtime = bundleContext.getService(serviceReference);
+
+			Dictionary<String, Object> props = new Hashtable<String, Object>();
+			props.put(HttpWhiteboardConstants.HTTP_WHITEBOARD_SERVLET_NAME, "S1");
+			props.put(HttpWhiteboardConstants.HTTP_WHITEBOARD_SERVLET_PATTERN, "/metrics/*");
+			registrations.add(bundleContext.registerService(Servlet.class, testServlet, props));
+
+			props = new Hashtable<String, Object>();
+			props.put(HttpWhiteboardConstants.HTTP_WHITEBOARD_SERVLET_NAME, "S2");
+			props.put(HttpWhiteboardConstants.HTTP_WHITEBOARD_SERVLET_PATTERN, "/metrics-slow/*");
+			registrations.add(bundleContext.registerService(Servlet.class, slowServlet, props));
+
+			props = new Hashtable<String, Object>();
+			props.put(HttpWhiteboardConstants.HTTP_WHITEBOARD_SERVLET_NAME, "S3");
+			props.put(HttpWhiteboardConstants.HTTP_WHITEBOARD_SERVLET_PATTERN, "/metrics-error/*");
+			registrations.add(bundleContext.registerService(Servlet.class, errorServlet, props));
+
+			props = new Hashtable<String, Object>();
+			props.put(HttpWhiteboardConstants.HTTP_WHITEBOARD_FILTER_NAME, "F1");
+			props.put(HttpWhiteboardConstants.HTTP_WHITEBOARD_FILTER_PATTERN, new String[] {"/metrics/*", "/metrics-error/*"});
+			registrations.add(bundleContext.registerService(Filter.class, testFilter, props));
+
+			Assert.assertEquals(expected, requestAdvisor.request("metrics/a"));
+			Assert.assertEquals(expected, requestAdvisor.request("metrics/b"));
+			Assert.assertEquals("slow", requestAdvisor.request("metrics-slow/a"));
+			Assert.assertEquals("503", requestAdvisor.request("metrics-error/a", null).get("responseCode").get(0));
+			Assert.assertEquals("500", requestAdvisor.request("metrics-error/throw", null).get("responseCode").get(0));
+			Assert.assertTrue("testFilter did not get called.", testFilter.getCalled());
+
+			RuntimeMetricsDTO runtimeMetricsDTO = runtime.getRuntimeMetricsDTO();
+
+			Assert.assertTrue(runtimeMetricsDTO.enabled);
+
+			RequestMetricsDTO s1MetricsDTO = getRequestMetricsDTO(runtimeMetricsDTO.servletMetricsDTOs, "S1");
+
+			Assert.assertEquals(2, s1MetricsDTO.requests);
+			Assert.assertEquals(0, s1MetricsDTO.errors);
+			assertLatencies(s1MetricsDTO);
+
+			// a single request falls into one bucket, at most 25% wider than its latency
+			RequestMetricsDTO s2MetricsDTO = getRequestMetricsDTO(runtimeMetricsDTO.servletMetricsDTOs, "S2");
+
+			Assert.assertEquals(1, s2MetricsDTO.requests);
+			Assert.assertEquals(0, s2MetricsDTO.errors);
+			assertLatencies(s2MetricsDTO);
+			Assert.assertEquals(1, s2MetricsDTO.latencyCounts.length);
+			Assert.assertTrue(s2MetricsDTO.maxTime >= 20000);
+			Assert.assertTrue(s2MetricsDTO.latencyBounds[0] > s2MetricsDTO.maxTime);
+			Assert.assertTrue(s2MetricsDTO.latencyBounds[0] <= s2MetricsDTO.maxTime * 5 / 4 + 1);
+
+			RequestMetricsDTO s3MetricsDTO = getRequestMetricsDTO(runtimeMetricsDTO.servletMetricsDTOs, "S3");
+
+			Assert.assertEquals(2, s3MetricsDTO.requests);
+			Assert.assertEquals(2, s3MetricsDTO.errors);
+			assertLatencies(s3MetricsDTO);
+
+			// the filter time includes the servlets it wraps
+			RequestMetricsDTO f1MetricsDTO = getRequestMetricsDTO(runtimeMetricsDTO.filterMetricsDTOs, "F1");
+
+			Assert.assertEquals(4, f1MetricsDTO.requests);
+			Assert.assertEquals(2, f1MetricsDTO.errors);
+			assertLatencies(f1MetricsDTO);
+			Assert.assertTrue(f1MetricsDTO.maxTime >= Math.max(s1MetricsDTO.maxTime, s3MetricsDTO.maxTime));
+		}
+		finally {
+			System.clearProperty(ExtendedHttpServiceRuntime.METRICS_ENABLED);
+		}
+	}
+
+	private static RequestMetricsDTO getRequestMetricsDTO(RequestMetricsDTO[] requestMetricsDTOs, String name) {
+		for (RequestMetricsDTO requestMetricsDTO : requestMetricsDTOs) {
+			if (name.equals(requestMetricsDTO.name)) {
+				return requestMetricsDTO;
+			}
+		}
+
+		Assert.fail("No metrics for " + name);
+
+		return null;
+	}
+
+	private static void assertLatencies(RequestMetricsDTO requestMetricsDTO) {
+		Assert.assertEquals(requestMetricsDTO.latencyBounds.length, requestMetricsDTO.latencyCounts.length);
+
+		long total = 0;
+
+		for (int i = 0; i < requestMetricsDTO.latencyCounts.length; i++) {
+			Assert.assertTrue(requestMetricsDTO.latencyCounts[i] > 0);
+
+			if (i > 0) {
+				Assert.assertTrue(requestMetricsDTO.latencyBounds[i] > requestMetricsDTO.latencyBounds[i - 1]);
+			}
+
+			total += requestMetricsDTO.latencyCounts[i];
+		}
+
+		Assert.assertEquals(requestMetricsDTO.requests, total);
+		Assert.assertTrue(requestMetricsDTO.maxTime <= requestMetricsDTO.totalTime);
+		Assert.assertTrue(requestMetricsDTO.maxTime < requestMetricsDTO.latencyBounds[requestMetricsDTO.latencyBounds.length - 1]);
+	}
+
 	private static String getSubmittedFileName(Part part) {
 		for (String cd : part.getHeader("content-disposition").split(";")) {
 			if (cd.trim().startsWith("filename")) {
@@ -2458,6 +3139,7 @@ public class ServletTest extends TestCase {
 			Assert.assertTrue(scal1.added.get());
 			Assert.assertFalse(scal1.replaced.get());
 			Assert.assertFalse(scal1.removed.get());
+			Assert.assertSame(s1.getServletConfig().getServletContext(), scal1.servletContext.get());
 
 			requestAdvisor.request("s");
 
@@ -12,7 +12,9 @@
 package org.eclipse.equinox.http.servlet.tests.util;
 
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
+import javax.servlet.ServletContext;
 import javax.servlet.ServletContextAttributeEvent;
 import javax.servlet.ServletContextAttributeListener;
 
@@ -25,9 +27,11 @@ public class BaseServletContextAttributeListener
 	public AtomicBoolean added = new AtomicBoolean(false);
 	public AtomicBoolean replaced = new AtomicBoolean(false);
 	public AtomicBoolean removed = new AtomicBoolean(false);
+	public AtomicReference<ServletContext> servletContext = new AtomicReference<ServletContext>();
 
 	@Override
 	public void attributeAdded(ServletContextAttributeEvent arg0) {
+		servletContext.set(arg0.getServletContext());
 		added.set(true);
 	}
 
@@ -0,0 +1,56 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.http.servlet;
+
+import org.eclipse.equinox.http.servlet.dto.DispatchCacheDTO;
+import org.eclipse.equinox.http.servlet.dto.RuntimeMetricsDTO;
+import org.osgi.annotation.versioning.ProviderType;
+import org.osgi.service.http.runtime.HttpServiceRuntime;
+
+/**
+ * @since 1.2
+ * @noimplement This interface is not intended to be implemented by clients.
+ */
+@ProviderType
+public interface ExtendedHttpServiceRuntime extends HttpServiceRuntime {
+
+	/**
+	 * The name of the init parameter or framework property holding the
+	 * maximum number of resolved request paths cached by the runtime. A value
+	 * of <code>0</code> disables the cache.
+	 */
+	public static final String DISPATCH_CACHE_SIZE = "equinox.http.dispatch.cache.size"; //$NON-NLS-1$
+
+	/**
+	 * The name of the init parameter or framework property enabling the
+	 * request metrics of servlets, resources and filters. Metrics are
+	 * disabled by default.
+	 */
+	public static final String METRICS_ENABLED = "equinox.http.metrics.enabled"; //$NON-NLS-1$
+
+	/**
+	 * Returns the hit, miss and eviction counters of the cache of resolved
+	 * request paths.
+	 *
+	 * @return a snapshot of the dispatch cache state
+	 */
+	public DispatchCacheDTO getDispatchCacheDTO();
+
+	/**
+	 * Returns the request counts, error counts and latency histograms of the
+	 * servlets, resources and filters of all servlet contexts.
+	 *
+	 * @return a snapshot of the request metrics
+	 * @see #METRICS_ENABLED
+	 */
+	public RuntimeMetricsDTO getRuntimeMetricsDTO();
+
+}
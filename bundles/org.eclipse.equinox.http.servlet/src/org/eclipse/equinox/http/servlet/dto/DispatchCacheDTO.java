@@ -0,0 +1,55 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.http.servlet.dto;
+
+import org.osgi.dto.DTO;
+
+/**
+ * Represents the state of the cache of resolved request paths kept by an
+ * Http Service Runtime.
+ *
+ * @since 1.0
+ * @NotThreadSafe
+ */
+public class DispatchCacheDTO extends DTO {
+
+	/**
+	 * The number of entries that were dropped because the cache was full.
+	 */
+	public long	evictions;
+
+	/**
+	 * The current generation of the cache. It changes every time an endpoint,
+	 * filter or servlet context is added or removed.
+	 */
+	public long	generation;
+
+	/**
+	 * The number of requests that were dispatched from the cache.
+	 */
+	public long	hits;
+
+	/**
+	 * The maximum number of entries, <code>0</code> if the cache is disabled.
+	 */
+	public int	maxSize;
+
+	/**
+	 * The number of requests that had to be resolved.
+	 */
+	public long	misses;
+
+	/**
+	 * The current number of entries.
+	 */
+	public int	size;
+
+}
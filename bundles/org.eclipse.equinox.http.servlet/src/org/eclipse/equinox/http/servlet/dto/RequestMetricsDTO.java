@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.http.servlet.dto;
+
+import org.osgi.dto.DTO;
+
+/**
+ * Represents the request metrics recorded for a servlet, resource or filter
+ * registered with an Http Service Runtime.
+ * <p>
+ * The time spent in a filter includes the time spent in the rest of the
+ * filter chain.
+ *
+ * @since 1.0
+ * @NotThreadSafe
+ */
+public class RequestMetricsDTO extends DTO {
+
+	/**
+	 * The number of requests that threw an exception or ended with a status
+	 * code of 500 or above.
+	 */
+	public long	errors;
+
+	/**
+	 * The exclusive upper bounds, in microseconds, of the latency buckets
+	 * holding at least one request. The request counts of the buckets are in
+	 * {@link #latencyCounts}.
+	 */
+	public long[]	latencyBounds;
+
+	/**
+	 * The number of requests of each latency bucket in
+	 * {@link #latencyBounds}.
+	 */
+	public long[]	latencyCounts;
+
+	/**
+	 * The longest request, in microseconds.
+	 */
+	public long	maxTime;
+
+	/**
+	 * The name of the servlet, resource or filter.
+	 */
+	public String	name;
+
+	/**
+	 * The number of requests, including includes, forwards and error
+	 * dispatches.
+	 */
+	public long	requests;
+
+	/**
+	 * The service id of the servlet, resource or filter.
+	 */
+	public long	serviceId;
+
+	/**
+	 * The service id of the servlet context.
+	 */
+	public long	servletContextId;
+
+	/**
+	 * The total time spent handling requests, in microseconds.
+	 */
+	public long	totalTime;
+
+}
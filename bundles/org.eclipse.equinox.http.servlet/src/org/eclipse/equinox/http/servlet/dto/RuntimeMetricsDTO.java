@@ -0,0 +1,40 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.equinox.http.servlet.dto;
+
+import org.osgi.dto.DTO;
+
+/**
+ * Represents the request metrics of all servlets, resources and filters of
+ * an Http Service Runtime.
+ *
+ * @since 1.0
+ * @NotThreadSafe
+ */
+public class RuntimeMetricsDTO extends DTO {
+
+	/**
+	 * Whether metrics are recorded. When <code>false</code> both arrays are
+	 * empty.
+	 */
+	public boolean	enabled;
+
+	/**
+	 * The metrics of the filters.
+	 */
+	public RequestMetricsDTO[]	filterMetricsDTOs;
+
+	/**
+	 * The metrics of the servlets and resources.
+	 */
+	public RequestMetricsDTO[]	servletMetricsDTOs;
+
+}
@@ -20,6 +20,7 @@ import java.util.concurrent.ConcurrentMap;
 import javax.servlet.*;
 import javax.servlet.http.HttpServlet;
 import org.eclipse.equinox.http.servlet.ExtendedHttpService;
+import org.eclipse.equinox.http.servlet.ExtendedHttpServiceRuntime;
 import org.eclipse.equinox.http.servlet.internal.servlet.ProxyServlet;
 import org.eclipse.equinox.http.servlet.internal.util.HttpTuple;
 import org.eclipse.equinox.http.servlet.internal.util.UMDictionaryMap;
@@ -40,12 +41,17 @@ public class Activator
 	private static final String[] HTTP_SERVICES_CLASSES = new String[] {
 		HttpService.class.getName(), ExtendedHttpService.class.getName()
 	};
+	private static final String[] HTTP_SERVICE_RUNTIME_CLASSES = new String[] {
+		HttpServiceRuntime.class.getName(),
+		ExtendedHttpServiceRuntime.class.getName()
+	};
 
 	private static volatile BundleContext context;
 	private static ConcurrentMap<ProxyServlet, Object> registrations =
 		new ConcurrentHashMap<ProxyServlet, Object>();
 
 	private ServiceTracker<HttpServlet, HttpTuple> serviceTracker;
+	private ServiceRegistration<HttpMetricsCommand> metricsCommandRegistration;
 
 	public static void addProxyServlet(ProxyServlet proxyServlet) {
 		Object previousRegistration = registrations.putIfAbsent(
@@ -83,9 +89,13 @@ public class Activator
 			context, HttpServlet.class, this);
 
 		serviceTracker.open();
+
+		metricsCommandRegistration = new HttpMetricsCommand(context).register();
 	}
 
 	public void stop(BundleContext bundleContext) throws Exception {
+		metricsCommandRegistration.unregister();
+		metricsCommandRegistration = null;
 		serviceTracker.close();
 		serviceTracker = null;
 		context = null;
@@ -160,9 +170,9 @@ public class Activator
 			HTTP_SERVICES_CLASSES, httpServiceFactory, serviceProperties);
 
 		serviceProperties.put(HttpServiceRuntimeConstants.HTTP_SERVICE_ID, Collections.singletonList(hsfRegistration.getReference().getProperty(Constants.SERVICE_ID)));
-		ServiceRegistration<HttpServiceRuntime> hsrRegistration =
+		ServiceRegistration<?> hsrRegistration =
 			context.registerService(
-				HttpServiceRuntime.class, httpServiceRuntime,
+				HTTP_SERVICE_RUNTIME_CLASSES, httpServiceRuntime,
 				serviceProperties);
 		return new HttpTuple(
 			proxyServlet, httpServiceFactory, hsfRegistration,
@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ ******************************************************************************/
+
+package org.eclipse.equinox.http.servlet.internal;
+
+import java.util.Collection;
+import java.util.Hashtable;
+import org.eclipse.equinox.http.servlet.ExtendedHttpServiceRuntime;
+import org.eclipse.equinox.http.servlet.dto.RequestMetricsDTO;
+import org.eclipse.equinox.http.servlet.dto.RuntimeMetricsDTO;
+import org.osgi.framework.*;
+
+/**
+ * The <code>http:metrics</code> console command. It prints the request
+ * metrics of every http service runtime. The command is a plain service
+ * object, so no console bundle is required.
+ */
+public class HttpMetricsCommand {
+
+	public HttpMetricsCommand(BundleContext bundleContext) {
+		this.bundleContext = bundleContext;
+	}
+
+	public String metrics() throws InvalidSyntaxException {
+		Collection<ServiceReference<ExtendedHttpServiceRuntime>> serviceReferences =
+			bundleContext.getServiceReferences(
+				ExtendedHttpServiceRuntime.class, null);
+
+		StringBuilder sb = new StringBuilder();
+
+		for (ServiceReference<ExtendedHttpServiceRuntime> serviceReference : serviceReferences) {
+			ExtendedHttpServiceRuntime httpServiceRuntime = bundleContext.getService(serviceReference);
+
+			if (httpServiceRuntime == null) {
+				continue;
+			}
+
+			try {
+				RuntimeMetricsDTO runtimeMetricsDTO = httpServiceRuntime.getRuntimeMetricsDTO();
+
+				sb.append("Http service runtime "); //$NON-NLS-1$
+				sb.append(serviceReference.getProperty(Constants.SERVICE_ID));
+				sb.append(NEW_LINE);
+
+				if (!runtimeMetricsDTO.enabled) {
+					sb.append("  Metrics are disabled, set "); //$NON-NLS-1$
+					sb.append(ExtendedHttpServiceRuntime.METRICS_ENABLED);
+					sb.append("=true to enable them"); //$NON-NLS-1$
+					sb.append(NEW_LINE);
+
+					continue;
+				}
+
+				format(sb, "Servlets", runtimeMetricsDTO.servletMetricsDTOs); //$NON-NLS-1$
+				format(sb, "Filters", runtimeMetricsDTO.filterMetricsDTOs); //$NON-NLS-1$
+			}
+			finally {
+				bundleContext.ungetService(serviceReference);
+			}
+		}
+
+		if (sb.length() == 0) {
+			return "No http service runtime found"; //$NON-NLS-1$
+		}
+
+		return sb.toString();
+	}
+
+	public ServiceRegistration<HttpMetricsCommand> register() {
+		Hashtable<String, Object> properties = new Hashtable<String, Object>();
+
+		properties.put("osgi.command.scope", "http"); //$NON-NLS-1$ //$NON-NLS-2$
+		properties.put("osgi.command.function", new String[] {"metrics"}); //$NON-NLS-1$ //$NON-NLS-2$
+
+		return bundleContext.registerService(
+			HttpMetricsCommand.class, this, properties);
+	}
+
+	/*
+	 * The latency below which the given fraction of the requests completed,
+	 * rounded up to the upper bound of its bucket.
+	 */
+	static long percentile(RequestMetricsDTO requestMetricsDTO, double fraction) {
+		long total = 0;
+
+		for (long count : requestMetricsDTO.latencyCounts) {
+			total += count;
+		}
+
+		long rank = (long)Math.ceil(total * fraction);
+		long seen = 0;
+
+		for (int i = 0; i < requestMetricsDTO.latencyCounts.length; i++) {
+			seen += requestMetricsDTO.latencyCounts[i];
+
+			if (seen >= rank) {
+				return Math.min(
+					requestMetricsDTO.latencyBounds[i], requestMetricsDTO.maxTime);
+			}
+		}
+
+		return requestMetricsDTO.maxTime;
+	}
+
+	private void format(
+		StringBuilder sb, String title, RequestMetricsDTO[] requestMetricsDTOs) {
+
+		sb.append("  "); //$NON-NLS-1$
+		sb.append(title);
+		sb.append(" (requests, errors, mean/p50/p99/max microseconds):"); //$NON-NLS-1$
+		sb.append(NEW_LINE);
+
+		for (RequestMetricsDTO requestMetricsDTO : requestMetricsDTOs) {
+			long mean = (requestMetricsDTO.requests == 0) ? 0 :
+				requestMetricsDTO.totalTime / requestMetricsDTO.requests;
+
+			sb.append("    "); //$NON-NLS-1$
+			sb.append(requestMetricsDTO.name);
+			sb.append(" [context "); //$NON-NLS-1$
+			sb.append(requestMetricsDTO.servletContextId);
+			sb.append(", service "); //$NON-NLS-1$
+			sb.append(requestMetricsDTO.serviceId);
+			sb.append("] "); //$NON-NLS-1$
+			sb.append(requestMetricsDTO.requests);
+			sb.append(", "); //$NON-NLS-1$
+			sb.append(requestMetricsDTO.errors);
+			sb.append(", "); //$NON-NLS-1$
+			sb.append(mean);
+			sb.append('/');
+			sb.append(percentile(requestMetricsDTO, 0.5));
+			sb.append('/');
+			sb.append(percentile(requestMetricsDTO, 0.99));
+			sb.append('/');
+			sb.append(requestMetricsDTO.maxTime);
+			sb.append(NEW_LINE);
+		}
+	}
+
+	private static final String NEW_LINE = System.getProperty("line.separator"); //$NON-NLS-1$
+
+	private final BundleContext bundleContext;
+
+}
@@ -20,10 +20,12 @@ import java.util.concurrent.atomic.AtomicReference;
 import javax.servlet.*;
 import javax.servlet.Filter;
 import javax.servlet.http.*;
+import org.eclipse.equinox.http.servlet.ExtendedHttpServiceRuntime;
 import org.eclipse.equinox.http.servlet.context.ContextPathCustomizer;
+import org.eclipse.equinox.http.servlet.dto.*;
 import org.eclipse.equinox.http.servlet.internal.context.*;
+import org.eclipse.equinox.http.servlet.internal.context.RouteIndex.Route;
 import org.eclipse.equinox.http.servlet.internal.error.*;
-import org.eclipse.equinox.http.servlet.internal.servlet.Match;
 import org.eclipse.equinox.http.servlet.internal.util.*;
 import org.osgi.framework.*;
 import org.osgi.framework.dto.ServiceReferenceDTO;
@@ -42,7 +44,7 @@ import org.osgi.util.tracker.ServiceTrackerCustomizer;
  */
 public class HttpServiceRuntimeImpl
 	implements
-		HttpServiceRuntime,
+		ExtendedHttpServiceRuntime,
 		ServiceTrackerCustomizer<ServletContextHelper, AtomicReference<ContextController>> {
 
 	public HttpServiceRuntimeImpl(
@@ -60,6 +62,9 @@ public class HttpServiceRuntimeImpl
 		this.parentServletContext = parentServletContext;
 		this.attributes = Collections.unmodifiableMap(attributes);
 		this.targetFilter = "(" + Activator.UNIQUE_SERVICE_ID + "=" + attributes.get(Activator.UNIQUE_SERVICE_ID) + ")";  //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		this.dispatchTargetsCache = new DispatchTargetsCache(
+			getDispatchCacheSize(consumingContext, attributes));
+		this.metricsEnabled = isMetricsEnabled(consumingContext, attributes);
 
 		contextServiceTracker =
 			new ServiceTracker<ServletContextHelper, AtomicReference<ContextController>>(
@@ -113,6 +118,8 @@ public class HttpServiceRuntimeImpl
 
 			controllerMap.put(serviceReference, contextController);
 
+			updateContextPathIndex();
+
 			result.set(contextController);
 		}
 		catch (HttpWhiteboardFailureException hwfe) {
@@ -178,6 +185,8 @@ public class HttpServiceRuntimeImpl
 		contextPathAdaptorTracker.close();
 
 		controllerMap.clear();
+		contextPathIndex = new ContextPathIndex(controllerMap);
+		dispatchTargetsCache.invalidate();
 		registeredObjects.clear();
 
 		failedFilterDTOs.clear();
@@ -202,33 +211,81 @@ public class HttpServiceRuntimeImpl
 		String queryString = Path.findQueryString(path);
 		String requestURI = Path.stripQueryString(path);
 
-		// perfect match
-		DispatchTargets dispatchTargets = getDispatchTargets(
-			requestURI, null, queryString, Match.EXACT, requestInfoDTO);
+		Collection<ContextController> contextControllers = getContextControllers(
+			requestURI);
 
-		if (dispatchTargets == null) {
-			// extension match
-			String extension = Path.findExtension(requestURI);
+		if ((contextControllers == null) || contextControllers.isEmpty()) {
+			return null;
+		}
+
+		String contextPath =
+			contextControllers.iterator().next().getContextPath();
+
+		requestURI = requestURI.substring(contextPath.length());
+
+		ContextController matchingContextController = null;
+		Route matchingRoute = null;
+
+		// a single lookup per context; the best route wins and ties go to the
+		// first context, same as walking each match type over all contexts
+		for (ContextController contextController : contextControllers) {
+			Route route = contextController.resolve(requestURI);
 
-			dispatchTargets = getDispatchTargets(
-				requestURI, extension, queryString, Match.EXTENSION,
-				requestInfoDTO);
+			if ((route != null) && route.isBetterThan(matchingRoute)) {
+				matchingContextController = contextController;
+				matchingRoute = route;
+			}
 		}
 
-		if (dispatchTargets == null) {
-			// regex match
-			dispatchTargets = getDispatchTargets(
-				requestURI, null, queryString, Match.REGEX, requestInfoDTO);
+		if (matchingRoute == null) {
+			return null;
 		}
 
-		if (dispatchTargets == null) {
-			// handle '/' aliases
-			dispatchTargets = getDispatchTargets(
-				requestURI, null, queryString, Match.DEFAULT_SERVLET,
-				requestInfoDTO);
+		return matchingContextController.getDispatchTargets(
+			matchingRoute, requestURI, queryString, requestInfoDTO);
+	}
+
+	@Override
+	public DispatchCacheDTO getDispatchCacheDTO() {
+		return dispatchTargetsCache.getDispatchCacheDTO();
+	}
+
+	@Override
+	public RuntimeMetricsDTO getRuntimeMetricsDTO() {
+		List<RequestMetricsDTO> filterMetricsDTOs = new ArrayList<RequestMetricsDTO>();
+		List<RequestMetricsDTO> servletMetricsDTOs = new ArrayList<RequestMetricsDTO>();
+
+		for (ContextController contextController : controllerMap.values()) {
+			try {
+				contextController.collectRequestMetricsDTOs(
+					servletMetricsDTOs, filterMetricsDTOs);
+			}
+			catch (IllegalStateException ise) {
+				// the context controller was shut down concurrently
+			}
+		}
+
+		RuntimeMetricsDTO runtimeMetricsDTO = new RuntimeMetricsDTO();
+
+		runtimeMetricsDTO.enabled = metricsEnabled;
+		runtimeMetricsDTO.filterMetricsDTOs = filterMetricsDTOs.toArray(
+			new RequestMetricsDTO[filterMetricsDTOs.size()]);
+		runtimeMetricsDTO.servletMetricsDTOs = servletMetricsDTOs.toArray(
+			new RequestMetricsDTO[servletMetricsDTOs.size()]);
+
+		return runtimeMetricsDTO;
+	}
+
+	/**
+	 * Returns a new recorder for the requests of a servlet, resource or
+	 * filter, or <code>null</code> if metrics are disabled.
+	 */
+	public RequestMetrics createRequestMetrics() {
+		if (!metricsEnabled) {
+			return null;
 		}
 
-		return dispatchTargets;
+		return new RequestMetrics();
 	}
 
 	public Set<Object> getRegisteredObjects() {
@@ -321,114 +378,100 @@ public class HttpServiceRuntimeImpl
 			contextController.destroy();
 		}
 		controllerMap.remove(serviceReference);
+		updateContextPathIndex();
 		failedServletContextDTOs.remove(serviceReference);
 		trackingContext.ungetService(serviceReference);
 	}
 
 	Collection<ContextController> getContextControllers(String requestURI) {
-		int pos = requestURI.lastIndexOf('/');
+		return contextPathIndex.getContextControllers(requestURI);
+	}
 
-		do {
-			List<ContextController> contextControllers = new ArrayList<ContextController>();
+	private void updateContextPathIndex() {
+		contextPathIndex = new ContextPathIndex(controllerMap);
 
-			for (ContextController contextController : controllerMap.values()) {
-				if (contextController.getContextPath().equals(requestURI)) {
-					contextControllers.add(contextController);
-				}
-			}
+		invalidateDispatchTargets();
+	}
 
-			if (!contextControllers.isEmpty()) {
-				return contextControllers;
-			}
+	private int getDispatchCacheSize(
+		BundleContext bundleContext, Map<String, Object> attributes) {
 
-			if (pos > -1) {
-				requestURI = requestURI.substring(0, pos);
-				pos = requestURI.lastIndexOf('/');
+		Object value = attributes.get(DISPATCH_CACHE_SIZE);
 
-				continue;
-			}
+		if (value == null) {
+			value = bundleContext.getProperty(DISPATCH_CACHE_SIZE);
+		}
 
-			break;
+		if (value == null) {
+			return DEFAULT_DISPATCH_CACHE_SIZE;
 		}
-		while (true);
 
-		return null;
-	}
+		try {
+			return Integer.parseInt(String.valueOf(value).trim());
+		}
+		catch (NumberFormatException nfe) {
+			parentServletContext.log(
+				"Invalid " + DISPATCH_CACHE_SIZE + " value: " + value, nfe); //$NON-NLS-1$ //$NON-NLS-2$
 
-	long generateLegacyId() {
-		return legacyIdGenerator.getAndIncrement();
+			return DEFAULT_DISPATCH_CACHE_SIZE;
+		}
 	}
 
-	public boolean doDispatch(
-			HttpServletRequest request, HttpServletResponse response, String path)
-		throws IOException, ServletException {
+	private boolean isMetricsEnabled(
+		BundleContext bundleContext, Map<String, Object> attributes) {
 
-		DispatchTargets dispatchTargets = getDispatchTargets(path, null);
+		Object value = attributes.get(METRICS_ENABLED);
 
-		if (dispatchTargets == null) {
+		if (value == null) {
+			value = bundleContext.getProperty(METRICS_ENABLED);
+		}
+
+		if (value == null) {
 			return false;
 		}
 
-		return dispatchTargets.doDispatch(
-			request, response, path, request.getDispatcherType());
+		return Boolean.valueOf(String.valueOf(value).trim());
 	}
 
-	private DispatchTargets getDispatchTargets(
-		String requestURI, String extension, String queryString, Match match,
-		RequestInfoDTO requestInfoDTO) {
-
-		Collection<ContextController> contextControllers = getContextControllers(
-			requestURI);
-
-		if ((contextControllers == null) || contextControllers.isEmpty()) {
-			return null;
-		}
-
-		String contextPath =
-			contextControllers.iterator().next().getContextPath();
+	long generateLegacyId() {
+		return legacyIdGenerator.getAndIncrement();
+	}
 
-		requestURI = requestURI.substring(contextPath.length());
+	/**
+	 * Drops every cached resolution. Must be called whenever an endpoint,
+	 * filter or servlet context is added or removed.
+	 */
+	public void invalidateDispatchTargets() {
+		dispatchTargetsCache.invalidate();
+	}
 
-		int pos = requestURI.lastIndexOf('/');
+	public boolean doDispatch(
+			HttpServletRequest request, HttpServletResponse response, String path)
+		throws IOException, ServletException {
 
-		String servletPath = requestURI;
-		String pathInfo = null;
+		String requestURI = Path.stripQueryString(path);
 
-		if (match == Match.DEFAULT_SERVLET) {
-			pathInfo = servletPath;
-			servletPath = Const.SLASH;
-		}
+		DispatchTargets dispatchTargets = dispatchTargetsCache.get(requestURI);
 
-		do {
-			for (ContextController contextController : contextControllers) {
-				DispatchTargets dispatchTargets =
-					contextController.getDispatchTargets(
-						null, requestURI, servletPath, pathInfo,
-						extension, queryString, match, requestInfoDTO);
+		if (dispatchTargets == null) {
+			long generation = dispatchTargetsCache.getGeneration();
 
-				if (dispatchTargets != null) {
-					return dispatchTargets;
-				}
-			}
+			dispatchTargets = getDispatchTargets(requestURI, null);
 
-			if (match == Match.EXACT) {
-				break;
+			if (dispatchTargets == null) {
+				return false;
 			}
 
-			if (pos > -1) {
-				String newServletPath = requestURI.substring(0, pos);
-				pathInfo = requestURI.substring(pos);
-				servletPath = newServletPath;
-				pos = servletPath.lastIndexOf('/');
-
-				continue;
-			}
+			dispatchTargetsCache.put(requestURI, dispatchTargets, generation);
+		}
 
-			break;
+		if (requestURI.length() < path.length()) {
+			dispatchTargets = dispatchTargets.withQueryString(
+				Path.findQueryString(path));
 		}
-		while (true);
 
-		return null;
+		return dispatchTargets.doDispatch(
+			request, response, path, request.getDispatcherType());
 	}
 
 	private FailedFilterDTO[] getFailedFilterDTOs() {
@@ -1070,7 +1113,11 @@ public class HttpServiceRuntimeImpl
 	}
 
 	private Map<String, Object> attributes;
+	private static final int DEFAULT_DISPATCH_CACHE_SIZE = 512;
+
 	private final String targetFilter;
+	private final DispatchTargetsCache dispatchTargetsCache;
+	private final boolean metricsEnabled;
 	private final ServiceRegistration<ServletContextHelper> defaultContextReg;
 	private ServletContext parentServletContext;
 
@@ -1094,6 +1141,7 @@ public class HttpServiceRuntimeImpl
 
 	private ConcurrentMap<ServiceReference<ServletContextHelper>, ContextController> controllerMap =
 		new ConcurrentHashMap<ServiceReference<ServletContextHelper>, ContextController>();
+	private volatile ContextPathIndex contextPathIndex = new ContextPathIndex(controllerMap);
 
 	private final ConcurrentMap<ServiceReference<Filter>, FailedFilterDTO> failedFilterDTOs =
 		new ConcurrentHashMap<ServiceReference<Filter>, FailedFilterDTO>();
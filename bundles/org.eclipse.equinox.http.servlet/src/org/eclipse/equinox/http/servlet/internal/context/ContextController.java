@@ -15,13 +15,17 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.security.AccessController;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Pattern;
 import javax.servlet.*;
 import javax.servlet.Filter;
 import javax.servlet.http.*;
+import org.eclipse.equinox.http.servlet.dto.RequestMetricsDTO;
 import org.eclipse.equinox.http.servlet.internal.HttpServiceRuntimeImpl;
+import org.eclipse.equinox.http.servlet.internal.context.RouteIndex.Route;
 import org.eclipse.equinox.http.servlet.internal.customizer.*;
 import org.eclipse.equinox.http.servlet.internal.error.*;
 import org.eclipse.equinox.http.servlet.internal.registration.*;
@@ -164,6 +168,13 @@ public class ContextController {
 
 		servletServiceTracker.open();
 
+		// shared by the resource registrations of the context
+		fileResolver = FileResolver.create(consumingContext);
+
+		if (fileResolver != null) {
+			fileResolver.open();
+		}
+
 		resourceServiceTracker = new ServiceTracker<Object, AtomicReference<ResourceRegistration>>(
 			trackingContext, httpServiceRuntime.getResourceFilter(),
 			new ContextResourceTrackerCustomizer(
@@ -295,6 +306,7 @@ public class ContextController {
 		newRegistration.init(filterConfig);
 
 		filterRegistrations.add(newRegistration);
+		updateFilterIndex();
 		return newRegistration;
 	}
 
@@ -398,11 +410,26 @@ public class ContextController {
 			checkPattern(pattern);
 		}
 
+		long cacheSize = getLongProperty(
+			resourceRef, Const.EQUINOX_RESOURCE_CACHE_SIZE, 0);
+		long cacheThreshold = getLongProperty(
+			resourceRef, Const.EQUINOX_RESOURCE_CACHE_THRESHOLD,
+			DEFAULT_RESOURCE_CACHE_THRESHOLD);
+
 		Bundle bundle = resourceRef.getBundle();
 		ServletContextHelper curServletContextHelper = getServletContextHelper(
 			bundle);
+		boolean precompressed = Boolean.parseBoolean(
+			String.valueOf(resourceRef.getProperty(
+				Const.EQUINOX_RESOURCE_PRECOMPRESSED)));
+		ResourceCache resourceCache = null;
+		if (cacheSize > 0) {
+			resourceCache = new ResourceCache(
+				consumingContext, bundle, cacheSize, cacheThreshold);
+		}
 		Servlet servlet = new ResourceServlet(
-			prefix, curServletContextHelper, AccessController.getContext());
+			prefix, curServletContextHelper, AccessController.getContext(),
+			precompressed, resourceCache, fileResolver);
 
 		ResourceDTO resourceDTO = new ResourceDTO();
 
@@ -429,6 +456,8 @@ public class ContextController {
 
 		endpointRegistrations.add(resourceRegistration);
 
+		updateRouteIndex();
+
 		return resourceRegistration;
 	}
 
@@ -564,18 +593,26 @@ public class ContextController {
 
 		endpointRegistrations.add(servletRegistration);
 
+		updateRouteIndex();
+
 		return servletRegistration;
 	}
 
 	public void destroy() {
 		flushActiveSessions();
 		resourceServiceTracker.close();
+
+		if (fileResolver != null) {
+			fileResolver.close();
+		}
+
 		servletServiceTracker.close();
 		filterServiceTracker.close();
 		listenerServiceTracker.close();
 
 		endpointRegistrations.clear();
 		filterRegistrations.clear();
+		updateRouteIndex();
 		listenerRegistrations.clear();
 		eventListeners.clear();
 		proxyContext.destroy();
@@ -598,129 +635,71 @@ public class ContextController {
 	public DispatchTargets getDispatchTargets(
 		String path, RequestInfoDTO requestInfoDTO) {
 
+		checkShutdown();
+
 		String queryString = Path.findQueryString(path);
 		String requestURI = Path.stripQueryString(path);
 
-		// perfect match
-		DispatchTargets dispatchTargets = getDispatchTargets(
-			requestURI, null, queryString, Match.EXACT, requestInfoDTO);
-
-		if (dispatchTargets == null) {
-			// extension match
-			String extension = Path.findExtension(requestURI);
-
-			dispatchTargets = getDispatchTargets(
-				requestURI, extension, queryString, Match.EXTENSION,
-				requestInfoDTO);
-		}
-
-		if (dispatchTargets == null) {
-			// regex match
-			dispatchTargets = getDispatchTargets(
-				requestURI, null, queryString, Match.REGEX, requestInfoDTO);
-		}
+		Route route = routeIndex.resolve(requestURI);
 
-		if (dispatchTargets == null) {
-			// handle '/' aliases
-			dispatchTargets = getDispatchTargets(
-				requestURI, null, queryString, Match.DEFAULT_SERVLET,
-				requestInfoDTO);
+		if (route == null) {
+			return null;
 		}
 
-		return dispatchTargets;
+		return getDispatchTargets(route, requestURI, queryString, requestInfoDTO);
 	}
 
-	private DispatchTargets getDispatchTargets(
-		String requestURI, String extension, String queryString, Match match,
+	public DispatchTargets getDispatchTargets(
+		Route route, String requestURI, String queryString,
 		RequestInfoDTO requestInfoDTO) {
 
-		int pos = requestURI.lastIndexOf('/');
-
-		String servletPath = requestURI;
-		String pathInfo = null;
-
-		if (match == Match.DEFAULT_SERVLET) {
-			pathInfo = servletPath;
-			servletPath = Const.SLASH;
-		}
-
-		do {
-			DispatchTargets dispatchTargets = getDispatchTargets(
-				null, requestURI, servletPath, pathInfo,
-				extension, queryString, match, requestInfoDTO);
+		checkShutdown();
 
-			if (dispatchTargets != null) {
-				return dispatchTargets;
-			}
+		return getDispatchTargets(
+			route.getEndpointRegistration(), null, requestURI,
+			route.getServletPath(), route.getPathInfo(), queryString,
+			requestInfoDTO);
+	}
 
-			if (match == Match.EXACT) {
-				break;
-			}
+	public DispatchTargets getNamedDispatchTargets(String servletName) {
+		checkShutdown();
 
-			if (pos > -1) {
-				String newServletPath = requestURI.substring(0, pos);
-				pathInfo = requestURI.substring(pos);
-				servletPath = newServletPath;
-				pos = servletPath.lastIndexOf('/');
+		EndpointRegistration<?> endpointRegistration = routeIndex.getByName(
+			servletName);
 
-				continue;
-			}
-
-			break;
+		if (endpointRegistration == null) {
+			return null;
 		}
-		while (true);
 
-		return null;
+		return getDispatchTargets(
+			endpointRegistration, servletName, null, null, null, null, null);
 	}
 
-	public DispatchTargets getDispatchTargets(
-		String servletName, String requestURI, String servletPath,
-		String pathInfo, String extension, String queryString, Match match,
-		RequestInfoDTO requestInfoDTO) {
-
+	public Route resolve(String requestURI) {
 		checkShutdown();
 
-		EndpointRegistration<?> endpointRegistration = null;
-		for (EndpointRegistration<?> curEndpointRegistration : endpointRegistrations) {
-			if (curEndpointRegistration.match(servletName, servletPath, pathInfo, extension, match) != null) {
-				endpointRegistration = curEndpointRegistration;
-
-				break;
-			}
-		}
-
-		if (endpointRegistration == null) {
-			return null;
-		}
+		return routeIndex.resolve(requestURI);
+	}
 
-		if (match == Match.EXTENSION) {
-			servletPath = servletPath + pathInfo;
-			pathInfo = null;
-		}
+	private DispatchTargets getDispatchTargets(
+		EndpointRegistration<?> endpointRegistration, String servletName,
+		String requestURI, String servletPath, String pathInfo,
+		String queryString, RequestInfoDTO requestInfoDTO) {
 
 		addEnpointRegistrationsToRequestInfo(
 			endpointRegistration, requestInfoDTO);
 
-		if (filterRegistrations.isEmpty()) {
+		FilterIndex curFilterIndex = filterIndex;
+
+		if (curFilterIndex.isEmpty()) {
 			return new DispatchTargets(
 				this, endpointRegistration, servletName, requestURI, servletPath,
 				pathInfo, queryString);
 		}
 
-		if (requestURI != null) {
-			int x = requestURI.lastIndexOf('.');
-
-			if (x != -1) {
-				extension = requestURI.substring(x + 1);
-			}
-		}
-
 		List<FilterRegistration> matchingFilterRegistrations =
-			new ArrayList<FilterRegistration>();
-
-		collectFilters(
-			matchingFilterRegistrations, endpointRegistration.getName(), requestURI,
-			servletPath, pathInfo, extension);
+			curFilterIndex.getMatchingFilterRegistrations(
+				endpointRegistration, requestURI);
 
 		addFilterRegistrationsToRequestInfo(
 			matchingFilterRegistrations, requestInfoDTO);
@@ -730,24 +709,10 @@ public class ContextController {
 			requestURI, servletPath, pathInfo, queryString);
 	}
 
-	private void collectFilters(
-		List<FilterRegistration> matchingFilterRegistrations,
-		String servletName, String requestURI, String servletPath, String pathInfo, String extension) {
-
-		for (FilterRegistration filterRegistration : filterRegistrations) {
-			if ((filterRegistration.match(
-					servletName, requestURI, extension, null) != null) &&
-				!matchingFilterRegistrations.contains(filterRegistration)) {
-
-				matchingFilterRegistrations.add(filterRegistration);
-			}
-		}
-	}
-
 	public Set<EndpointRegistration<?>> getEndpointRegistrations() {
 		checkShutdown();
 
-		return endpointRegistrations;
+		return Collections.unmodifiableSet(endpointRegistrations);
 	}
 
 	public EventListeners getEventListeners() {
@@ -759,7 +724,7 @@ public class ContextController {
 	public Set<FilterRegistration> getFilterRegistrations() {
 		checkShutdown();
 
-		return filterRegistrations;
+		return Collections.unmodifiableSet(filterRegistrations);
 	}
 
 	public String getFullContextPath() {
@@ -827,6 +792,35 @@ public class ContextController {
 		return servletContextDTO;
 	}
 
+	public void collectRequestMetricsDTOs(
+		List<RequestMetricsDTO> servletMetricsDTOs,
+		List<RequestMetricsDTO> filterMetricsDTOs) {
+
+		checkShutdown();
+
+		for (EndpointRegistration<?> endpointRegistration : endpointRegistrations) {
+			RequestMetrics requestMetrics = endpointRegistration.getRequestMetrics();
+
+			if (requestMetrics != null) {
+				servletMetricsDTOs.add(
+					createRequestMetricsDTO(
+						requestMetrics, endpointRegistration.getName(),
+						endpointRegistration.getServiceId()));
+			}
+		}
+
+		for (FilterRegistration filterRegistration : filterRegistrations) {
+			RequestMetrics requestMetrics = filterRegistration.getRequestMetrics();
+
+			if (requestMetrics != null) {
+				filterMetricsDTOs.add(
+					createRequestMetricsDTO(
+						requestMetrics, filterRegistration.getD().name,
+						filterRegistration.getD().serviceId));
+			}
+		}
+	}
+
 	public boolean matches(ServiceReference<?> whiteBoardService) {
 		String contextSelector = (String) whiteBoardService.getProperty(
 			HttpWhiteboardConstants.HTTP_WHITEBOARD_CONTEXT_SELECT);
@@ -998,11 +992,9 @@ public class ContextController {
 	private ServletContext createServletContext(
 		Bundle curBundle, ServletContextHelper curServletContextHelper) {
 
-		ServletContextAdaptor adaptor = new ServletContextAdaptor(
+		return new ServletContextAdaptor(
 			this, curBundle, curServletContextHelper, eventListeners,
 			AccessController.getContext());
-
-		return adaptor.createServletContext();
 	}
 
 	private void collectEndpointDTOs(
@@ -1035,6 +1027,20 @@ public class ContextController {
 			new ServletDTO[servletDTOs.size()]);
 	}
 
+	private RequestMetricsDTO createRequestMetricsDTO(
+		RequestMetrics requestMetrics, String name, long serviceId) {
+
+		RequestMetricsDTO requestMetricsDTO = new RequestMetricsDTO();
+
+		requestMetrics.fill(requestMetricsDTO);
+
+		requestMetricsDTO.name = name;
+		requestMetricsDTO.serviceId = serviceId;
+		requestMetricsDTO.servletContextId = getServiceId();
+
+		return requestMetricsDTO;
+	}
+
 	private void collectFilterDTOs(
 		ServletContextDTO servletContextDTO) {
 
@@ -1112,6 +1118,34 @@ public class ContextController {
 		return classes;
 	}
 
+	private long getLongProperty(
+		ServiceReference<?> serviceReference, String key, long defaultValue) {
+
+		Object value = serviceReference.getProperty(key);
+
+		if (value == null) {
+			return defaultValue;
+		}
+
+		NumberFormatException cause = null;
+
+		try {
+			long longValue = Long.parseLong(String.valueOf(value).trim());
+
+			if (longValue >= 0) {
+				return longValue;
+			}
+		}
+		catch (NumberFormatException nfe) {
+			cause = nfe;
+		}
+
+		httpServiceRuntime.log(
+			"Invalid " + key + " value: " + value, cause); //$NON-NLS-1$ //$NON-NLS-2$
+
+		return defaultValue;
+	}
+
 	private ServletContextHelper getServletContextHelper(Bundle curBundle) {
 		BundleContext context = curBundle.getBundleContext();
 		return context.getService(servletContextHelperRef);
@@ -1139,22 +1173,34 @@ public class ContextController {
 	}
 
 	private void flushActiveSessions() {
-		Collection<HttpSessionAdaptor> currentActiveSessions;
-		synchronized (activeSessions) {
-			currentActiveSessions = new ArrayList<HttpSessionAdaptor>(activeSessions.values());
-			activeSessions.clear();
-		}
-		for (HttpSessionAdaptor httpSessionAdaptor : currentActiveSessions) {
+		Iterator<HttpSessionAdaptor> iterator = activeSessions.values().iterator();
+		while (iterator.hasNext()) {
+			HttpSessionAdaptor httpSessionAdaptor = iterator.next();
+			iterator.remove();
 			httpSessionAdaptor.invalidate();
 		}
 	}
 
-	public void removeActiveSession(HttpSession session) {
-		synchronized (activeSessions) {
-			activeSessions.remove(session);
+	public void removeEndpointRegistration(
+		EndpointRegistration<?> endpointRegistration) {
+
+		if (endpointRegistrations.remove(endpointRegistration)) {
+			updateRouteIndex();
 		}
 	}
 
+	public void removeFilterRegistration(
+		FilterRegistration filterRegistration) {
+
+		if (filterRegistrations.remove(filterRegistration)) {
+			updateFilterIndex();
+		}
+	}
+
+	public void removeActiveSession(HttpSession session) {
+		activeSessions.remove(session);
+	}
+
 	public void fireSessionIdChanged(String oldSessionId) {
 		ServletContext servletContext = proxyContext.getServletContext();
 		if ((servletContext.getMajorVersion() <= 3) && (servletContext.getMinorVersion() < 1)) {
@@ -1167,11 +1213,7 @@ public class ContextController {
 			return;
 		}
 
-		Collection<HttpSessionAdaptor> currentActiveSessions;
-		synchronized (activeSessions) {
-			currentActiveSessions = new ArrayList<HttpSessionAdaptor>(activeSessions.values());
-		}
-		for (HttpSessionAdaptor httpSessionAdaptor : currentActiveSessions) {
+		for (HttpSessionAdaptor httpSessionAdaptor : activeSessions.values()) {
 			HttpSessionEvent httpSessionEvent = new HttpSessionEvent(httpSessionAdaptor);
 			for (javax.servlet.http.HttpSessionIdListener listener : listeners) {
 				listener.sessionIdChanged(httpSessionEvent, oldSessionId);
@@ -1181,24 +1223,41 @@ public class ContextController {
 
 	public HttpSessionAdaptor getSessionAdaptor(
 		HttpSession session, ServletContext servletContext) {
-		boolean created = false;
-		HttpSessionAdaptor sessionAdaptor;
-		synchronized (activeSessions) {
-			sessionAdaptor = activeSessions.get(session);
-			if (sessionAdaptor == null) {
-				created = true;
-				sessionAdaptor = HttpSessionAdaptor.createHttpSessionAdaptor(session, servletContext, this);
-				activeSessions.put(session, sessionAdaptor);
-			}
+		HttpSessionAdaptor sessionAdaptor = activeSessions.get(session);
+		if (sessionAdaptor != null) {
+			return sessionAdaptor;
 		}
-		if (created) {
-			for (HttpSessionListener listener : eventListeners.get(HttpSessionListener.class)) {
-				listener.sessionCreated(new HttpSessionEvent(sessionAdaptor));
-			}
+		// the new adaptor has no side effects until it wins the race below
+		sessionAdaptor = HttpSessionAdaptor.createHttpSessionAdaptor(session, servletContext, this);
+		HttpSessionAdaptor previousSessionAdaptor = activeSessions.putIfAbsent(session, sessionAdaptor);
+		if (previousSessionAdaptor != null) {
+			return previousSessionAdaptor;
+		}
+		sessionAdaptor.bindToSession();
+		for (HttpSessionListener listener : eventListeners.get(HttpSessionListener.class)) {
+			listener.sessionCreated(new HttpSessionEvent(sessionAdaptor));
 		}
 		return sessionAdaptor;
 	}
 
+	private void updateFilterIndex() {
+		synchronized (filterRegistrations) {
+			filterIndex = new FilterIndex(
+				filterRegistrations, endpointRegistrations);
+		}
+
+		httpServiceRuntime.invalidateDispatchTargets();
+	}
+
+	private void updateRouteIndex() {
+		synchronized (endpointRegistrations) {
+			routeIndex = new RouteIndex(endpointRegistrations);
+		}
+
+		// the filter index keeps the filters of each endpoint
+		updateFilterIndex();
+	}
+
 	private void validate(String preValidationContextName, String preValidationContextPath) {
 		if (!contextNamePattern.matcher(preValidationContextName).matches()) {
 			throw new IllegalContextNameException(
@@ -1220,6 +1279,8 @@ public class ContextController {
 	private static final String[] DISPATCHER =
 		new String[] {DispatcherType.REQUEST.toString()};
 
+	private static final long DEFAULT_RESOURCE_CACHE_THRESHOLD = 64 * 1024;
+
 	private static final Pattern contextNamePattern = Pattern.compile("^([a-zA-Z_0-9\\-]+\\.)*[a-zA-Z_0-9\\-]+$"); //$NON-NLS-1$
 
 	private final Map<String, String> initParams;
@@ -1231,12 +1292,15 @@ public class ContextController {
 	private final Set<EndpointRegistration<?>> endpointRegistrations = new ConcurrentSkipListSet<EndpointRegistration<?>>();
 	private final EventListeners eventListeners = new EventListeners();
 	private final Set<FilterRegistration> filterRegistrations = new ConcurrentSkipListSet<FilterRegistration>();
-	private final Map<HttpSession, HttpSessionAdaptor> activeSessions = new HashMap<HttpSession, HttpSessionAdaptor>();
+	private volatile RouteIndex routeIndex = new RouteIndex(endpointRegistrations);
+	private volatile FilterIndex filterIndex = new FilterIndex(filterRegistrations, endpointRegistrations);
+	private final ConcurrentMap<HttpSession, HttpSessionAdaptor> activeSessions = new ConcurrentHashMap<HttpSession, HttpSessionAdaptor>();
 
 	private final HttpServiceRuntimeImpl httpServiceRuntime;
 	private final Set<ListenerRegistration> listenerRegistrations = new HashSet<ListenerRegistration>();
 	private final ProxyContext proxyContext;
 	private final ServiceReference<ServletContextHelper> servletContextHelperRef;
+	private final FileResolver fileResolver;
 	private final String servletContextHelperRefFilter;
 	private boolean shutdown;
 	private final String string;
@@ -0,0 +1,153 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ ******************************************************************************/
+
+package org.eclipse.equinox.http.servlet.internal.context;
+
+import java.util.*;
+import org.osgi.framework.ServiceReference;
+import org.osgi.service.http.context.ServletContextHelper;
+
+/**
+ * An immutable index of the context controllers of the runtime by context
+ * path.
+ * <p>
+ * The controllers sharing a context path are ordered by the ranking of their
+ * servlet context helper, highest first. Lookups probe an open addressing
+ * table with the hash of each path prefix of the request URI, which is
+ * computed while walking the URI once, so no substrings are created.
+ */
+public class ContextPathIndex {
+
+	@SuppressWarnings("unchecked")
+	public ContextPathIndex(
+		Map<ServiceReference<ServletContextHelper>, ContextController> controllerMap) {
+
+		Map<String, List<Map.Entry<ServiceReference<ServletContextHelper>, ContextController>>> byPath =
+			new HashMap<String, List<Map.Entry<ServiceReference<ServletContextHelper>, ContextController>>>();
+
+		for (Map.Entry<ServiceReference<ServletContextHelper>, ContextController> entry : controllerMap.entrySet()) {
+			String contextPath = entry.getValue().getContextPath();
+
+			List<Map.Entry<ServiceReference<ServletContextHelper>, ContextController>> entries = byPath.get(contextPath);
+
+			if (entries == null) {
+				entries = new ArrayList<Map.Entry<ServiceReference<ServletContextHelper>, ContextController>>();
+
+				byPath.put(contextPath, entries);
+			}
+
+			entries.add(entry);
+		}
+
+		int capacity = 2;
+
+		while (capacity < byPath.size() * 2) {
+			capacity <<= 1;
+		}
+
+		paths = new String[capacity];
+		controllers = new List[capacity];
+
+		for (Map.Entry<String, List<Map.Entry<ServiceReference<ServletContextHelper>, ContextController>>> entry : byPath.entrySet()) {
+			List<Map.Entry<ServiceReference<ServletContextHelper>, ContextController>> entries = entry.getValue();
+
+			Collections.sort(entries, RANKING);
+
+			List<ContextController> curControllers = new ArrayList<ContextController>(entries.size());
+
+			for (Map.Entry<ServiceReference<ServletContextHelper>, ContextController> controllerEntry : entries) {
+				curControllers.add(controllerEntry.getValue());
+			}
+
+			String path = entry.getKey();
+			int slot = path.hashCode() & (capacity - 1);
+
+			while (paths[slot] != null) {
+				slot = (slot + 1) & (capacity - 1);
+			}
+
+			paths[slot] = path;
+			controllers[slot] = Collections.unmodifiableList(curControllers);
+		}
+	}
+
+	/**
+	 * Returns the controllers of the longest context path that is the request
+	 * URI itself or one of its prefixes ending before a <code>/</code>, or
+	 * <code>null</code> if there is none. The returned list must not be
+	 * modified.
+	 */
+	public List<ContextController> getContextControllers(String requestURI) {
+		List<ContextController> match = null;
+		int hash = 0;
+
+		for (int i = 0; i < requestURI.length(); i++) {
+			char c = requestURI.charAt(i);
+
+			if (c == '/') {
+				List<ContextController> curControllers = get(requestURI, i, hash);
+
+				if (curControllers != null) {
+					match = curControllers;
+				}
+			}
+
+			hash = 31 * hash + c;
+		}
+
+		List<ContextController> curControllers = get(
+			requestURI, requestURI.length(), hash);
+
+		if (curControllers != null) {
+			return curControllers;
+		}
+
+		return match;
+	}
+
+	/*
+	 * The hash must be that of String.hashCode() for the first length
+	 * characters of the request URI.
+	 */
+	private List<ContextController> get(String requestURI, int length, int hash) {
+		int slot = hash & (paths.length - 1);
+
+		while (paths[slot] != null) {
+			String path = paths[slot];
+
+			if ((path.length() == length) && requestURI.startsWith(path)) {
+				return controllers[slot];
+			}
+
+			slot = (slot + 1) & (paths.length - 1);
+		}
+
+		return null;
+	}
+
+	private static final Comparator<Map.Entry<ServiceReference<ServletContextHelper>, ContextController>> RANKING =
+		new Comparator<Map.Entry<ServiceReference<ServletContextHelper>, ContextController>>() {
+
+			@Override
+			public int compare(
+				Map.Entry<ServiceReference<ServletContextHelper>, ContextController> entry1,
+				Map.Entry<ServiceReference<ServletContextHelper>, ContextController> entry2) {
+
+				// the highest ranked service reference compares greatest
+				return entry2.getKey().compareTo(entry1.getKey());
+			}
+
+		};
+
+	private final List<ContextController>[] controllers;
+	private final String[] paths;
+
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2014, 2015 Raymond Augé and others.
+ * Copyright (c) 2014, 2016 Raymond Augé and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -54,10 +54,7 @@ public class DispatchTargets {
 		this.requestURI = requestURI;
 		this.servletPath = servletPath;
 		this.pathInfo = pathInfo;
-		this.parameterMap = queryStringToParameterMap(queryString);
 		this.queryString = queryString;
-
-		this.string = getClass().getSimpleName() + '[' + contextController.getFullContextPath() + requestURI + ", " + endpointRegistration.toString() + ']'; //$NON-NLS-1$
 	}
 
 	public boolean doDispatch(
@@ -112,7 +109,15 @@ public class DispatchTargets {
 	}
 
 	public Map<String, String[]> getParameterMap() {
-		return parameterMap;
+		Map<String, String[]> value = parameterMap;
+
+		if (value == null) {
+			value = queryStringToParameterMap(queryString);
+
+			parameterMap = value;
+		}
+
+		return value;
 	}
 
 	public String getPathInfo() {
@@ -144,7 +149,38 @@ public class DispatchTargets {
 
 	@Override
 	public String toString() {
-		return string;
+		String value = string;
+
+		if (value == null) {
+			value = getClass().getSimpleName() + '[' + contextController.getFullContextPath() + requestURI + ", " + endpointRegistration.toString() + ']'; //$NON-NLS-1$
+
+			string = value;
+		}
+
+		return value;
+	}
+
+	/**
+	 * Returns dispatch targets for the same resolution but carrying the given
+	 * query string. Instances are immutable and may be shared between requests.
+	 */
+	public DispatchTargets withQueryString(String queryString) {
+		return new DispatchTargets(
+			contextController, endpointRegistration, matchingFilterRegistrations,
+			servletName, requestURI, servletPath, pathInfo, queryString);
+	}
+
+	private static String decode(String value) {
+		if ((value.indexOf('%') == -1) && (value.indexOf('+') == -1)) {
+			return value;
+		}
+
+		try {
+			return URLDecoder.decode(value, Const.UTF8);
+		}
+		catch (UnsupportedEncodingException unsupportedEncodingException) {
+			throw new RuntimeException(unsupportedEncodingException);
+		}
 	}
 
 	private static Map<String, String[]> queryStringToParameterMap(String queryString) {
@@ -152,36 +188,68 @@ public class DispatchTargets {
 			return Collections.emptyMap();
 		}
 
-		try {
-			Map<String, String[]> parameterMap = new LinkedHashMap<String, String[]>();
-			String[] parameters = queryString.split(Const.AMP);
-			for (String parameter : parameters) {
-				int index = parameter.indexOf('=');
-				String name = (index > 0) ? URLDecoder.decode(parameter.substring(0, index), Const.UTF8) : parameter;
-				String[] values = parameterMap.get(name);
-				if (values == null) {
-					values = new String[0];
+		Map<String, String[]> parameterMap = new LinkedHashMap<String, String[]>();
+
+		// like String.split, ignore the trailing empty segments but keep the others
+		int last = queryString.length();
+
+		while ((last > 0) && (queryString.charAt(last - 1) == '&')) {
+			last--;
+		}
+
+		int start = 0;
+
+		while ((last > 0) && (start <= last)) {
+			int end = queryString.indexOf('&', start);
+
+			if ((end == -1) || (end > last)) {
+				end = last;
+			}
+
+			int index = queryString.indexOf('=', start);
+
+			if (index >= end) {
+				index = -1;
+			}
+
+			String name;
+			String value = null;
+
+			if (index > start) {
+				name = decode(queryString.substring(start, index));
+
+				if (end > index + 1) {
+					value = decode(queryString.substring(index + 1, end));
 				}
-				String value = ((index > 0) && (parameter.length() > index + 1)) ? URLDecoder.decode(parameter.substring(index + 1), Const.UTF8) : null;
-				values = Params.append(values, value);
-				parameterMap.put(name, values);
 			}
-			return Collections.unmodifiableMap(parameterMap);
-		}
-		catch (UnsupportedEncodingException unsupportedEncodingException) {
-			throw new RuntimeException(unsupportedEncodingException);
+			else {
+				// no name before '=': the segment is the name, as is
+				name = queryString.substring(start, end);
+			}
+
+			String[] values = parameterMap.get(name);
+
+			if (values == null) {
+				values = new String[0];
+			}
+
+			parameterMap.put(name, Params.append(values, value));
+
+			start = end + 1;
 		}
+
+		return Collections.unmodifiableMap(parameterMap);
 	}
 
 	private final ContextController contextController;
 	private final EndpointRegistration<?> endpointRegistration;
 	private final List<FilterRegistration> matchingFilterRegistrations;
 	private final String pathInfo;
-	private final Map<String, String[]> parameterMap;
+	private volatile Map<String, String[]> parameterMap;
 	private final String queryString;
 	private final String requestURI;
 	private final String servletPath;
 	private final String servletName;
-	private final String string;
+	private String string;
 
 }
\ No newline at end of file
@@ -0,0 +1,181 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ ******************************************************************************/
+
+package org.eclipse.equinox.http.servlet.internal.context;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.eclipse.equinox.http.servlet.dto.DispatchCacheDTO;
+
+/**
+ * A bounded LRU cache of the dispatch targets resolved for a request path.
+ * <p>
+ * Entries are tagged with the generation that was current when the
+ * resolution started. Any change to the endpoints, filters or contexts of the
+ * runtime bumps the generation, which turns every older entry into a miss.
+ * The cache is split into segments so that concurrent requests for different
+ * paths rarely contend on the same lock.
+ */
+public class DispatchTargetsCache {
+
+	public DispatchTargetsCache(int maxSize) {
+		this.maxSize = Math.max(maxSize, 0);
+
+		int segmentCount = Math.min(SEGMENTS, Math.max(this.maxSize, 1));
+
+		segments = new Segment[segmentCount];
+
+		for (int i = 0; i < segmentCount; i++) {
+			segments[i] = new Segment(
+				(this.maxSize + segmentCount - 1) / segmentCount);
+		}
+	}
+
+	/**
+	 * Returns the cached dispatch targets for the path or <code>null</code>
+	 * if there is no entry for the current generation.
+	 */
+	public DispatchTargets get(String path) {
+		if (maxSize == 0) {
+			return null;
+		}
+
+		Segment segment = segmentFor(path);
+		CacheEntry entry;
+
+		synchronized (segment) {
+			entry = segment.get(path);
+		}
+
+		if ((entry == null) || (entry.generation != generation.get())) {
+			misses.incrementAndGet();
+
+			return null;
+		}
+
+		hits.incrementAndGet();
+
+		return entry.dispatchTargets;
+	}
+
+	/**
+	 * Returns the current generation. It must be read before the resolution
+	 * whose result is later handed to {@link #put}.
+	 */
+	public long getGeneration() {
+		return generation.get();
+	}
+
+	public DispatchCacheDTO getDispatchCacheDTO() {
+		DispatchCacheDTO dispatchCacheDTO = new DispatchCacheDTO();
+
+		dispatchCacheDTO.evictions = evictions.get();
+		dispatchCacheDTO.generation = generation.get();
+		dispatchCacheDTO.hits = hits.get();
+		dispatchCacheDTO.maxSize = maxSize;
+		dispatchCacheDTO.misses = misses.get();
+		dispatchCacheDTO.size = size();
+
+		return dispatchCacheDTO;
+	}
+
+	public void invalidate() {
+		generation.incrementAndGet();
+
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				segment.clear();
+			}
+		}
+	}
+
+	public void put(
+		String path, DispatchTargets dispatchTargets, long resolvedGeneration) {
+
+		if ((maxSize == 0) || (resolvedGeneration != generation.get())) {
+			return;
+		}
+
+		Segment segment = segmentFor(path);
+
+		synchronized (segment) {
+			segment.put(path, new CacheEntry(dispatchTargets, resolvedGeneration));
+		}
+	}
+
+	public int size() {
+		int size = 0;
+
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+
+		return size;
+	}
+
+	private Segment segmentFor(String path) {
+		int hash = path.hashCode();
+
+		hash ^= (hash >>> 16);
+
+		return segments[(hash & 0x7fffffff) % segments.length];
+	}
+
+	private static class CacheEntry {
+
+		CacheEntry(DispatchTargets dispatchTargets, long generation) {
+			this.dispatchTargets = dispatchTargets;
+			this.generation = generation;
+		}
+
+		final DispatchTargets dispatchTargets;
+		final long generation;
+
+	}
+
+	private class Segment extends LinkedHashMap<String, CacheEntry> {
+
+		private static final long serialVersionUID = 1L;
+
+		Segment(int capacity) {
+			super(16, 0.75f, true);
+
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+			if (size() > capacity) {
+				evictions.incrementAndGet();
+
+				return true;
+			}
+
+			return false;
+		}
+
+		private final int capacity;
+
+	}
+
+	private static final int SEGMENTS = 16;
+
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicLong generation = new AtomicLong();
+	private final AtomicLong hits = new AtomicLong();
+	private final int maxSize;
+	private final AtomicLong misses = new AtomicLong();
+	private final Segment[] segments;
+
+}
@@ -0,0 +1,207 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ ******************************************************************************/
+
+package org.eclipse.equinox.http.servlet.internal.context;
+
+import java.util.*;
+import org.eclipse.equinox.http.servlet.internal.registration.EndpointRegistration;
+import org.eclipse.equinox.http.servlet.internal.registration.FilterRegistration;
+
+/**
+ * An immutable index of the filter registrations of a single context.
+ * <p>
+ * For every endpoint the filters matching its servlet name are collected up
+ * front, filters that cannot apply are dropped and only the filters with
+ * patterns or regular expressions are kept aside to be tested against the
+ * request URI. Filters must be supplied in priority order; the resulting
+ * lists keep that order.
+ */
+public class FilterIndex {
+
+	public FilterIndex(
+		Collection<FilterRegistration> filterRegistrations,
+		Collection<EndpointRegistration<?>> endpointRegistrations) {
+
+		this.filterRegistrations = filterRegistrations.toArray(
+			new FilterRegistration[filterRegistrations.size()]);
+
+		if (this.filterRegistrations.length == 0) {
+			return;
+		}
+
+		for (EndpointRegistration<?> endpointRegistration : endpointRegistrations) {
+			endpointFilters.put(
+				endpointRegistration, new EndpointFilters(endpointRegistration));
+		}
+	}
+
+	/**
+	 * Returns the filters that apply to the endpoint for the given context
+	 * relative request URI, which is <code>null</code> for named dispatches.
+	 * The returned list must not be modified.
+	 */
+	public List<FilterRegistration> getMatchingFilterRegistrations(
+		EndpointRegistration<?> endpointRegistration, String requestURI) {
+
+		if (filterRegistrations.length == 0) {
+			return Collections.emptyList();
+		}
+
+		EndpointFilters curEndpointFilters = endpointFilters.get(
+			endpointRegistration);
+
+		if (curEndpointFilters == null) {
+			// the endpoint was added after this index was built
+			curEndpointFilters = new EndpointFilters(endpointRegistration);
+		}
+
+		return curEndpointFilters.get(requestURI);
+	}
+
+	public boolean isEmpty() {
+		return filterRegistrations.length == 0;
+	}
+
+	private class EndpointFilters {
+
+		EndpointFilters(EndpointRegistration<?> endpointRegistration) {
+			List<FilterRegistration> curFilters = new ArrayList<FilterRegistration>();
+			List<Boolean> curPathDependent = new ArrayList<Boolean>();
+			List<FilterRegistration> curStaticFilters = new ArrayList<FilterRegistration>();
+			Set<Object> targets = new HashSet<Object>();
+			boolean curDuplicates = false;
+
+			for (FilterRegistration filterRegistration : filterRegistrations) {
+				boolean named = filterRegistration.matchesServletName(
+					endpointRegistration.getName());
+
+				if (!named && !filterRegistration.hasPathMatchers()) {
+					continue;
+				}
+
+				curFilters.add(filterRegistration);
+				curPathDependent.add(!named);
+
+				if (named) {
+					curStaticFilters.add(filterRegistration);
+				}
+
+				if (!targets.add(filterRegistration.getT())) {
+					curDuplicates = true;
+				}
+			}
+
+			filters = curFilters.toArray(new FilterRegistration[curFilters.size()]);
+			pathDependent = new boolean[filters.length];
+
+			for (int i = 0; i < filters.length; i++) {
+				pathDependent[i] = curPathDependent.get(i);
+			}
+
+			duplicates = curDuplicates;
+			staticFilters = Collections.unmodifiableList(curStaticFilters);
+			hasPathDependent = curStaticFilters.size() < filters.length;
+		}
+
+		List<FilterRegistration> get(String requestURI) {
+			if (duplicates) {
+				return collect(requestURI);
+			}
+
+			if (!hasPathDependent || (requestURI == null) ||
+				requestURI.isEmpty()) {
+
+				return staticFilters;
+			}
+
+			String extension = findExtension(requestURI);
+			List<FilterRegistration> matching = null;
+
+			for (int i = 0; i < filters.length; i++) {
+				if (!pathDependent[i]) {
+					if (matching != null) {
+						matching.add(filters[i]);
+					}
+
+					continue;
+				}
+
+				if (!filters[i].matchesPath(requestURI, extension)) {
+					continue;
+				}
+
+				if (matching == null) {
+					matching = new ArrayList<FilterRegistration>(filters.length);
+
+					for (int j = 0; j < i; j++) {
+						if (!pathDependent[j]) {
+							matching.add(filters[j]);
+						}
+					}
+				}
+
+				matching.add(filters[i]);
+			}
+
+			if (matching == null) {
+				return staticFilters;
+			}
+
+			return Collections.unmodifiableList(matching);
+		}
+
+		/*
+		 * The same filter object is registered more than once; keep only the
+		 * first matching registration.
+		 */
+		private List<FilterRegistration> collect(String requestURI) {
+			String extension = findExtension(requestURI);
+			List<FilterRegistration> matching = new ArrayList<FilterRegistration>();
+
+			for (int i = 0; i < filters.length; i++) {
+				if ((!pathDependent[i] ||
+						filters[i].matchesPath(requestURI, extension)) &&
+					!matching.contains(filters[i])) {
+
+					matching.add(filters[i]);
+				}
+			}
+
+			return Collections.unmodifiableList(matching);
+		}
+
+		private String findExtension(String requestURI) {
+			if (requestURI == null) {
+				return null;
+			}
+
+			int x = requestURI.lastIndexOf('.');
+
+			if (x == -1) {
+				return null;
+			}
+
+			return requestURI.substring(x + 1);
+		}
+
+		private final boolean duplicates;
+		private final FilterRegistration[] filters;
+		private final boolean hasPathDependent;
+		private final boolean[] pathDependent;
+		private final List<FilterRegistration> staticFilters;
+
+	}
+
+	private final Map<EndpointRegistration<?>, EndpointFilters> endpointFilters =
+		new IdentityHashMap<EndpointRegistration<?>, EndpointFilters>();
+	private final FilterRegistration[] filterRegistrations;
+
+}
@@ -0,0 +1,374 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ ******************************************************************************/
+
+package org.eclipse.equinox.http.servlet.internal.context;
+
+import java.util.*;
+import org.eclipse.equinox.http.servlet.internal.registration.EndpointRegistration;
+import org.eclipse.equinox.http.servlet.internal.registration.ServletRegistration;
+import org.eclipse.equinox.http.servlet.internal.servlet.Match;
+import org.eclipse.equinox.http.servlet.internal.util.Const;
+import org.osgi.service.http.runtime.dto.ErrorPageDTO;
+
+/**
+ * An immutable index of the endpoint registrations of a single context.
+ * <p>
+ * Exact patterns are kept in a hash map, <code>/*</code> and extension
+ * patterns are kept in a trie keyed by path segment and the default servlet
+ * is kept aside, so a request URI is resolved with a single walk of its
+ * segments. Registrations must be supplied in ranking order; for every key
+ * the highest ranked registration wins, exactly as with a linear scan.
+ */
+public class RouteIndex {
+
+	public static final class Route {
+
+		Route(
+			EndpointRegistration<?> endpointRegistration, Match match,
+			String servletPath, String pathInfo, int level) {
+
+			this.endpointRegistration = endpointRegistration;
+			this.match = match;
+			this.servletPath = servletPath;
+			this.pathInfo = pathInfo;
+			this.level = level;
+		}
+
+		public EndpointRegistration<?> getEndpointRegistration() {
+			return endpointRegistration;
+		}
+
+		public Match getMatch() {
+			return match;
+		}
+
+		public String getPathInfo() {
+			return pathInfo;
+		}
+
+		public String getServletPath() {
+			return servletPath;
+		}
+
+		/**
+		 * Returns true if this route takes precedence over the other route.
+		 * Routes are ordered by match type first and then by the length of the
+		 * path prefix that was matched.
+		 */
+		public boolean isBetterThan(Route other) {
+			if (other == null) {
+				return true;
+			}
+
+			if (match != other.match) {
+				return match.ordinal() < other.match.ordinal();
+			}
+
+			return level > other.level;
+		}
+
+		private final EndpointRegistration<?> endpointRegistration;
+		private final int level;
+		private final Match match;
+		private final String pathInfo;
+		private final String servletPath;
+
+	}
+
+	public RouteIndex(Collection<EndpointRegistration<?>> endpointRegistrations) {
+		EndpointRegistration<?> curDefaultRegistration = null;
+
+		for (EndpointRegistration<?> endpointRegistration : endpointRegistrations) {
+			indexNames(endpointRegistration);
+
+			String[] patterns = endpointRegistration.getPatterns();
+
+			if (patterns == null) {
+				continue;
+			}
+
+			for (String pattern : patterns) {
+				putIfAbsent(exactRegistrations, pattern, endpointRegistration);
+
+				if (pattern.equals(Const.SLASH)) {
+					if (curDefaultRegistration == null) {
+						curDefaultRegistration = endpointRegistration;
+					}
+
+					continue;
+				}
+
+				indexWildcard(pattern, endpointRegistration);
+				indexExtension(pattern, endpointRegistration);
+			}
+		}
+
+		this.defaultRegistration = curDefaultRegistration;
+	}
+
+	/**
+	 * Returns the highest ranked registration whose name, error code or
+	 * exception type equals the given name.
+	 */
+	public EndpointRegistration<?> getByName(String name) {
+		return namedRegistrations.get(name);
+	}
+
+	/**
+	 * Resolves a context relative request URI following the servlet
+	 * specification precedence: exact, extension, path wildcard and finally
+	 * the default servlet.
+	 *
+	 * @param requestURI the request URI without context path and query string
+	 * @return the matching route or <code>null</code> if nothing matches
+	 */
+	public Route resolve(String requestURI) {
+		EndpointRegistration<?> endpointRegistration = exactRegistrations.get(
+			requestURI);
+
+		if (endpointRegistration != null) {
+			return new Route(
+				endpointRegistration, Match.EXACT, requestURI, null,
+				requestURI.length());
+		}
+
+		EndpointRegistration<?> extensionRegistration = null;
+		int extensionLevel = -1;
+		EndpointRegistration<?> wildcardRegistration = null;
+		int wildcardLevel = -1;
+
+		if ((requestURI.length() == 0) || (requestURI.charAt(0) == '/')) {
+			String extension = findExtension(requestURI);
+			Node node = root;
+			int level = 0;
+
+			while (true) {
+				if ((extension != null) && (node.extensionRegistrations != null)) {
+					EndpointRegistration<?> curRegistration =
+						node.extensionRegistrations.get(extension);
+
+					if (curRegistration != null) {
+						extensionRegistration = curRegistration;
+						extensionLevel = level;
+					}
+				}
+
+				if (node.wildcardRegistration != null) {
+					wildcardRegistration = node.wildcardRegistration;
+					wildcardLevel = level;
+				}
+
+				if ((level == requestURI.length()) || (node.children == null)) {
+					break;
+				}
+
+				int next = requestURI.indexOf('/', level + 1);
+
+				if (next == -1) {
+					next = requestURI.length();
+				}
+
+				node = node.children.get(requestURI.substring(level + 1, next));
+
+				if (node == null) {
+					break;
+				}
+
+				level = next;
+			}
+		}
+
+		if (extensionRegistration != null) {
+			return new Route(
+				extensionRegistration, Match.EXTENSION, requestURI, null,
+				extensionLevel);
+		}
+
+		if (wildcardRegistration != null) {
+			String servletPath = requestURI.substring(0, wildcardLevel);
+			String pathInfo = null;
+
+			if (wildcardLevel < requestURI.length()) {
+				pathInfo = requestURI.substring(wildcardLevel);
+			}
+
+			return new Route(
+				wildcardRegistration, Match.REGEX, servletPath, pathInfo,
+				wildcardLevel);
+		}
+
+		if (defaultRegistration != null) {
+			return new Route(
+				defaultRegistration, Match.DEFAULT_SERVLET, Const.SLASH,
+				requestURI, 0);
+		}
+
+		return null;
+	}
+
+	private String findExtension(String requestURI) {
+		int dot = requestURI.lastIndexOf('.');
+
+		if ((dot == -1) || (requestURI.indexOf('/', dot) != -1)) {
+			return null;
+		}
+
+		return requestURI.substring(dot + 1);
+	}
+
+	private Node getOrCreateNode(String prefix) {
+		Node node = root;
+
+		if (prefix.length() == 0) {
+			return node;
+		}
+
+		int level = 0;
+
+		while (level < prefix.length()) {
+			int next = prefix.indexOf('/', level + 1);
+
+			if (next == -1) {
+				next = prefix.length();
+			}
+
+			String segment = prefix.substring(level + 1, next);
+
+			if (node.children == null) {
+				node.children = new HashMap<String, Node>();
+			}
+
+			Node child = node.children.get(segment);
+
+			if (child == null) {
+				child = new Node();
+				node.children.put(segment, child);
+			}
+
+			node = child;
+			level = next;
+		}
+
+		return node;
+	}
+
+	private void indexExtension(
+		String pattern, EndpointRegistration<?> endpointRegistration) {
+
+		if (pattern.indexOf(Const.SLASH_STAR_DOT) == 0) {
+			pattern = pattern.substring(1);
+		}
+
+		int index = pattern.lastIndexOf(Const.STAR_DOT);
+
+		if (index == -1) {
+			return;
+		}
+
+		String prefix = Const.BLANK;
+
+		if (index > 0) {
+			prefix = pattern.substring(0, index - 1);
+		}
+
+		String extension = pattern.substring(pattern.lastIndexOf('.') + 1);
+
+		if (!isPrefix(prefix) || (extension.indexOf('/') != -1)) {
+			return;
+		}
+
+		Node node = getOrCreateNode(prefix);
+
+		if (node.extensionRegistrations == null) {
+			node.extensionRegistrations =
+				new HashMap<String, EndpointRegistration<?>>();
+		}
+
+		putIfAbsent(
+			node.extensionRegistrations, extension, endpointRegistration);
+	}
+
+	private void indexNames(EndpointRegistration<?> endpointRegistration) {
+		putIfAbsent(
+			namedRegistrations, endpointRegistration.getName(),
+			endpointRegistration);
+
+		if (!(endpointRegistration instanceof ServletRegistration)) {
+			return;
+		}
+
+		ErrorPageDTO errorPageDTO =
+			((ServletRegistration)endpointRegistration).getErrorPageDTO();
+
+		if (errorPageDTO == null) {
+			return;
+		}
+
+		for (long errorCode : errorPageDTO.errorCodes) {
+			putIfAbsent(
+				namedRegistrations, String.valueOf(errorCode),
+				endpointRegistration);
+		}
+
+		for (String exception : errorPageDTO.exceptions) {
+			putIfAbsent(namedRegistrations, exception, endpointRegistration);
+		}
+	}
+
+	private void indexWildcard(
+		String pattern, EndpointRegistration<?> endpointRegistration) {
+
+		if (!pattern.endsWith(Const.SLASH_STAR)) {
+			return;
+		}
+
+		String prefix = pattern.substring(0, pattern.length() - 2);
+
+		if (!isPrefix(prefix)) {
+			return;
+		}
+
+		Node node = getOrCreateNode(prefix);
+
+		if (node.wildcardRegistration == null) {
+			node.wildcardRegistration = endpointRegistration;
+		}
+	}
+
+	private boolean isPrefix(String prefix) {
+		return (prefix.length() == 0) || (prefix.charAt(0) == '/');
+	}
+
+	private static <K> void putIfAbsent(
+		Map<K, EndpointRegistration<?>> map, K key,
+		EndpointRegistration<?> endpointRegistration) {
+
+		if ((key != null) && !map.containsKey(key)) {
+			map.put(key, endpointRegistration);
+		}
+	}
+
+	private static class Node {
+
+		Map<String, Node> children;
+		Map<String, EndpointRegistration<?>> extensionRegistrations;
+		EndpointRegistration<?> wildcardRegistration;
+
+	}
+
+	private final EndpointRegistration<?> defaultRegistration;
+	private final Map<String, EndpointRegistration<?>> exactRegistrations =
+		new HashMap<String, EndpointRegistration<?>>();
+	private final Map<String, EndpointRegistration<?>> namedRegistrations =
+		new HashMap<String, EndpointRegistration<?>>();
+	private final Node root = new Node();
+
+}
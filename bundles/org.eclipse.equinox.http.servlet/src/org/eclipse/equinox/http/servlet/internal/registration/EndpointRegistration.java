@@ -18,6 +18,7 @@ import javax.servlet.http.HttpServletResponse;
 import org.eclipse.equinox.http.servlet.internal.context.ContextController;
 import org.eclipse.equinox.http.servlet.internal.context.ContextController.ServiceHolder;
 import org.eclipse.equinox.http.servlet.internal.servlet.Match;
+import org.eclipse.equinox.http.servlet.internal.util.RequestMetrics;
 import org.osgi.dto.DTO;
 import org.osgi.framework.wiring.BundleWiring;
 import org.osgi.service.http.context.ServletContextHelper;
@@ -32,6 +33,7 @@ public abstract class EndpointRegistration<D extends DTO>
 	private final ServletContextHelper servletContextHelper; //The context used during the registration of the servlet
 	private final ContextController contextController;
 	private final ClassLoader classLoader;
+	private final RequestMetrics requestMetrics;
 
 	public EndpointRegistration(
 		ServiceHolder<Servlet> servletHolder, D d, ServletContextHelper servletContextHelper,
@@ -41,6 +43,7 @@ public abstract class EndpointRegistration<D extends DTO>
 		this.servletHolder = servletHolder;
 		this.servletContextHelper = servletContextHelper;
 		this.contextController = contextController;
+		this.requestMetrics = contextController.getHttpServiceRuntime().createRequestMetrics();
 		if (legacyTCCL != null) {
 			// legacy registrations used the current TCCL at registration time
 			classLoader = legacyTCCL;
@@ -54,7 +57,7 @@ public abstract class EndpointRegistration<D extends DTO>
 		try {
 			Thread.currentThread().setContextClassLoader(classLoader);
 
-			contextController.getEndpointRegistrations().remove(this);
+			contextController.removeEndpointRegistration(this);
 			contextController.getHttpServiceRuntime().getRegisteredObjects().remove(this.getT());
 			contextController.ungetServletContextHelper(servletHolder.getBundle());
 
@@ -109,6 +112,14 @@ public abstract class EndpointRegistration<D extends DTO>
 
 	public abstract long getServiceId();
 
+	/**
+	 * Returns the request metrics of this endpoint, or <code>null</code> if
+	 * metrics are disabled.
+	 */
+	public RequestMetrics getRequestMetrics() {
+		return requestMetrics;
+	}
+
 	public ServletContext getServletContext() {
 		return getT().getServletConfig().getServletContext();
 	}
@@ -147,6 +158,26 @@ public abstract class EndpointRegistration<D extends DTO>
 
 	//Delegate the handling of the request to the actual servlet
 	public void service(HttpServletRequest req, HttpServletResponse resp) throws IOException, ServletException {
+		if (requestMetrics == null) {
+			doService(req, resp);
+
+			return;
+		}
+
+		long start = System.nanoTime();
+		boolean error = true;
+
+		try {
+			doService(req, resp);
+
+			error = (resp.getStatus() >= HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+		}
+		finally {
+			requestMetrics.record(System.nanoTime() - start, error);
+		}
+	}
+
+	private void doService(HttpServletRequest req, HttpServletResponse resp) throws IOException, ServletException {
 		ClassLoader original = Thread.currentThread().getContextClassLoader();
 		try {
 			Thread.currentThread().setContextClassLoader(classLoader);
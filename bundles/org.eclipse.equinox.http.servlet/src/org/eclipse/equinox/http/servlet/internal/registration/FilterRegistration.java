@@ -13,6 +13,7 @@ package org.eclipse.equinox.http.servlet.internal.registration;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.regex.Pattern;
 import javax.servlet.*;
 import javax.servlet.http.HttpServletRequest;
@@ -22,6 +23,7 @@ import org.eclipse.equinox.http.servlet.internal.context.ContextController.Servi
 import org.eclipse.equinox.http.servlet.internal.servlet.FilterChainImpl;
 import org.eclipse.equinox.http.servlet.internal.servlet.Match;
 import org.eclipse.equinox.http.servlet.internal.util.Const;
+import org.eclipse.equinox.http.servlet.internal.util.RequestMetrics;
 import org.osgi.framework.FrameworkUtil;
 import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.framework.wiring.BundleWiring;
@@ -38,6 +40,9 @@ public class FilterRegistration
 	private final ContextController contextController;
 	private final boolean initDestoyWithContextController;
 	private final Pattern[] compiledRegexs;
+	private final PathPattern[] compiledPatterns;
+	private final EnumSet<DispatcherType> dispatcherTypes;
+	private final RequestMetrics requestMetrics;
 
 	public FilterRegistration(
 		ServiceHolder<Filter> filterHolder, FilterDTO filterDTO, int priority,
@@ -48,6 +53,9 @@ public class FilterRegistration
 		this.priority = priority;
 		this.contextController = contextController;
 		this.compiledRegexs = getCompiledRegex(filterDTO);
+		this.compiledPatterns = getCompiledPatterns(filterDTO);
+		this.dispatcherTypes = getDispatcherTypes(filterDTO);
+		this.requestMetrics = contextController.getHttpServiceRuntime().createRequestMetrics();
 		if (legacyTCCL != null) {
 			// legacy filter registrations used the current TCCL at registration time
 			classLoader = legacyTCCL;
@@ -92,7 +100,7 @@ public class FilterRegistration
 		try {
 			Thread.currentThread().setContextClassLoader(classLoader);
 			contextController.getHttpServiceRuntime().getRegisteredObjects().remove(this.getT());
-			contextController.getFilterRegistrations().remove(this);
+			contextController.removeFilterRegistration(this);
 			contextController.ungetServletContextHelper(filterHolder.getBundle());
 			super.destroy();
 			getT().destroy();
@@ -105,8 +113,16 @@ public class FilterRegistration
 	}
 
 	public boolean appliesTo(FilterChainImpl filterChainImpl) {
-		return (Arrays.binarySearch(
-			getD().dispatcher, filterChainImpl.getDispatcherType().name()) >= 0);
+		return dispatcherTypes.contains(filterChainImpl.getDispatcherType());
+	}
+
+	/**
+	 * Returns the request metrics of this filter, or <code>null</code> if
+	 * metrics are disabled. The recorded time includes the time spent in the
+	 * rest of the filter chain.
+	 */
+	public RequestMetrics getRequestMetrics() {
+		return requestMetrics;
 	}
 
 	//Delegate the handling of the request to the actual filter
@@ -115,6 +131,30 @@ public class FilterRegistration
 			FilterChain chain)
 		throws IOException, ServletException {
 
+		if (requestMetrics == null) {
+			doFilter0(request, response, chain);
+
+			return;
+		}
+
+		long start = System.nanoTime();
+		boolean error = true;
+
+		try {
+			doFilter0(request, response, chain);
+
+			error = (response.getStatus() >= HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+		}
+		finally {
+			requestMetrics.record(System.nanoTime() - start, error);
+		}
+	}
+
+	private void doFilter0(
+			HttpServletRequest request, HttpServletResponse response,
+			FilterChain chain)
+		throws IOException, ServletException {
+
 		ClassLoader original = Thread.currentThread().getContextClassLoader();
 		try {
 			Thread.currentThread().setContextClassLoader(classLoader);
@@ -165,21 +205,17 @@ public class FilterRegistration
 
 	public String match(
 		String name, String requestURI, String extension, Match match) {
-		if ((name != null) && (getD().servletNames != null)) {
-			for (String servletName : getD().servletNames) {
-				if (servletName.equals(name)) {
-					return name;
-				}
-			}
+		if (matchesServletName(name)) {
+			return name;
 		}
 
 		if (requestURI == null || requestURI.isEmpty()) {
 			return null;
 		}
 
-		for (String pattern : getD().patterns) {
-			if (doPatternMatch(pattern, requestURI, extension)) {
-				return pattern;
+		for (PathPattern pattern : compiledPatterns) {
+			if (pattern.matches(requestURI, extension)) {
+				return pattern.toString();
 			}
 		}
 
@@ -192,6 +228,46 @@ public class FilterRegistration
 		return null;
 	}
 
+	/**
+	 * Returns true if the filter has patterns or regular expressions, in
+	 * which case whether it applies depends on the request URI.
+	 */
+	public boolean hasPathMatchers() {
+		return (compiledPatterns.length > 0) || (compiledRegexs.length > 0);
+	}
+
+	public boolean matchesPath(String requestURI, String extension) {
+		if (requestURI == null || requestURI.isEmpty()) {
+			return false;
+		}
+
+		for (PathPattern pattern : compiledPatterns) {
+			if (pattern.matches(requestURI, extension)) {
+				return true;
+			}
+		}
+
+		for (Pattern regex : compiledRegexs) {
+			if (regex.matcher(requestURI).matches()) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	public boolean matchesServletName(String name) {
+		if ((name != null) && (getD().servletNames != null)) {
+			for (String servletName : getD().servletNames) {
+				if (servletName.equals(name)) {
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
 	@Override
 	public String match(
 		String name, String servletPath, String pathInfo, String extension, Match match) {
@@ -209,53 +285,18 @@ public class FilterRegistration
 			contextController);
 	}
 
-	protected boolean isPathWildcardMatch(String pattern, String path) {
-		if (path == null) {
-			return false;
+	private PathPattern[] getCompiledPatterns(FilterDTO filterDTO) {
+		if (filterDTO.patterns == null) {
+			return new PathPattern[0];
 		}
-		// first try wild card matching if the pattern requests it
-		if (pattern.endsWith("/*")) { //$NON-NLS-1$
-			int pathPatternLength = pattern.length() - 2;
-			if (path.regionMatches(0, pattern, 0, pathPatternLength)) {
-				return path.length() <= pathPatternLength || path.charAt(pathPatternLength) == '/';
-			}
-			return false;
-		}
-		// now do exact matching
-		return pattern.equals(path);
-	}
-
-	protected boolean doPatternMatch(String pattern, String path, String extension)
-		throws IllegalArgumentException {
 
-		if (pattern.indexOf(Const.SLASH_STAR_DOT) == 0) {
-			pattern = pattern.substring(1);
-		}
-		int extensionMatchIndex = pattern.indexOf(Const.SLASH_STAR_DOT);
-		String extensionWithPrefixMatch = null;
-		if (extensionMatchIndex >= 0 && pattern.lastIndexOf('/') == extensionMatchIndex) {
-			extensionWithPrefixMatch = pattern.substring(extensionMatchIndex + 3);
-			pattern = pattern.substring(0, extensionMatchIndex + 2);
-		}
-
-		// first try prefix path matching; taking into account wild cards if necessary
-		if ((pattern.charAt(0) == '/')) {
-			if (isPathWildcardMatch(pattern, path)) {
-				if (extensionWithPrefixMatch != null) {
-					return extensionWithPrefixMatch.equals(extension);
-				}
-				return true;
-			}
-			return false;
-		}
+		PathPattern[] patterns = new PathPattern[filterDTO.patterns.length];
 
-		// next try extension matching if requested
-		if (pattern.charAt(0) == '*') {
-			return pattern.substring(2).equals(extension);
+		for (int i = 0; i < filterDTO.patterns.length; i++) {
+			patterns[i] = new PathPattern(filterDTO.patterns[i]);
 		}
 
-		// this is really an invalid case that should have gotten caught at registration time
-		return false;
+		return patterns;
 	}
 
 	private Pattern[] getCompiledRegex(FilterDTO filterDTO) {
@@ -272,4 +313,92 @@ public class FilterRegistration
 		return patterns;
 	}
 
+	private EnumSet<DispatcherType> getDispatcherTypes(FilterDTO filterDTO) {
+		EnumSet<DispatcherType> types = EnumSet.noneOf(DispatcherType.class);
+
+		if (filterDTO.dispatcher == null) {
+			return types;
+		}
+
+		for (DispatcherType type : DispatcherType.values()) {
+			if (Arrays.binarySearch(filterDTO.dispatcher, type.name()) >= 0) {
+				types.add(type);
+			}
+		}
+
+		return types;
+	}
+
+	/**
+	 * A filter pattern split up front into its path and extension parts, so
+	 * that matching a request does not need to parse the pattern again.
+	 */
+	private static class PathPattern {
+
+		PathPattern(String pattern) {
+			this.pattern = pattern;
+
+			if (pattern.indexOf(Const.SLASH_STAR_DOT) == 0) {
+				pattern = pattern.substring(1);
+			}
+
+			int extensionMatchIndex = pattern.indexOf(Const.SLASH_STAR_DOT);
+			String curExtension = null;
+
+			if (extensionMatchIndex >= 0 && pattern.lastIndexOf('/') == extensionMatchIndex) {
+				curExtension = pattern.substring(extensionMatchIndex + 3);
+				pattern = pattern.substring(0, extensionMatchIndex + 2);
+			}
+
+			if ((pattern.length() > 0) && (pattern.charAt(0) == '/')) {
+				wildcard = pattern.endsWith(Const.SLASH_STAR);
+				path = wildcard ? pattern.substring(0, pattern.length() - 2) : pattern;
+				extension = curExtension;
+			}
+			else if ((pattern.length() > 1) && (pattern.charAt(0) == '*')) {
+				// extension matching
+				wildcard = false;
+				path = null;
+				extension = pattern.substring(2);
+			}
+			else {
+				// this is really an invalid case that should have gotten caught at registration time
+				wildcard = false;
+				path = null;
+				extension = null;
+			}
+		}
+
+		boolean matches(String requestURI, String requestExtension) {
+			if (path == null) {
+				return (extension != null) && extension.equals(requestExtension);
+			}
+
+			if (wildcard) {
+				if (!requestURI.startsWith(path) ||
+					((requestURI.length() > path.length()) &&
+						(requestURI.charAt(path.length()) != '/'))) {
+
+					return false;
+				}
+			}
+			else if (!path.equals(requestURI)) {
+				return false;
+			}
+
+			return (extension == null) || extension.equals(requestExtension);
+		}
+
+		@Override
+		public String toString() {
+			return pattern;
+		}
+
+		private final String extension;
+		private final String path;
+		private final String pattern;
+		private final boolean wildcard;
+
+	}
+
 }
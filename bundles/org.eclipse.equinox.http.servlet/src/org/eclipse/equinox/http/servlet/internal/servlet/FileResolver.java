@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ ******************************************************************************/
+
+package org.eclipse.equinox.http.servlet.internal.servlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import org.eclipse.osgi.service.urlconversion.URLConverter;
+import org.osgi.framework.*;
+import org.osgi.util.tracker.ServiceTracker;
+
+/**
+ * Resolves the URLs of bundle entries and bundle resources to the files
+ * backing them through the framework's {@link URLConverter}, so that they
+ * can be read through a file channel.
+ * <p>
+ * Only bundles installed from a directory are backed by files; the entries
+ * of a bundle packed in a jar are not resolved. A resolver is shared by the
+ * resource registrations of a context, which opens and closes it.
+ */
+public class FileResolver {
+
+	/**
+	 * Returns a new resolver or <code>null</code> if the framework does not
+	 * provide URL converters.
+	 */
+	public static FileResolver create(BundleContext context) {
+		try {
+			return new FileResolver(context);
+		}
+		catch (NoClassDefFoundError e) {
+			// expected if the URL converter package is not available
+		}
+		catch (InvalidSyntaxException e) {
+			// cannot happen, the filter is a constant
+		}
+
+		return null;
+	}
+
+	private FileResolver(BundleContext context) throws InvalidSyntaxException {
+		Filter filter = context.createFilter(
+			"(&(" + Constants.OBJECTCLASS + "=" + URLConverter.class.getName() + //$NON-NLS-1$ //$NON-NLS-2$
+				")(|(protocol=" + BUNDLE_ENTRY + ")(protocol=" + BUNDLE_RESOURCE + ")))"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+		tracker = new ServiceTracker<URLConverter, URLConverter>(context, filter, null);
+	}
+
+	public void close() {
+		tracker.close();
+	}
+
+	public void open() {
+		tracker.open();
+	}
+
+	/**
+	 * Returns the file backing the URL or <code>null</code> if the URL is not
+	 * a bundle entry or bundle resource stored in a file.
+	 */
+	public File resolve(URL url) {
+		String protocol = url.getProtocol();
+
+		if (!BUNDLE_ENTRY.equals(protocol) && !BUNDLE_RESOURCE.equals(protocol)) {
+			return null;
+		}
+
+		URLConverter converter = tracker.getService();
+
+		if (converter == null) {
+			return null;
+		}
+
+		URL localURL;
+
+		try {
+			localURL = converter.resolve(url);
+		}
+		catch (IOException e) {
+			// the entry is gone, let the URL connection report it
+			return null;
+		}
+
+		if ((localURL == null) || !"file".equals(localURL.getProtocol())) { //$NON-NLS-1$
+			return null;
+		}
+
+		try {
+			return new File(localURL.toURI());
+		}
+		catch (URISyntaxException e) {
+			// the converter does not encode the path
+		}
+		catch (IllegalArgumentException e) {
+			// not a hierarchical URI
+		}
+
+		return new File(localURL.getPath());
+	}
+
+	private static final String BUNDLE_ENTRY = "bundleentry"; //$NON-NLS-1$
+
+	private static final String BUNDLE_RESOURCE = "bundleresource"; //$NON-NLS-1$
+
+	private final ServiceTracker<URLConverter, URLConverter> tracker;
+
+}
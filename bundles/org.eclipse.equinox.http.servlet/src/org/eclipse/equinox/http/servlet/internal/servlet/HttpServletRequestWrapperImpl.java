@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2015 Cognos Incorporated, IBM Corporation and others.
+ * Copyright (c) 2005, 2016 Cognos Incorporated, IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -22,56 +22,27 @@ import org.osgi.service.http.HttpContext;
 
 public class HttpServletRequestWrapperImpl extends HttpServletRequestWrapper {
 
+	/**
+	 * The request state of a single dispatch. The attributes are shared with
+	 * the previous state until they are first modified, the parameters and the
+	 * query string are only computed when they are first read.
+	 */
 	public class State {
 
 		public State(
-			DispatchTargets dispatchTargets,
-			DispatcherType dispatcherType, Map<String, Object> previousAttributes,
-			Map<String, String[]> previousParams, String previousQueryString) {
+			DispatchTargets dispatchTargets, DispatcherType dispatcherType,
+			Map<String, Object> previousAttributes, State previous) {
 
 			this.dispatchTargets = dispatchTargets;
 			this.dispatcherType = dispatcherType;
-
-			Map<String, Object> attributesCopy = new HashMap<String, Object>();
-
-			attributesCopy.putAll(previousAttributes);
-
-			this.attributes = attributesCopy;
-
-			Map<String, String[]> parameterMapCopy = new HashMap<String, String[]>();
-
-			// add the dispatchers query string parameters first
-			for (Map.Entry<String, String[]> entry : dispatchTargets.getParameterMap().entrySet()) {
-				String[] values = parameterMapCopy.get(entry.getKey());
-				values = Params.append(values, entry.getValue());
-				parameterMapCopy.put(entry.getKey(), values);
-			}
-
-			// add the previous dispatcher's parameters next
-			if (previousParams != null) {
-				for (Map.Entry<String, String[]> entry : previousParams.entrySet()) {
-					String[] values = parameterMapCopy.get(entry.getKey());
-					values = Params.append(values, entry.getValue());
-					parameterMapCopy.put(entry.getKey(), values);
-				}
-			}
-
-			this.parameterMap = parameterMapCopy;
-
-			String queryStringCopy = previousQueryString;
-
-			if ((dispatchTargets.getQueryString() != null) && (dispatchTargets.getQueryString().length() > 0) &&
-				(queryStringCopy != null) && (queryStringCopy.length() > 0)) {
-
-				queryStringCopy = dispatchTargets.getQueryString() + Const.AMP + queryStringCopy;
-			}
-
-			this.queryString = queryStringCopy;
-			this.previousQueryString = previousQueryString;
-
-			this.string = getClass().getSimpleName() + '[' + dispatcherType + ", " + dispatchTargets + ", " + queryString + ']'; //$NON-NLS-1$ //$NON-NLS-2$
+			this.attributes = previousAttributes;
+			this.previous = previous;
 		}
 
+		/**
+		 * Returns the attributes for reading only, see
+		 * {@link #getWritableAttributes()}.
+		 */
 		public Map<String, Object> getAttributes() {
 			return attributes;
 		}
@@ -85,34 +56,96 @@ public class HttpServletRequestWrapperImpl extends HttpServletRequestWrapper {
 		}
 
 		public Map<String, Object> getOverloadedAttributes() {
+			if (overloadedAttributes == null) {
+				overloadedAttributes = new HashMap<String, Object>();
+			}
+
 			return overloadedAttributes;
 		}
 
 		public Map<String, String[]> getParameterMap() {
+			if (parameterMap == null) {
+				parameterMap = mergeParameterMaps();
+			}
+
 			return parameterMap;
 		}
 
 		public String getPreviousQueryString() {
-			return previousQueryString;
+			return (previous == null) ? request.getQueryString() : previous.getQueryString();
 		}
 
 		public String getQueryString() {
+			if (!queryStringComputed) {
+				String previousQueryString = getPreviousQueryString();
+				String dispatchQueryString = dispatchTargets.getQueryString();
+
+				if ((dispatchQueryString != null) && (dispatchQueryString.length() > 0) &&
+					(previousQueryString != null) && (previousQueryString.length() > 0)) {
+
+					queryString = dispatchQueryString + Const.AMP + previousQueryString;
+				}
+				else {
+					queryString = previousQueryString;
+				}
+
+				queryStringComputed = true;
+			}
+
 			return queryString;
 		}
 
+		public Map<String, Object> getWritableAttributes() {
+			if (!attributesCopied) {
+				attributes = new HashMap<String, Object>(attributes);
+				attributesCopied = true;
+			}
+
+			return attributes;
+		}
+
+		public boolean hasOverloadedAttributes() {
+			return (overloadedAttributes != null) && !overloadedAttributes.isEmpty();
+		}
+
 		@Override
 		public String toString() {
-			return string;
+			return getClass().getSimpleName() + '[' + dispatcherType + ", " + dispatchTargets + ", " + getQueryString() + ']'; //$NON-NLS-1$ //$NON-NLS-2$
 		}
 
-		private final Map<String, Object> attributes;
+		private Map<String, String[]> mergeParameterMaps() {
+			Map<String, String[]> dispatchParams = dispatchTargets.getParameterMap();
+			Map<String, String[]> previousParams = (previous == null) ? request.getParameterMap() : previous.getParameterMap();
+
+			if (dispatchParams.isEmpty()) {
+				return previousParams;
+			}
+
+			if ((previousParams == null) || previousParams.isEmpty()) {
+				return dispatchParams;
+			}
+
+			// the dispatchers query string parameters come first
+			Map<String, String[]> parameterMapCopy = new LinkedHashMap<String, String[]>(dispatchParams);
+
+			for (Map.Entry<String, String[]> entry : previousParams.entrySet()) {
+				String[] values = parameterMapCopy.get(entry.getKey());
+				values = Params.append(values, entry.getValue());
+				parameterMapCopy.put(entry.getKey(), values);
+			}
+
+			return Collections.unmodifiableMap(parameterMapCopy);
+		}
+
+		private Map<String, Object> attributes;
+		private boolean attributesCopied;
 		private final DispatchTargets dispatchTargets;
 		private final DispatcherType dispatcherType;
-		private final Map<String, Object> overloadedAttributes = new HashMap<String, Object>();
-		private final Map<String, String[]> parameterMap;
-		private final String previousQueryString;
-		private final String queryString;
-		private final String string;
+		private Map<String, Object> overloadedAttributes;
+		private Map<String, String[]> parameterMap;
+		private final State previous;
+		private String queryString;
+		private boolean queryStringComputed;
 
 	}
 
@@ -158,7 +191,10 @@ public class HttpServletRequestWrapperImpl extends HttpServletRequestWrapper {
 			attributes.put(name, request.getAttribute(name));
 		}
 
-		this.getState().push(new State(dispatchTargets, dispatcherType, attributes, request.getParameterMap(), request.getQueryString()));
+		State initial = new State(dispatchTargets, dispatcherType, attributes, null);
+		initial.attributesCopied = true;
+
+		this.getState().push(initial);
 	}
 
 	public void destroy() {
@@ -258,7 +294,9 @@ public class HttpServletRequestWrapperImpl extends HttpServletRequestWrapper {
 				return null;
 			}
 
-			if (current.getOverloadedAttributes().containsKey(attributeName)) {
+			if (current.hasOverloadedAttributes() &&
+				current.getOverloadedAttributes().containsKey(attributeName)) {
+
 				return current.getOverloadedAttributes().get(attributeName);
 			}
 		}
@@ -307,7 +345,9 @@ public class HttpServletRequestWrapperImpl extends HttpServletRequestWrapper {
 
 		Set<String> names = new HashSet<String>();
 		names.addAll(current.getAttributes().keySet());
-		names.addAll(current.getOverloadedAttributes().keySet());
+		if (current.hasOverloadedAttributes()) {
+			names.addAll(current.getOverloadedAttributes().keySet());
+		}
 
 		return Collections.enumeration(names);
 	}
@@ -369,18 +409,19 @@ public class HttpServletRequestWrapperImpl extends HttpServletRequestWrapper {
 
 	public synchronized void push(DispatchTargets dispatchTargets, DispatcherType dispatcherType) {
 		State previous = getState().peek();
-		getState().push(new State(dispatchTargets, dispatcherType, previous.getAttributes(), previous.getParameterMap(), previous.getQueryString()));
+		getState().push(new State(dispatchTargets, dispatcherType, previous.getAttributes(), previous));
 	}
 
 	public void removeAttribute(String name) {
 		State current = getState().peek();
 
 		if ((Arrays.binarySearch(dispatcherAttributes, name) > -1) &&
+			current.hasOverloadedAttributes() &&
 			current.getOverloadedAttributes().containsKey(name)) {
 			current.getOverloadedAttributes().remove(name);
 		}
-		else {
-			current.getAttributes().remove(name);
+		else if (current.getAttributes().containsKey(name)) {
+			current.getWritableAttributes().remove(name);
 		}
 
 		EventListeners eventListeners = current.getDispatchTargets().getContextController().getEventListeners();
@@ -413,7 +454,7 @@ public class HttpServletRequestWrapperImpl extends HttpServletRequestWrapper {
 			current.getOverloadedAttributes().put(name, value);
 		}
 		else {
-			current.getAttributes().put(name, value);
+			current.getWritableAttributes().put(name, value);
 		}
 
 		EventListeners eventListeners = current.getDispatchTargets().getContextController().getEventListeners();
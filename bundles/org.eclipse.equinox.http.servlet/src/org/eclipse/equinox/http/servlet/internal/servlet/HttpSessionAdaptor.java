@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2015 Cognos Incorporated, IBM Corporation and others.
+ * Copyright (c) 2005, 2016 Cognos Incorporated, IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -14,6 +14,7 @@ package org.eclipse.equinox.http.servlet.internal.servlet;
 
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.servlet.ServletContext;
 import javax.servlet.http.*;
 import org.eclipse.equinox.http.servlet.internal.context.ContextController;
@@ -27,7 +28,9 @@ public class HttpSessionAdaptor implements HttpSession, Serializable {
 		private static final long serialVersionUID = 4626167646903550760L;
 
 		private static final String PARENT_SESSION_LISTENER_KEY = "org.eclipse.equinox.http.parent.session.listener"; //$NON-NLS-1$
-		transient final Set<HttpSessionAdaptor> innerSessions = new HashSet<HttpSessionAdaptor>();
+		// the container may lock its session objects too, so never lock on them
+		private static final Object listenerLock = new Object();
+		transient final Set<HttpSessionAdaptor> innerSessions = Collections.newSetFromMap(new ConcurrentHashMap<HttpSessionAdaptor, Boolean>());
 		@Override
 		public void valueBound(HttpSessionBindingEvent event) {
 			// do nothing
@@ -37,42 +40,34 @@ public class HttpSessionAdaptor implements HttpSession, Serializable {
 		public void valueUnbound(HttpSessionBindingEvent event) {
 			// Here we assume the unbound event is signifying the session is being invalidated.
 			// Must invalidate the inner sessions
-			Set<HttpSessionAdaptor> innerSessionsToInvalidate;
-			synchronized (innerSessions) {
-				// copy the sessions to invalidate and clear the set
-				innerSessionsToInvalidate = new HashSet<HttpSessionAdaptor>(innerSessions);
-				innerSessions.clear();
-			}
-			for (HttpSessionAdaptor innerSession : innerSessionsToInvalidate) {
+			Iterator<HttpSessionAdaptor> iterator = innerSessions.iterator();
+			while (iterator.hasNext()) {
+				HttpSessionAdaptor innerSession = iterator.next();
+				iterator.remove();
 				innerSession.invalidate();
 			}
 		}
 
 		static void addHttpSessionAdaptor(HttpSessionAdaptor innerSession) {
-			ParentSessionListener parentListener;
-			// need to have a global lock here because we must ensure that this is added only once
-			synchronized (ParentSessionListener.class) {
-				parentListener = (ParentSessionListener) innerSession.getSession().getAttribute(PARENT_SESSION_LISTENER_KEY);
-				if (parentListener == null) {
-					parentListener = new ParentSessionListener();
-					innerSession.getSession().setAttribute(PARENT_SESSION_LISTENER_KEY, parentListener);
+			HttpSession session = innerSession.getSession();
+			ParentSessionListener parentListener = (ParentSessionListener) session.getAttribute(PARENT_SESSION_LISTENER_KEY);
+			if (parentListener == null) {
+				// only taken once per container session, the listener must be added once
+				synchronized (listenerLock) {
+					parentListener = (ParentSessionListener) session.getAttribute(PARENT_SESSION_LISTENER_KEY);
+					if (parentListener == null) {
+						parentListener = new ParentSessionListener();
+						session.setAttribute(PARENT_SESSION_LISTENER_KEY, parentListener);
+					}
 				}
 			}
-			synchronized (parentListener.innerSessions) {
-				parentListener.innerSessions.add(innerSession);
-			}
+			parentListener.innerSessions.add(innerSession);
 		}
 
 		static void removeHttpSessionAdaptor(HttpSessionAdaptor innerSession) {
-			ParentSessionListener parentListener;
-			// need to have a global lock here because we must ensure that this is added only once
-			synchronized (ParentSessionListener.class) {
-				parentListener = (ParentSessionListener) innerSession.getSession().getAttribute(PARENT_SESSION_LISTENER_KEY);
-			}
+			ParentSessionListener parentListener = (ParentSessionListener) innerSession.getSession().getAttribute(PARENT_SESSION_LISTENER_KEY);
 			if (parentListener != null) {
-				synchronized (parentListener.innerSessions) {
-					parentListener.innerSessions.remove(innerSession);
-				}
+				parentListener.innerSessions.remove(innerSession);
 			}
 		}
 	}
@@ -154,9 +149,7 @@ public class HttpSessionAdaptor implements HttpSession, Serializable {
 
 	static public HttpSessionAdaptor createHttpSessionAdaptor(
 		HttpSession session, ServletContext servletContext, ContextController controller) {
-		HttpSessionAdaptor sessionAdaptor = new HttpSessionAdaptor(session, servletContext, controller);
-		ParentSessionListener.addHttpSessionAdaptor(sessionAdaptor);
-		return sessionAdaptor;
+		return new HttpSessionAdaptor(session, servletContext, controller);
 	}
 
 	private HttpSessionAdaptor(
@@ -170,6 +163,14 @@ public class HttpSessionAdaptor implements HttpSession, Serializable {
 		this.string = getClass().getSimpleName() + '[' + session.getId() + ", " + attributePrefix + ']'; //$NON-NLS-1$
 	}
 
+	/**
+	 * Invalidates this adaptor along with the container session. Must be
+	 * called once, after the adaptor became the active adaptor of the session.
+	 */
+	public void bindToSession() {
+		ParentSessionListener.addHttpSessionAdaptor(this);
+	}
+
 	public ContextController getController() {
 		return controller;
 	}
@@ -0,0 +1,202 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ ******************************************************************************/
+
+package org.eclipse.equinox.http.servlet.internal.servlet;
+
+import java.io.File;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.osgi.framework.*;
+
+/**
+ * A byte bounded LRU cache of the contents of small resources served by a
+ * single resource registration.
+ * <p>
+ * The cache is cleared when the bundle providing the resources is updated,
+ * unresolved or uninstalled and when the registration is destroyed. Entries
+ * backed by a file are additionally dropped as soon as the file changes.
+ */
+public class ResourceCache implements SynchronousBundleListener {
+
+	public ResourceCache(
+		BundleContext listenerContext, Bundle bundle, long maxBytes,
+		long threshold) {
+
+		this.listenerContext = listenerContext;
+		this.bundle = bundle;
+		this.maxBytes = maxBytes;
+		this.threshold = (int)Math.min(Math.min(threshold, maxBytes), Integer.MAX_VALUE);
+	}
+
+	@Override
+	public void bundleChanged(BundleEvent event) {
+		if (!event.getBundle().equals(bundle)) {
+			return;
+		}
+
+		switch (event.getType()) {
+			case BundleEvent.UNINSTALLED :
+			case BundleEvent.UNRESOLVED :
+			case BundleEvent.UPDATED :
+				clear();
+		}
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+		size = 0;
+	}
+
+	public void close() {
+		try {
+			listenerContext.removeBundleListener(this);
+		}
+		catch (IllegalStateException e) {
+			// the http bundle is already stopping
+		}
+
+		clear();
+	}
+
+	/**
+	 * Returns the cached resource or <code>null</code> if the resource is not
+	 * cached or changed since it was cached.
+	 */
+	public Entry get(String path) {
+		Entry entry;
+
+		synchronized (this) {
+			entry = entries.get(path);
+		}
+
+		if ((entry == null) || entry.isCurrent()) {
+			return entry;
+		}
+
+		synchronized (this) {
+			if (entries.get(path) == entry) {
+				remove(path);
+			}
+		}
+
+		return null;
+	}
+
+	public int getThreshold() {
+		return threshold;
+	}
+
+	public void open() {
+		listenerContext.addBundleListener(this);
+	}
+
+	/**
+	 * Caches the contents of a resource. Resources larger than the threshold
+	 * are not cached and yield <code>null</code>.
+	 */
+	public Entry put(
+		String path, File file, byte[] bytes, String contentType,
+		long lastModified) {
+
+		if (bytes.length > threshold) {
+			return null;
+		}
+
+		Entry entry = new Entry(file, bytes, contentType, lastModified);
+
+		synchronized (this) {
+			remove(path);
+
+			entries.put(path, entry);
+			size += bytes.length;
+
+			Iterator<Entry> iterator = entries.values().iterator();
+
+			while ((size > maxBytes) && iterator.hasNext()) {
+				size -= iterator.next().bytes.length;
+				iterator.remove();
+			}
+		}
+
+		return entry;
+	}
+
+	public synchronized long size() {
+		return size;
+	}
+
+	private void remove(String path) {
+		Entry entry = entries.remove(path);
+
+		if (entry != null) {
+			size -= entry.bytes.length;
+		}
+	}
+
+	static String hash(byte[] bytes) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1"); //$NON-NLS-1$
+			byte[] hash = digest.digest(bytes);
+			StringBuilder sb = new StringBuilder(hash.length * 2 + 2);
+
+			sb.append('"');
+
+			for (byte b : hash) {
+				sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+				sb.append(Character.forDigit(b & 0xf, 16));
+			}
+
+			return sb.append('"').toString();
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public static class Entry {
+
+		Entry(File file, byte[] bytes, String contentType, long lastModified) {
+			this.file = file;
+			this.fileLength = (file == null) ? -1 : bytes.length;
+			this.bytes = bytes;
+			this.contentType = contentType;
+			this.lastModified = lastModified;
+			this.etag = hash(bytes);
+		}
+
+		boolean isCurrent() {
+			if (file == null) {
+				return true;
+			}
+
+			return (file.length() == fileLength) && (file.lastModified() == lastModified);
+		}
+
+		final byte[] bytes;
+		final String contentType;
+		final String etag;
+		final File file;
+		final long fileLength;
+		final long lastModified;
+
+	}
+
+	private final Bundle bundle;
+	private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+	private final BundleContext listenerContext;
+	private final long maxBytes;
+	private long size;
+	private final int threshold;
+
+}
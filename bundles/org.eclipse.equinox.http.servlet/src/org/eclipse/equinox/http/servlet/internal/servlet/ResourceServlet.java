@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2014 Cognos Incorporated, IBM Corporation and others
+ * Copyright (c) 2005, 2016 Cognos Incorporated, IBM Corporation and others
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -13,31 +13,84 @@
 package org.eclipse.equinox.http.servlet.internal.servlet;
 
 import java.io.*;
-import java.net.URL;
-import java.net.URLConnection;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.security.*;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import javax.servlet.http.*;
 import org.eclipse.equinox.http.servlet.internal.util.Const;
 import org.osgi.service.http.context.ServletContextHelper;
 
 public class ResourceServlet extends HttpServlet {
 	private static final long serialVersionUID = 3586876493076122102L;
+	private static final String ACCEPT_ENCODING = "Accept-Encoding"; //$NON-NLS-1$
+	private static final String ACCEPT_RANGES = "Accept-Ranges"; //$NON-NLS-1$
+	private static final String BYTES = "bytes"; //$NON-NLS-1$
+	private static final String CONTENT_ENCODING = "Content-Encoding"; //$NON-NLS-1$
+	private static final String CONTENT_LENGTH = "Content-Length"; //$NON-NLS-1$
+	private static final String CONTENT_RANGE = "Content-Range"; //$NON-NLS-1$
 	private static final String LAST_MODIFIED = "Last-Modified"; //$NON-NLS-1$
 	private static final String IF_MODIFIED_SINCE = "If-Modified-Since"; //$NON-NLS-1$
 	private static final String IF_NONE_MATCH = "If-None-Match"; //$NON-NLS-1$
+	private static final String IF_RANGE = "If-Range"; //$NON-NLS-1$
 	private static final String ETAG = "ETag"; //$NON-NLS-1$
+	private static final String RANGE = "Range"; //$NON-NLS-1$
+	private static final String VARY = "Vary"; //$NON-NLS-1$
+	private static final int SC_REQUESTED_RANGE_NOT_SATISFIABLE = 416;
+	private static final int MAX_CACHED_RESOURCES = 256;
+	private static final long[] UNSATISFIABLE = new long[0];
+	// precompressed variants in order of preference
+	private static final String[] ENCODINGS = {"br", "gzip"}; //$NON-NLS-1$ //$NON-NLS-2$
+	private static final String[] ENCODING_SUFFIXES = {".br", ".gz"}; //$NON-NLS-1$ //$NON-NLS-2$
 
 	private String internalName;
 	private ServletContextHelper servletContextHelper;
 	private AccessControlContext acc;
+	private final boolean precompressed;
+	private final ResourceCache resourceCache;
+	private final FileResolver fileResolver;
+	private final Map<String, ResourceMetadata> metadataCache = new LinkedHashMap<String, ResourceMetadata>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, ResourceMetadata> eldest) {
+			return size() > MAX_CACHED_RESOURCES;
+		}
+	};
 
 	public ResourceServlet(String internalName, ServletContextHelper servletContextHelper, AccessControlContext acc) {
+		this(internalName, servletContextHelper, acc, false);
+	}
+
+	public ResourceServlet(String internalName, ServletContextHelper servletContextHelper, AccessControlContext acc, boolean precompressed) {
+		this(internalName, servletContextHelper, acc, precompressed, null, null);
+	}
+
+	public ResourceServlet(String internalName, ServletContextHelper servletContextHelper, AccessControlContext acc, boolean precompressed, ResourceCache resourceCache, FileResolver fileResolver) {
 		this.internalName = internalName;
 		if (internalName.equals(Const.SLASH)) {
 			this.internalName = Const.BLANK;
 		}
 		this.servletContextHelper = servletContextHelper;
 		this.acc = acc;
+		this.precompressed = precompressed;
+		this.resourceCache = resourceCache;
+		this.fileResolver = fileResolver;
+	}
+
+	@Override
+	public void init() {
+		if (resourceCache != null)
+			resourceCache.open();
+	}
+
+	@Override
+	public void destroy() {
+		if (resourceCache != null)
+			resourceCache.close();
 	}
 
 	public void service(HttpServletRequest req, final HttpServletResponse resp) throws IOException {
@@ -47,6 +100,11 @@ public class ResourceServlet extends HttpServlet {
 			if (pathInfo == null)
 				pathInfo = Const.BLANK;
 			String resourcePath = internalName + pathInfo;
+			if (resourceCache != null) {
+				ResourceCache.Entry entry = resourceCache.get(resourcePath);
+				if (entry != null && writeCachedResource(req, resp, entry))
+					return;
+			}
 			URL resourceURL = servletContextHelper.getResource(resourcePath);
 			if (resourceURL != null)
 				writeResource(req, resp, resourcePath, resourceURL);
@@ -62,82 +120,147 @@ public class ResourceServlet extends HttpServlet {
 			AccessController.doPrivileged(new PrivilegedExceptionAction<Boolean>() {
 
 				public Boolean run() throws Exception {
-					URLConnection connection = resourceURL.openConnection();
-					long lastModified = connection.getLastModified();
-					int contentLength = connection.getContentLength();
+					OutputStream os;
+					try {
+						os = resp.getOutputStream();
+					} catch (IllegalStateException e) { // can occur if the response output is already open as a Writer
+						os = null;
+					}
+
+					ResourceBody body = ResourceBody.open(resourceURL, fileResolver);
+					ResourceMetadata metadata = getMetadata(resourcePath, body, null, null);
+					String rangeHeader = req.getHeader(RANGE);
+					boolean vary = false;
+
+					if (precompressed && os != null) {
+						vary = metadata.hasVariants();
+
+						// ranges are only served from the identity encoding
+						String acceptEncoding = req.getHeader(ACCEPT_ENCODING);
+
+						for (int i = 0; vary && (rangeHeader == null) && (acceptEncoding != null) && (i < ENCODINGS.length); i++) {
+							if (accepts(acceptEncoding, ENCODINGS[i])) {
+								ResourceBody variantBody = openVariant(metadata, i);
 
-					String etag = null;
-					if (lastModified != -1 && contentLength != -1)
-						etag = "W/\"" + contentLength + "-" + lastModified + "\""; //$NON-NLS-1$//$NON-NLS-2$//$NON-NLS-3$
+								if (variantBody != null) {
+									body.close();
+									body = variantBody;
+									metadata = getMetadata(metadata.variantPaths[i], body, metadata.contentType, ENCODINGS[i]);
+									resp.setHeader(CONTENT_ENCODING, ENCODINGS[i]);
+									break;
+								}
+							}
+						}
+
+						if (vary) {
+							resp.setHeader(VARY, ACCEPT_ENCODING);
+						}
+					}
+
+					if (resourceCache != null && !vary && os != null && metadata.contentLength >= 0 && metadata.contentLength <= resourceCache.getThreshold()) {
+						ResourceCache.Entry entry = null;
+						try {
+							byte[] bytes = body.read((int) metadata.contentLength);
+							if (bytes != null)
+								entry = resourceCache.put(resourcePath, body.file, bytes, metadata.contentType, metadata.lastModified);
+						} finally {
+							body.close();
+						}
+						if (entry != null && writeCachedResource(req, resp, entry))
+							return Boolean.TRUE;
+						// the resource changed while it was read
+						evict(resourcePath);
+						body = ResourceBody.open(resourceURL, fileResolver);
+						metadata = getMetadata(resourcePath, body, null, null);
+					}
 
 					// Check for cache revalidation.
 					// We should prefer ETag validation as the guarantees are stronger and all HTTP 1.1 clients should be using it
 					String ifNoneMatch = req.getHeader(IF_NONE_MATCH);
-					if (ifNoneMatch != null && etag != null && ifNoneMatch.indexOf(etag) != -1) {
+					if (ifNoneMatch != null && metadata.etag != null && ifNoneMatch.indexOf(metadata.etag) != -1) {
 						resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+						body.close();
 						return Boolean.TRUE;
 					}
 
 					long ifModifiedSince = req.getDateHeader(IF_MODIFIED_SINCE);
 					// for purposes of comparison we add 999 to ifModifiedSince since the fidelity
 					// of the IMS header generally doesn't include milli-seconds
-					if (ifModifiedSince > -1 && lastModified > 0 && lastModified <= (ifModifiedSince + 999)) {
+					if (ifModifiedSince > -1 && metadata.lastModified > 0 && metadata.lastModified <= (ifModifiedSince + 999)) {
 						resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+						body.close();
+						return Boolean.TRUE;
+					}
+
+					if (os == null) {
+						writeResourceToWriter(resp, metadata, body);
 						return Boolean.TRUE;
 					}
 
-					// return the full contents regularly
-					if (contentLength != -1)
-						resp.setContentLength(contentLength);
+					long[] range = null;
 
-					String contentType = servletContextHelper.getMimeType(resourcePath);
-					if (contentType == null)
-						contentType = getServletConfig().getServletContext().getMimeType(resourcePath);
+					if (rangeHeader != null && metadata.contentLength > 0 && isRangeCurrent(req, metadata.etag, metadata.lastModified)) {
+						range = parseRange(rangeHeader, metadata.contentLength);
+					}
 
-					if (contentType != null)
-						resp.setContentType(contentType);
+					if (metadata.contentType != null)
+						resp.setContentType(metadata.contentType);
 
-					if (lastModified > 0)
-						resp.setDateHeader(LAST_MODIFIED, lastModified);
+					if (metadata.lastModified > 0)
+						resp.setDateHeader(LAST_MODIFIED, metadata.lastModified);
 
-					if (etag != null)
-						resp.setHeader(ETAG, etag);
+					if (metadata.etag != null)
+						resp.setHeader(ETAG, metadata.etag);
 
-					if (contentLength != 0) {
-						// open the input stream
-						InputStream is = null;
-						try {
-							is = connection.getInputStream();
-							// write the resource
-							try {
-								OutputStream os = resp.getOutputStream();
-								int writtenContentLength = writeResourceToOutputStream(is, os);
-								if (contentLength == -1 || contentLength != writtenContentLength)
-									resp.setContentLength(writtenContentLength);
-							} catch (IllegalStateException e) { // can occur if the response output is already open as a Writer
-								Writer writer = resp.getWriter();
-								writeResourceToWriter(is, writer);
-								// Since ContentLength is a measure of the number of bytes contained in the body
-								// of a message when we use a Writer we lose control of the exact byte count and
-								// defer the problem to the Servlet Engine's Writer implementation.
+					if (metadata.contentLength != -1)
+						resp.setHeader(ACCEPT_RANGES, BYTES);
+
+					long start = 0;
+					long length = metadata.contentLength;
+
+					if (range == UNSATISFIABLE) {
+						resp.setHeader(CONTENT_RANGE, BYTES + " */" + metadata.contentLength); //$NON-NLS-1$
+						resp.setStatus(SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+						body.close();
+						return Boolean.TRUE;
+					}
+					else if (range != null) {
+						start = range[0];
+						length = range[1] - range[0] + 1;
+						resp.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+						resp.setHeader(CONTENT_RANGE, BYTES + ' ' + range[0] + '-' + range[1] + '/' + metadata.contentLength);
+					}
+
+					// return the contents regularly
+					if (length != -1)
+						setContentLength(resp, length);
+
+					if (length == 0 || req.getMethod().equals("HEAD")) { //$NON-NLS-1$
+						body.close();
+						return Boolean.TRUE;
+					}
+
+					try {
+						long writtenContentLength = body.writeTo(os, start, length);
+						if (length == -1 || length != writtenContentLength) {
+							if (length != -1) {
+								// the resource changed while it was written
+								evict(metadata.resourcePath);
 							}
-						} catch (FileNotFoundException e) {
-							// FileNotFoundException may indicate the following scenarios
-							// - url is a directory
-							// - url is not accessible
-							sendError(resp, HttpServletResponse.SC_FORBIDDEN);
-						} catch (SecurityException e) {
-							// SecurityException may indicate the following scenarios
-							// - url is not accessible
-							sendError(resp, HttpServletResponse.SC_FORBIDDEN);
-						} finally {
-							if (is != null)
-								try {
-									is.close();
-								} catch (IOException e) {
-									// ignore
-								}
+							if (!resp.isCommitted())
+								setContentLength(resp, writtenContentLength);
 						}
+					} catch (FileNotFoundException e) {
+						// FileNotFoundException may indicate the following scenarios
+						// - url is a directory
+						// - url is not accessible
+						sendError(resp, HttpServletResponse.SC_FORBIDDEN);
+					} catch (SecurityException e) {
+						// SecurityException may indicate the following scenarios
+						// - url is not accessible
+						sendError(resp, HttpServletResponse.SC_FORBIDDEN);
+					} finally {
+						body.close();
 					}
 					return Boolean.TRUE;
 				}
@@ -147,6 +270,67 @@ public class ResourceServlet extends HttpServlet {
 		}
 	}
 
+	/*
+	 * Returns false if the response output is already open as a Writer, in
+	 * which case the resource must be served through the regular path.
+	 */
+	private boolean writeCachedResource(HttpServletRequest req, HttpServletResponse resp, ResourceCache.Entry entry) throws IOException {
+		OutputStream os;
+		try {
+			os = resp.getOutputStream();
+		} catch (IllegalStateException e) {
+			return false;
+		}
+
+		String ifNoneMatch = req.getHeader(IF_NONE_MATCH);
+		if (ifNoneMatch != null && ifNoneMatch.indexOf(entry.etag) != -1) {
+			resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return true;
+		}
+
+		long ifModifiedSince = req.getDateHeader(IF_MODIFIED_SINCE);
+		if (ifModifiedSince > -1 && entry.lastModified > 0 && entry.lastModified <= (ifModifiedSince + 999)) {
+			resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return true;
+		}
+
+		if (entry.contentType != null)
+			resp.setContentType(entry.contentType);
+
+		if (entry.lastModified > 0)
+			resp.setDateHeader(LAST_MODIFIED, entry.lastModified);
+
+		resp.setHeader(ETAG, entry.etag);
+		resp.setHeader(ACCEPT_RANGES, BYTES);
+
+		int start = 0;
+		int length = entry.bytes.length;
+		String rangeHeader = req.getHeader(RANGE);
+
+		if (rangeHeader != null && length > 0 && isRangeCurrent(req, entry.etag, entry.lastModified)) {
+			long[] range = parseRange(rangeHeader, length);
+
+			if (range == UNSATISFIABLE) {
+				resp.setHeader(CONTENT_RANGE, BYTES + " */" + length); //$NON-NLS-1$
+				resp.setStatus(SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+				return true;
+			}
+			else if (range != null) {
+				start = (int) range[0];
+				length = (int) (range[1] - range[0] + 1);
+				resp.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+				resp.setHeader(CONTENT_RANGE, BYTES + ' ' + range[0] + '-' + range[1] + '/' + entry.bytes.length);
+			}
+		}
+
+		resp.setContentLength(length);
+
+		if (length > 0 && !req.getMethod().equals("HEAD")) //$NON-NLS-1$
+			os.write(entry.bytes, start, length);
+
+		return true;
+	}
+
 	void sendError(final HttpServletResponse resp, int sc) throws IOException {
 
 		try {
@@ -158,18 +342,6 @@ public class ResourceServlet extends HttpServlet {
 		}
 	}
 
-	int writeResourceToOutputStream(InputStream is, OutputStream os) throws IOException {
-		byte[] buffer = new byte[8192];
-		int bytesRead = is.read(buffer);
-		int writtenContentLength = 0;
-		while (bytesRead != -1) {
-			os.write(buffer, 0, bytesRead);
-			writtenContentLength += bytesRead;
-			bytesRead = is.read(buffer);
-		}
-		return writtenContentLength;
-	}
-
 	void writeResourceToWriter(InputStream is, Writer writer) throws IOException {
 		Reader reader = new InputStreamReader(is);
 		try {
@@ -185,4 +357,481 @@ public class ResourceServlet extends HttpServlet {
 			}
 		}
 	}
+
+	private void writeResourceToWriter(HttpServletResponse resp, ResourceMetadata metadata, ResourceBody body) throws IOException {
+		if (metadata.contentLength != -1)
+			setContentLength(resp, metadata.contentLength);
+
+		if (metadata.contentType != null)
+			resp.setContentType(metadata.contentType);
+
+		if (metadata.lastModified > 0)
+			resp.setDateHeader(LAST_MODIFIED, metadata.lastModified);
+
+		if (metadata.etag != null)
+			resp.setHeader(ETAG, metadata.etag);
+
+		if (metadata.contentLength == 0) {
+			body.close();
+			return;
+		}
+
+		try {
+			// Since ContentLength is a measure of the number of bytes contained in the body
+			// of a message when we use a Writer we lose control of the exact byte count and
+			// defer the problem to the Servlet Engine's Writer implementation.
+			writeResourceToWriter(body.getInputStream(), resp.getWriter());
+		} catch (FileNotFoundException e) {
+			sendError(resp, HttpServletResponse.SC_FORBIDDEN);
+		} catch (SecurityException e) {
+			sendError(resp, HttpServletResponse.SC_FORBIDDEN);
+		} finally {
+			body.close();
+		}
+	}
+
+	private boolean accepts(String acceptEncoding, String encoding) {
+		for (String coding : acceptEncoding.split(",")) { //$NON-NLS-1$
+			String[] params = coding.split(";"); //$NON-NLS-1$
+
+			if (!params[0].trim().equalsIgnoreCase(encoding)) {
+				continue;
+			}
+
+			for (int i = 1; i < params.length; i++) {
+				String param = params[i].trim();
+
+				if (param.startsWith("q=")) { //$NON-NLS-1$
+					try {
+						return Double.parseDouble(param.substring(2)) > 0;
+					} catch (NumberFormatException e) {
+						return false;
+					}
+				}
+			}
+
+			return true;
+		}
+
+		return false;
+	}
+
+	private void evict(String resourcePath) {
+		synchronized (metadataCache) {
+			metadataCache.remove(resourcePath);
+		}
+	}
+
+	/*
+	 * Returns the metadata of the resource, reusing the cached values as long
+	 * as the resource URL, length and modification time did not change.
+	 */
+	ResourceMetadata getMetadata(String resourcePath, ResourceBody body, String contentType, String encoding) {
+		// a variant served for another resource has that resource's content type,
+		// so it is cached under its encoding, apart from a direct request for it
+		String key = (encoding == null) ? resourcePath : encoding + ':' + resourcePath;
+		ResourceMetadata metadata;
+
+		synchronized (metadataCache) {
+			metadata = metadataCache.get(key);
+		}
+
+		if (metadata != null && metadata.matches(body)) {
+			return metadata;
+		}
+
+		if (contentType == null) {
+			contentType = servletContextHelper.getMimeType(resourcePath);
+			if (contentType == null)
+				contentType = getServletConfig().getServletContext().getMimeType(resourcePath);
+		}
+
+		metadata = new ResourceMetadata(resourcePath, body, contentType, encoding);
+
+		synchronized (metadataCache) {
+			metadataCache.put(key, metadata);
+		}
+
+		return metadata;
+	}
+
+	private boolean isRangeCurrent(HttpServletRequest req, String etag, long lastModified) {
+		String ifRange = req.getHeader(IF_RANGE);
+
+		if (ifRange == null) {
+			return true;
+		}
+
+		if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) { //$NON-NLS-1$ //$NON-NLS-2$
+			// only strong entity tags, i.e. those of cached resources, may be used with If-Range
+			return (etag != null) && !etag.startsWith("W/") && ifRange.equals(etag); //$NON-NLS-1$
+		}
+
+		try {
+			long date = req.getDateHeader(IF_RANGE);
+
+			return (lastModified > 0) && (lastModified / 1000 == date / 1000);
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+	}
+
+	private ResourceBody openVariant(ResourceMetadata metadata, int index) throws IOException {
+		URL variantURL = metadata.getVariantURL(index);
+
+		if (variantURL == null) {
+			return null;
+		}
+
+		try {
+			ResourceBody variantBody = ResourceBody.open(variantURL, fileResolver);
+
+			if (variantBody.file == null && "file".equals(variantURL.getProtocol())) { //$NON-NLS-1$
+				// the variant file was removed
+				return null;
+			}
+
+			return variantBody;
+		} catch (IOException e) {
+			// the variant disappeared, serve the identity encoding
+			return null;
+		}
+	}
+
+	/*
+	 * Only a single range is supported; any other well formed range set
+	 * results in the full representation as allowed by RFC 7233.
+	 */
+	static long[] parseRange(String rangeHeader, long contentLength) {
+		if (!rangeHeader.startsWith(BYTES + '=') || rangeHeader.indexOf(',') != -1) {
+			return null;
+		}
+
+		String spec = rangeHeader.substring(BYTES.length() + 1).trim();
+		int dash = spec.indexOf('-');
+
+		if (dash == -1) {
+			return null;
+		}
+
+		long start;
+		long end;
+
+		try {
+			if (dash == 0) {
+				long suffix = Long.parseLong(spec.substring(1).trim());
+
+				if (suffix <= 0) {
+					return UNSATISFIABLE;
+				}
+
+				start = Math.max(0, contentLength - suffix);
+				end = contentLength - 1;
+			}
+			else {
+				start = Long.parseLong(spec.substring(0, dash).trim());
+				end = (dash == spec.length() - 1) ? contentLength - 1 : Long.parseLong(spec.substring(dash + 1).trim());
+			}
+		} catch (NumberFormatException e) {
+			return null;
+		}
+
+		if (start < 0) {
+			return null;
+		}
+
+		if (start >= contentLength) {
+			return UNSATISFIABLE;
+		}
+
+		if (end < start) {
+			return null;
+		}
+
+		return new long[] {start, Math.min(end, contentLength - 1)};
+	}
+
+	private void setContentLength(HttpServletResponse resp, long length) {
+		if (length <= Integer.MAX_VALUE)
+			resp.setContentLength((int) length);
+		else
+			resp.setHeader(CONTENT_LENGTH, String.valueOf(length));
+	}
+
+	/**
+	 * The body of a resource. Resources backed by a file, including the
+	 * entries of bundles installed from a directory, are read through a
+	 * {@link FileChannel}, everything else through a {@link URLConnection}.
+	 */
+	static class ResourceBody {
+
+		static ResourceBody open(URL url, FileResolver fileResolver) throws IOException {
+			File file = toFile(url);
+
+			if (file == null && fileResolver != null) {
+				file = fileResolver.resolve(url);
+			}
+
+			if (file != null && file.isFile()) {
+				return new ResourceBody(url, file, null, file.length(), file.lastModified());
+			}
+
+			URLConnection connection = url.openConnection();
+
+			return new ResourceBody(url, null, connection, connection.getContentLength(), connection.getLastModified());
+		}
+
+		private static File toFile(URL url) {
+			if (!"file".equals(url.getProtocol())) { //$NON-NLS-1$
+				return null;
+			}
+
+			try {
+				return new File(url.toURI());
+			} catch (URISyntaxException e) {
+				// not a valid URI, e.g. an unencoded path
+			} catch (IllegalArgumentException e) {
+				// not a hierarchical URI
+			}
+
+			return new File(url.getPath());
+		}
+
+		ResourceBody(URL url, File file, URLConnection connection, long contentLength, long lastModified) {
+			this.url = url;
+			this.file = file;
+			this.connection = connection;
+			this.contentLength = contentLength;
+			this.lastModified = lastModified;
+		}
+
+		void close() {
+			if (inputStream != null) {
+				try {
+					inputStream.close();
+				} catch (IOException e) {
+					// ignore
+				}
+			}
+		}
+
+		InputStream getInputStream() throws IOException {
+			if (inputStream == null) {
+				inputStream = (connection != null) ? connection.getInputStream() : new FileInputStream(file);
+			}
+
+			return inputStream;
+		}
+
+		/*
+		 * Reads the whole body, returns null if it does not have the expected
+		 * length.
+		 */
+		byte[] read(int length) throws IOException {
+			InputStream is = getInputStream();
+			byte[] bytes = new byte[length];
+			int offset = 0;
+
+			while (offset < length) {
+				int bytesRead = is.read(bytes, offset, length - offset);
+
+				if (bytesRead == -1) {
+					return null;
+				}
+
+				offset += bytesRead;
+			}
+
+			return (is.read() == -1) ? bytes : null;
+		}
+
+		long writeTo(OutputStream os, long start, long length) throws IOException {
+			if (file != null) {
+				FileInputStream fis = new FileInputStream(file);
+				inputStream = fis;
+				FileChannel channel = fis.getChannel();
+
+				if (os instanceof WritableByteChannel) {
+					// let the container take the bytes straight from the file
+					return transfer(channel, (WritableByteChannel) os, start, length);
+				}
+
+				return copy(channel, os, start, length);
+			} else if (start > 0) {
+				skip(getInputStream(), start);
+			}
+
+			return copy(getInputStream(), os, length);
+		}
+
+		private long copy(InputStream is, OutputStream os, long length) throws IOException {
+			byte[] buffer = new byte[8192];
+			long written = 0;
+
+			while (length == -1 || written < length) {
+				int max = (length == -1) ? buffer.length : (int) Math.min(buffer.length, length - written);
+				int bytesRead = is.read(buffer, 0, max);
+
+				if (bytesRead == -1) {
+					break;
+				}
+
+				os.write(buffer, 0, bytesRead);
+				written += bytesRead;
+			}
+
+			return written;
+		}
+
+		private long copy(FileChannel channel, OutputStream os, long start, long length) throws IOException {
+			ByteBuffer buffer = ByteBuffer.allocate(8192);
+			long written = 0;
+
+			while (length == -1 || written < length) {
+				buffer.clear();
+				if (length != -1 && length - written < buffer.capacity())
+					buffer.limit((int) (length - written));
+				int bytesRead = channel.read(buffer, start + written);
+
+				if (bytesRead == -1) {
+					break;
+				}
+
+				os.write(buffer.array(), 0, bytesRead);
+				written += bytesRead;
+			}
+
+			return written;
+		}
+
+		private void skip(InputStream is, long count) throws IOException {
+			while (count > 0) {
+				long skipped = is.skip(count);
+
+				if (skipped <= 0) {
+					if (is.read() == -1) {
+						return;
+					}
+					skipped = 1;
+				}
+
+				count -= skipped;
+			}
+		}
+
+		private long transfer(FileChannel channel, WritableByteChannel target, long start, long length) throws IOException {
+			ByteBuffer buffer = null;
+			long written = 0;
+
+			while (written < length) {
+				long count = channel.transferTo(start + written, length - written, target);
+
+				if (count <= 0) {
+					if (start + written >= channel.size()) {
+						break;
+					}
+
+					// some channels accept nothing from transferTo; write through a buffer
+					if (buffer == null)
+						buffer = ByteBuffer.allocate(8192);
+					buffer.clear();
+					if (length - written < buffer.capacity())
+						buffer.limit((int) (length - written));
+					count = channel.read(buffer, start + written);
+					if (count <= 0) {
+						break;
+					}
+					buffer.flip();
+					while (buffer.hasRemaining()) {
+						target.write(buffer);
+					}
+				}
+
+				written += count;
+			}
+
+			return written;
+		}
+
+		final URLConnection connection;
+		final long contentLength;
+		final File file;
+		final long lastModified;
+		final URL url;
+		private InputStream inputStream;
+
+	}
+
+	/**
+	 * The response headers of a resource, kept while the resource URL, length
+	 * and modification time stay the same.
+	 */
+	class ResourceMetadata {
+
+		ResourceMetadata(String resourcePath, ResourceBody body, String contentType, String encoding) {
+			this.resourcePath = resourcePath;
+			this.url = body.url.toExternalForm();
+			this.contentLength = body.contentLength;
+			this.lastModified = body.lastModified;
+			this.contentType = contentType;
+
+			if (lastModified != -1 && contentLength != -1 && encoding != null)
+				etag = "W/\"" + contentLength + "-" + lastModified + "-" + encoding + "\""; //$NON-NLS-1$//$NON-NLS-2$//$NON-NLS-3$//$NON-NLS-4$
+			else if (lastModified != -1 && contentLength != -1)
+				etag = "W/\"" + contentLength + "-" + lastModified + "\""; //$NON-NLS-1$//$NON-NLS-2$//$NON-NLS-3$
+			else
+				etag = null;
+
+			// variants of a variant are never looked up
+			if (precompressed && encoding == null) {
+				variantPaths = new String[ENCODINGS.length];
+				for (int i = 0; i < ENCODINGS.length; i++) {
+					variantPaths[i] = resourcePath + ENCODING_SUFFIXES[i];
+				}
+			}
+			else {
+				variantPaths = null;
+			}
+		}
+
+		/*
+		 * Variants are resolved once per identity representation; a variant
+		 * added later is picked up when the resource itself changes.
+		 */
+		synchronized URL getVariantURL(int index) {
+			if (variantURLs == null) {
+				variantURLs = new URL[ENCODINGS.length];
+				for (int i = 0; i < ENCODINGS.length; i++) {
+					variantURLs[i] = servletContextHelper.getResource(variantPaths[i]);
+				}
+			}
+
+			return variantURLs[index];
+		}
+
+		synchronized boolean hasVariants() {
+			for (int i = 0; i < ENCODINGS.length; i++) {
+				if (getVariantURL(i) != null) {
+					return true;
+				}
+			}
+
+			return false;
+		}
+
+		boolean matches(ResourceBody body) {
+			return contentLength == body.contentLength && lastModified == body.lastModified && url.equals(body.url.toExternalForm());
+		}
+
+		final long contentLength;
+		final String contentType;
+		final String etag;
+		final long lastModified;
+		final String resourcePath;
+		final String url;
+		final String[] variantPaths;
+		private URL[] variantURLs;
+
+	}
+
 }
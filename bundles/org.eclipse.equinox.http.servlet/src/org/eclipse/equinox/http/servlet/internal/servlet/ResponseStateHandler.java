@@ -12,7 +12,6 @@
 package org.eclipse.equinox.http.servlet.internal.servlet;
 
 import java.io.IOException;
-import java.util.Collections;
 import java.util.List;
 import javax.servlet.*;
 import javax.servlet.http.*;
@@ -63,8 +62,6 @@ public class ResponseStateHandler {
 					endpoint.service(request, response);
 				}
 				else {
-					Collections.sort(filters);
-
 					FilterChain chain = new FilterChainImpl(
 						filters, endpoint, dispatcherType);
 
@@ -156,8 +153,8 @@ public class ResponseStateHandler {
 		Class<? extends Exception> clazz = exception.getClass();
 		String className = clazz.getName();
 
-		DispatchTargets errorDispatchTargets = contextController.getDispatchTargets(
-			className, null, null, null, null, null, Match.EXACT, null);
+		DispatchTargets errorDispatchTargets = contextController.getNamedDispatchTargets(
+			className);
 
 		if (errorDispatchTargets == null) {
 			throwException(exception);
@@ -233,8 +230,8 @@ public class ResponseStateHandler {
 
 		ContextController contextController = dispatchTargets.getContextController();
 
-		DispatchTargets errorDispatchTargets = contextController.getDispatchTargets(
-			String.valueOf(status), null, null, null, null, null, Match.EXACT, null);
+		DispatchTargets errorDispatchTargets = contextController.getNamedDispatchTargets(
+			String.valueOf(status));
 
 		if (errorDispatchTargets == null) {
 			wrappedResponse.sendError(status, wrapperImpl.getMessage());
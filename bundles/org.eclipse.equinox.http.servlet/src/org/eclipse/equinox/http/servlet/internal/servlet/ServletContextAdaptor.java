@@ -14,11 +14,11 @@ package org.eclipse.equinox.http.servlet.internal.servlet;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.lang.reflect.*;
 import java.net.URL;
 import java.security.*;
 import java.util.*;
 import javax.servlet.*;
+import javax.servlet.descriptor.JspConfigDescriptor;
 import org.eclipse.equinox.http.servlet.internal.context.*;
 import org.eclipse.equinox.http.servlet.internal.util.Const;
 import org.eclipse.equinox.http.servlet.internal.util.EventListeners;
@@ -26,36 +26,17 @@ import org.osgi.framework.Bundle;
 import org.osgi.framework.wiring.BundleWiring;
 import org.osgi.service.http.context.ServletContextHelper;
 
-public class ServletContextAdaptor {
-
-	private final static Map<Method, Method> contextToHandlerMethods;
-
-	static {
-		contextToHandlerMethods = createContextToHandlerMethods();
-	}
-
-	private static Map<Method, Method> createContextToHandlerMethods() {
-		Map<Method, Method> methods = new HashMap<Method, Method>();
-		Method[] handlerMethods =
-			ServletContextAdaptor.class.getDeclaredMethods();
-
-		for (int i = 0; i < handlerMethods.length; i++) {
-			Method handlerMethod = handlerMethods[i];
-			String name = handlerMethod.getName();
-			Class<?>[] parameterTypes = handlerMethod.getParameterTypes();
-
-			try {
-				Method method = ServletContext.class.getMethod(
-					name, parameterTypes);
-				methods.put(method, handlerMethod);
-			}
-			catch (NoSuchMethodException e) {
-				// do nothing
-			}
-		}
-
-		return methods;
-	}
+/**
+ * The servlet context handed to servlets, filters and listeners of a context
+ * controller. Methods the Http Whiteboard does not customize are delegated
+ * to the servlet context of the container.
+ * <p>
+ * The class is compiled against the newest supported Servlet API. Methods
+ * introduced by later API versions are only linked when they are called, so
+ * it also works on containers providing an older API, where those methods
+ * are never invoked.
+ */
+public class ServletContextAdaptor implements ServletContext {
 
 	public ServletContextAdaptor(
 		ContextController contextController, Bundle bundle,
@@ -77,16 +58,6 @@ public class ServletContextAdaptor {
 		this.string = getClass().getSimpleName() + '[' + contextController + ']';
 	}
 
-	public ServletContext createServletContext() {
-		Class<?> clazz = getClass();
-		ClassLoader curClassLoader = clazz.getClassLoader();
-		Class<?>[] interfaces = new Class[] {ServletContext.class};
-		InvocationHandler invocationHandler = createInvocationHandler();
-
-		return (ServletContext)Proxy.newProxyInstance(
-			curClassLoader, interfaces, invocationHandler);
-	}
-
 	public ClassLoader getClassLoader() {
 		return classLoader;
 	}
@@ -139,8 +110,8 @@ public class ServletContextAdaptor {
 	}
 
 	public RequestDispatcher getNamedDispatcher(String servletName) {
-		DispatchTargets dispatchTargets = contextController.getDispatchTargets(
-			servletName, null, null, null, null, null, Match.EXACT, null);
+		DispatchTargets dispatchTargets = contextController.getNamedDispatchTargets(
+			servletName);
 
 		if (dispatchTargets == null) {
 			return null;
@@ -257,7 +228,7 @@ public class ServletContextAdaptor {
 
 		ServletContextAttributeEvent servletContextAttributeEvent =
 			new ServletContextAttributeEvent(
-				servletContextTL.get(), attributeName, attributeValue);
+				this, attributeName, attributeValue);
 
 		for (ServletContextAttributeListener servletContextAttributeListener : listeners) {
 			servletContextAttributeListener.attributeRemoved(
@@ -265,43 +236,43 @@ public class ServletContextAdaptor {
 		}
 	}
 
-	public void addFilter(String arg1, Class<? extends Filter> arg2) {
+	public FilterRegistration.Dynamic addFilter(String arg1, Class<? extends Filter> arg2) {
 		throw new UnsupportedOperationException();
 	}
-	public void addFilter(String arg1, String arg2) {
+	public FilterRegistration.Dynamic addFilter(String arg1, String arg2) {
 		throw new UnsupportedOperationException();
 	}
-	public void addFilter(String arg1, Filter arg2) {
+	public FilterRegistration.Dynamic addFilter(String arg1, Filter arg2) {
 		throw new UnsupportedOperationException();
 	}
 
-	public void addListener(Class<?> arg1){
+	public void addListener(Class<? extends EventListener> arg1){
 		throw new UnsupportedOperationException();
 	}
 	public void addListener(String arg1){
 		throw new UnsupportedOperationException();
 	}
-	public void addListener(EventListener arg1){
+	public <T extends EventListener> void addListener(T arg1){
 		throw new UnsupportedOperationException();
 	}
 
-	public void addServlet(String arg1, Class<? extends Servlet> arg2) {
+	public ServletRegistration.Dynamic addServlet(String arg1, Class<? extends Servlet> arg2) {
 		throw new UnsupportedOperationException();
 	}
-	public void addServlet(String arg1, String arg2) {
+	public ServletRegistration.Dynamic addServlet(String arg1, String arg2) {
 		throw new UnsupportedOperationException();
 	}
-	public void addServlet(String arg1, Servlet arg2) {
+	public ServletRegistration.Dynamic addServlet(String arg1, Servlet arg2) {
 		throw new UnsupportedOperationException();
 	}
 
-	public void createFilter(Class<?> arg1) {
+	public <T extends Filter> T createFilter(Class<T> arg1) {
 		throw new UnsupportedOperationException();
 	}
-	public void createServlet(Class<?> arg1) {
+	public <T extends Servlet> T createServlet(Class<T> arg1) {
 		throw new UnsupportedOperationException();
 	}
-	public void createListener(Class<?> arg1) {
+	public <T extends EventListener> T createListener(Class<T> arg1) {
 		throw new UnsupportedOperationException();
 	}
 
@@ -309,6 +280,106 @@ public class ServletContextAdaptor {
 		throw new UnsupportedOperationException();
 	}
 
+	// the remaining methods are delegated to the container
+
+	public ServletContext getContext(String uripath) {
+		return servletContext.getContext(uripath);
+	}
+
+	public Set<SessionTrackingMode> getDefaultSessionTrackingModes() {
+		return servletContext.getDefaultSessionTrackingModes();
+	}
+
+	public int getEffectiveMajorVersion() {
+		return servletContext.getEffectiveMajorVersion();
+	}
+
+	public int getEffectiveMinorVersion() {
+		return servletContext.getEffectiveMinorVersion();
+	}
+
+	public Set<SessionTrackingMode> getEffectiveSessionTrackingModes() {
+		return servletContext.getEffectiveSessionTrackingModes();
+	}
+
+	public FilterRegistration getFilterRegistration(String filterName) {
+		return servletContext.getFilterRegistration(filterName);
+	}
+
+	public Map<String, ? extends FilterRegistration> getFilterRegistrations() {
+		return servletContext.getFilterRegistrations();
+	}
+
+	public JspConfigDescriptor getJspConfigDescriptor() {
+		return servletContext.getJspConfigDescriptor();
+	}
+
+	public int getMajorVersion() {
+		return servletContext.getMajorVersion();
+	}
+
+	public int getMinorVersion() {
+		return servletContext.getMinorVersion();
+	}
+
+	public String getServerInfo() {
+		return servletContext.getServerInfo();
+	}
+
+	@SuppressWarnings("deprecation")
+	public Servlet getServlet(String name) throws ServletException {
+		return servletContext.getServlet(name);
+	}
+
+	@SuppressWarnings("deprecation")
+	public Enumeration<String> getServletNames() {
+		return servletContext.getServletNames();
+	}
+
+	public ServletRegistration getServletRegistration(String servletName) {
+		return servletContext.getServletRegistration(servletName);
+	}
+
+	public Map<String, ? extends ServletRegistration> getServletRegistrations() {
+		return servletContext.getServletRegistrations();
+	}
+
+	@SuppressWarnings("deprecation")
+	public Enumeration<Servlet> getServlets() {
+		return servletContext.getServlets();
+	}
+
+	public SessionCookieConfig getSessionCookieConfig() {
+		return servletContext.getSessionCookieConfig();
+	}
+
+	public String getVirtualServerName() {
+		return servletContext.getVirtualServerName();
+	}
+
+	@SuppressWarnings("deprecation")
+	public void log(Exception exception, String message) {
+		servletContext.log(exception, message);
+	}
+
+	public void log(String message) {
+		servletContext.log(message);
+	}
+
+	public void log(String message, Throwable throwable) {
+		servletContext.log(message, throwable);
+	}
+
+	public boolean setInitParameter(String name, String value) {
+		return servletContext.setInitParameter(name, value);
+	}
+
+	public void setSessionTrackingModes(
+		Set<SessionTrackingMode> sessionTrackingModes) {
+
+		servletContext.setSessionTrackingModes(sessionTrackingModes);
+	}
+
 	public void setAttribute(String attributeName, Object attributeValue) {
 		if (attributeValue == null) {
 			removeAttribute(attributeName);
@@ -329,7 +400,7 @@ public class ServletContextAdaptor {
 
 		ServletContextAttributeEvent servletContextAttributeEvent =
 			new ServletContextAttributeEvent(
-				servletContextTL.get(), attributeName, attributeValue);
+				this, attributeName, attributeValue);
 
 		for (ServletContextAttributeListener servletContextAttributeListener : listeners) {
 			if (added) {
@@ -343,39 +414,11 @@ public class ServletContextAdaptor {
 		}
 	}
 
+	@Override
 	public String toString() {
 		return string;
 	}
 
-	Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-		servletContextTL.set((ServletContext)proxy);
-
-		try {
-			Method m = contextToHandlerMethods.get(method);
-			try {
-				if (m != null) {
-					return m.invoke(this, args);
-				}
-				return method.invoke(servletContext, args);
-			} catch (InvocationTargetException e) {
-				throw e.getCause();
-			}
-		}
-		finally {
-			servletContextTL.remove();
-		}
-	}
-
-	private InvocationHandler createInvocationHandler() {
-		return new InvocationHandler() {
-			public Object invoke(Object proxy, Method method, Object[] args)
-				throws Throwable {
-
-				return ServletContextAdaptor.this.invoke(proxy, method, args);
-			}
-		};
-	}
-
 	private Dictionary<String, Object> getContextAttributes() {
 		return proxyContext.getContextAttributes(contextController);
 	}
@@ -388,7 +431,6 @@ public class ServletContextAdaptor {
 	private final ProxyContext proxyContext;
 	private final ServletContext servletContext;
 	final ServletContextHelper servletContextHelper;
-	private final ThreadLocal<ServletContext> servletContextTL = new ThreadLocal<ServletContext>();
 	private final String string;
 
 }
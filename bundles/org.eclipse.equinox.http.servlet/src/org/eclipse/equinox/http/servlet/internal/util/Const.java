@@ -36,6 +36,9 @@ public class Const {
 	public static final String EQUINOX_LEGACY_CONTEXT_SELECT = "equinox.context.select"; //$NON-NLS-1$
 	public static final String EQUINOX_LEGACY_CONTEXT_HELPER = "equinox.legacy.context.helper"; //$NON-NLS-1$
 	public static final String EQUINOX_LEGACY_HTTP_CONTEXT_INITIATING_ID = "equinox.legacy.http.context.initiating.id"; //$NON-NLS-1$
+	public static final String EQUINOX_RESOURCE_CACHE_SIZE = "equinox.http.resource.cache.size"; //$NON-NLS-1$
+	public static final String EQUINOX_RESOURCE_CACHE_THRESHOLD = "equinox.http.resource.cache.threshold"; //$NON-NLS-1$
+	public static final String EQUINOX_RESOURCE_PRECOMPRESSED = "equinox.http.resource.precompressed"; //$NON-NLS-1$
 	public static final String UTF8 = "UTF-8"; //$NON-NLS-1$
 
 }
@@ -0,0 +1,175 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ ******************************************************************************/
+
+package org.eclipse.equinox.http.servlet.internal.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.eclipse.equinox.http.servlet.dto.RequestMetricsDTO;
+
+/**
+ * Request count, error count and latency histogram of a single servlet,
+ * resource or filter.
+ * <p>
+ * The counters are striped by thread so that concurrent requests rarely
+ * update the same cache line; the stripes are only summed up when a snapshot
+ * is taken. Latencies are kept in microseconds in log-linear buckets: every
+ * power of two is split into four equally wide buckets, which bounds the
+ * relative error of a bucket to 25%.
+ */
+public class RequestMetrics {
+
+	public RequestMetrics() {
+		int curStripes = 1;
+
+		while ((curStripes < MAX_STRIPES) &&
+			(curStripes < Runtime.getRuntime().availableProcessors())) {
+
+			curStripes <<= 1;
+		}
+
+		stripes = curStripes;
+		cells = new AtomicLongArray(stripes * STRIDE);
+	}
+
+	public void record(long nanos, boolean error) {
+		long micros = Math.max(nanos / 1000, 0);
+		int offset = ((int)Thread.currentThread().getId() & (stripes - 1)) * STRIDE;
+
+		cells.incrementAndGet(offset + REQUESTS);
+
+		if (error) {
+			cells.incrementAndGet(offset + ERRORS);
+		}
+
+		cells.addAndGet(offset + TOTAL_TIME, micros);
+		cells.incrementAndGet(offset + BUCKETS_OFFSET + bucket(micros));
+
+		long curMaxTime = maxTime.get();
+
+		while ((micros > curMaxTime) &&
+			!maxTime.compareAndSet(curMaxTime, micros)) {
+
+			curMaxTime = maxTime.get();
+		}
+	}
+
+	/**
+	 * Fills the counters of the DTO with a snapshot of the metrics. The
+	 * snapshot is not atomic, requests recorded while it is taken may be
+	 * partially included.
+	 */
+	public void fill(RequestMetricsDTO requestMetricsDTO) {
+		long[] buckets = new long[BUCKETS];
+		long errors = 0;
+		long requests = 0;
+		long totalTime = 0;
+
+		for (int stripe = 0; stripe < stripes; stripe++) {
+			int offset = stripe * STRIDE;
+
+			requests += cells.get(offset + REQUESTS);
+			errors += cells.get(offset + ERRORS);
+			totalTime += cells.get(offset + TOTAL_TIME);
+
+			for (int i = 0; i < BUCKETS; i++) {
+				buckets[i] += cells.get(offset + BUCKETS_OFFSET + i);
+			}
+		}
+
+		int used = 0;
+
+		for (long count : buckets) {
+			if (count > 0) {
+				used++;
+			}
+		}
+
+		long[] latencyBounds = new long[used];
+		long[] latencyCounts = new long[used];
+
+		for (int i = 0, j = 0; i < BUCKETS; i++) {
+			if (buckets[i] > 0) {
+				latencyBounds[j] = upperBound(i);
+				latencyCounts[j++] = buckets[i];
+			}
+		}
+
+		requestMetricsDTO.errors = errors;
+		requestMetricsDTO.latencyBounds = latencyBounds;
+		requestMetricsDTO.latencyCounts = latencyCounts;
+		requestMetricsDTO.maxTime = maxTime.get();
+		requestMetricsDTO.requests = requests;
+		requestMetricsDTO.totalTime = totalTime;
+	}
+
+	static int bucket(long micros) {
+		if (micros < SUB_BUCKETS) {
+			return (int)micros;
+		}
+
+		int magnitude = 63 - Long.numberOfLeadingZeros(micros);
+
+		if (magnitude > MAX_MAGNITUDE) {
+			return BUCKETS - 1;
+		}
+
+		int subBucket = (int)(micros >>> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+
+		return (magnitude - 1) * SUB_BUCKETS + subBucket;
+	}
+
+	/*
+	 * The exclusive upper bound of the bucket in microseconds; the last
+	 * bucket is unbounded.
+	 */
+	static long upperBound(int bucket) {
+		if (bucket == BUCKETS - 1) {
+			return Long.MAX_VALUE;
+		}
+
+		if (bucket < SUB_BUCKETS) {
+			return bucket + 1;
+		}
+
+		int magnitude = bucket / SUB_BUCKETS + 1;
+		int subBucket = bucket % SUB_BUCKETS;
+
+		return (long)(SUB_BUCKETS + subBucket + 1) << (magnitude - SUB_BUCKET_BITS);
+	}
+
+	private static final int SUB_BUCKET_BITS = 2;
+
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	// about 36 minutes, anything slower ends up in the last bucket
+	private static final int MAX_MAGNITUDE = 31;
+
+	private static final int BUCKETS = MAX_MAGNITUDE * SUB_BUCKETS;
+
+	private static final int ERRORS = 1;
+
+	private static final int MAX_STRIPES = 8;
+
+	private static final int REQUESTS = 0;
+
+	private static final int TOTAL_TIME = 2;
+
+	private static final int BUCKETS_OFFSET = 3;
+
+	// a multiple of eight longs keeps stripes on separate cache lines
+	private static final int STRIDE = ((BUCKETS_OFFSET + BUCKETS + 7) / 8) * 8;
+
+	private final AtomicLongArray cells;
+	private final AtomicLong maxTime = new AtomicLong();
+	private final int stripes;
+
+}
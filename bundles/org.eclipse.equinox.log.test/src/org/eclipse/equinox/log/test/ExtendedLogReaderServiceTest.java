@@ -1,5 +1,6 @@
 package org.eclipse.equinox.log.test;
 
+import java.util.*;
 import junit.framework.TestCase;
 import org.eclipse.equinox.log.*;
 import org.osgi.framework.Bundle;
@@ -116,6 +117,36 @@ public class ExtendedLogReaderServiceTest extends TestCase {
 		assertTrue(called);
 	}
 
+	public void testBatchLogListener() throws Exception {
+		final Bundle logImpl = Activator.getBundle("org.eclipse.equinox.log");
+		final List received = new ArrayList();
+		LogListener listener = new BatchLogListener() {
+			public synchronized void logged(List entries) {
+				for (Iterator it = entries.iterator(); it.hasNext();) {
+					LogEntry entry = (LogEntry) it.next();
+					if (entry.getBundle() != logImpl)
+						received.add(entry.getMessage());
+				}
+				notifyAll();
+			}
+
+			public void logged(LogEntry entry) {
+				fail("Batch listeners receive lists of entries");
+			}
+		};
+		reader.addLogListener(listener);
+		for (int i = 0; i < 100; i++)
+			log.log(LogService.LOG_INFO, "info " + i);
+		synchronized (listener) {
+			long end = System.currentTimeMillis() + 5000;
+			while (received.size() < 100 && System.currentTimeMillis() < end)
+				listener.wait(end - System.currentTimeMillis());
+		}
+		assertEquals(100, received.size());
+		for (int i = 0; i < 100; i++)
+			assertEquals("info " + i, received.get(i));
+	}
+
 	public void testExtendedLogEntry() throws Exception {
 		TestListener listener = new TestListener();
 		reader.addLogListener(listener);
@@ -0,0 +1,34 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.eclipse.equinox.log;
+
+import java.util.List;
+import org.osgi.service.log.LogEntry;
+import org.osgi.service.log.LogListener;
+
+/**
+ * A log listener that receives the log entries queued for it in batches.
+ * <p>
+ * The entries logged while the listener is busy are handed over together through
+ * {@link #logged(List)} instead of one by one through <code>logged(LogEntry)</code>.
+ * A listener that is also a {@link SynchronousLogListener} is called on the logging
+ * thread, one entry at a time.
+ * </p>
+ * @ThreadSafe
+ * @see LogListener
+ * @since 1.1
+ */
+public interface BatchLogListener extends LogListener {
+	/**
+	 * Listener method called for the <code>LogEntry</code> objects queued for the listener.
+	 *
+	 * @param entries the <code>LogEntry</code> objects, in the order they were logged;
+	 *        the list belongs to the listener once the method is called
+	 */
+	public void logged(List entries);
+}
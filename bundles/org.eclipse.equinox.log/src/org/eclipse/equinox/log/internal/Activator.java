@@ -18,6 +18,13 @@ public class Activator implements BundleActivator, BundleListener, FrameworkList
 	private static final String EVENT_ADMIN_CLASS = "org.osgi.service.event.EventAdmin"; //$NON-NLS-1$
 	private static final String[] LOGSERVICE_CLASSES = {LogService.class.getName(), ExtendedLogService.class.getName()};
 	private static final String[] LOGREADERSERVICE_CLASSES = {LogReaderService.class.getName(), ExtendedLogReaderService.class.getName()};
+	// the number of threads calling the asynchronous log listeners
+	private static final String PROP_LISTENER_THREADS = "equinox.log.listener.threads"; //$NON-NLS-1$
+	// the number of entries queued for an asynchronous log listener; 0 for no limit
+	private static final String PROP_LISTENER_QUEUE_CAPACITY = "equinox.log.listener.queue.capacity"; //$NON-NLS-1$
+	// "drop" to drop the entries logged to a full queue, "block" to wait for the queue to drain
+	private static final String PROP_LISTENER_QUEUE_POLICY = "equinox.log.listener.queue.policy"; //$NON-NLS-1$
+	private static final String POLICY_BLOCK = "block"; //$NON-NLS-1$
 
 	private ServiceRegistration logReaderServiceRegistration;
 	private ServiceRegistration logServiceRegistration;
@@ -33,7 +40,10 @@ public class Activator implements BundleActivator, BundleListener, FrameworkList
 				if (provider != null && provider.getBundleId() == 0)
 					return;
 			}
-		logReaderServiceFactory = new ExtendedLogReaderServiceFactory();
+		int threads = getIntProperty(context, PROP_LISTENER_THREADS, ExtendedLogReaderServiceFactory.DEFAULT_LISTENER_THREADS);
+		int queueCapacity = getIntProperty(context, PROP_LISTENER_QUEUE_CAPACITY, 0);
+		boolean blockWhenFull = POLICY_BLOCK.equals(context.getProperty(PROP_LISTENER_QUEUE_POLICY));
+		logReaderServiceFactory = new ExtendedLogReaderServiceFactory(threads, queueCapacity, blockWhenFull);
 		context.addBundleListener(this);
 		context.addServiceListener(this);
 		context.addFrameworkListener(this);
@@ -64,6 +74,18 @@ public class Activator implements BundleActivator, BundleListener, FrameworkList
 		context.removeFrameworkListener(this);
 		context.removeServiceListener(this);
 		context.removeBundleListener(this);
+		logReaderServiceFactory.shutdown();
+	}
+
+	private static int getIntProperty(BundleContext context, String key, int defaultValue) {
+		String value = context.getProperty(key);
+		if (value == null)
+			return defaultValue;
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
 	}
 
 	private static boolean checkEventAdmin() {
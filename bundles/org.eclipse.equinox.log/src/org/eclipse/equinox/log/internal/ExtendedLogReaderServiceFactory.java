@@ -10,27 +10,14 @@ package org.eclipse.equinox.log.internal;
 import java.io.PrintStream;
 import java.util.*;
 import java.util.Map.Entry;
-import org.eclipse.equinox.log.LogFilter;
-import org.eclipse.equinox.log.SynchronousLogListener;
+import org.eclipse.equinox.log.*;
 import org.osgi.framework.*;
 import org.osgi.service.log.LogEntry;
 import org.osgi.service.log.LogListener;
 
 public class ExtendedLogReaderServiceFactory implements ServiceFactory {
 
-	static final class LogTask implements Runnable {
-		private final LogEntry logEntry;
-		private final LogListener listener;
-
-		LogTask(LogEntry logEntry, LogListener listener) {
-			this.logEntry = logEntry;
-			this.listener = listener;
-		}
-
-		public void run() {
-			safeLogged(listener, logEntry);
-		}
-	}
+	static final int DEFAULT_LISTENER_THREADS = 4;
 
 	private static final Enumeration EMPTY_ENUMERATION = new Enumeration() {
 		public boolean hasMoreElements() {
@@ -56,6 +43,20 @@ public class ExtendedLogReaderServiceFactory implements ServiceFactory {
 	private LogFilter[] filters = null;
 
 	private BasicReadWriteLock listenersLock = new BasicReadWriteLock();
+	private final LogListenerDispatcher dispatcher;
+
+	public ExtendedLogReaderServiceFactory() {
+		this(DEFAULT_LISTENER_THREADS, 0, false);
+	}
+
+	/**
+	 * @param threads the number of threads calling the asynchronous log listeners
+	 * @param queueCapacity the number of entries queued for a listener, or 0 for no limit
+	 * @param blockWhenFull true if logging to a full queue waits, false if the entry is dropped
+	 */
+	public ExtendedLogReaderServiceFactory(int threads, int queueCapacity, boolean blockWhenFull) {
+		dispatcher = new LogListenerDispatcher(threads, queueCapacity, blockWhenFull);
+	}
 
 	static boolean safeIsLoggable(LogFilter filter, Bundle bundle, String name, int level) {
 		try {
@@ -73,7 +74,7 @@ public class ExtendedLogReaderServiceFactory implements ServiceFactory {
 		return false;
 	}
 
-	private static synchronized PrintStream getErrorStream() {
+	static synchronized PrintStream getErrorStream() {
 		if (errorStream == null)
 			return System.err;
 
@@ -99,6 +100,25 @@ public class ExtendedLogReaderServiceFactory implements ServiceFactory {
 		}
 	}
 
+	static void safeLogged(BatchLogListener listener, List entries) {
+		try {
+			listener.logged(entries);
+		} catch (RuntimeException e) {
+			// "listener.logged" calls user code and might throw an unchecked exception
+			// we catch the error here to gather information on where the problem occurred.
+			getErrorStream().println("BatchLogListener.logged threw a non-fatal unchecked exception as follows:"); //$NON-NLS-1$
+			e.printStackTrace(getErrorStream());
+		} catch (LinkageError e) {
+			// Catch linkage errors as these are generally recoverable but let other Errors propagate (see bug 222001)
+			getErrorStream().println("BatchLogListener.logged threw a non-fatal unchecked exception as follows:"); //$NON-NLS-1$
+			e.printStackTrace(getErrorStream());
+		}
+	}
+
+	static void reportDropped(LogListener listener, long count) {
+		getErrorStream().println("LogListener " + listener + " missed " + count + " log entries because its queue was full"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+	}
+
 	public Object getService(Bundle bundle, ServiceRegistration registration) {
 		return new ExtendedLogReaderServiceImpl(this, bundle);
 	}
@@ -131,6 +151,8 @@ public class ExtendedLogReaderServiceFactory implements ServiceFactory {
 
 	void log(Bundle bundle, String name, Object context, int level, String message, Throwable exception) {
 		LogEntry logEntry = new ExtendedLogEntryImpl(bundle, name, context, level, message, exception);
+		// the full queues to wait for once the lock is released
+		List fullQueues = null;
 		listenersLock.readLock();
 		try {
 			for (Iterator it = listeners.entrySet().iterator(); it.hasNext();) {
@@ -139,9 +161,13 @@ public class ExtendedLogReaderServiceFactory implements ServiceFactory {
 				LogFilter filter = (LogFilter) listenerObjects[0];
 				if (safeIsLoggable(filter, bundle, name, level)) {
 					LogListener listener = (LogListener) entry.getKey();
-					SerializedTaskQueue taskQueue = (SerializedTaskQueue) listenerObjects[1];
-					if (taskQueue != null) {
-						taskQueue.put(new LogTask(logEntry, listener));
+					LogListenerDispatcher.ListenerQueue queue = (LogListenerDispatcher.ListenerQueue) listenerObjects[1];
+					if (queue != null) {
+						if (!dispatcher.offer(queue, logEntry)) {
+							if (fullQueues == null)
+								fullQueues = new ArrayList(2);
+							fullQueues.add(queue);
+						}
 					} else {
 						// log synchronously
 						safeLogged(listener, logEntry);
@@ -152,6 +178,11 @@ public class ExtendedLogReaderServiceFactory implements ServiceFactory {
 		} finally {
 			listenersLock.readUnlock();
 		}
+		if (fullQueues != null) {
+			// waiting while holding the lock would hold up the listeners being added or removed
+			for (Iterator it = fullQueues.iterator(); it.hasNext();)
+				dispatcher.put((LogListenerDispatcher.ListenerQueue) it.next(), logEntry);
+		}
 	}
 
 	void addLogListener(LogListener listener, LogFilter filter) {
@@ -159,9 +190,9 @@ public class ExtendedLogReaderServiceFactory implements ServiceFactory {
 		try {
 			Object[] listenerObjects = (Object[]) listeners.get(listener);
 			if (listenerObjects == null) {
-				// Only create a task queue for non-SynchronousLogListeners
-				SerializedTaskQueue taskQueue = (listener instanceof SynchronousLogListener) ? null : new SerializedTaskQueue(listener.toString());
-				listenerObjects = new Object[] {filter, taskQueue};
+				// Only create a queue for non-SynchronousLogListeners
+				LogListenerDispatcher.ListenerQueue queue = (listener instanceof SynchronousLogListener) ? null : dispatcher.createQueue(listener);
+				listenerObjects = new Object[] {filter, queue};
 			} else if (filter != listenerObjects[0]) {
 				// update the filter
 				listenerObjects[0] = filter;
@@ -204,4 +235,18 @@ public class ExtendedLogReaderServiceFactory implements ServiceFactory {
 	Enumeration getLog() {
 		return EMPTY_ENUMERATION;
 	}
+
+	/**
+	 * Returns the number of log entries dropped because the queue of a listener was full.
+	 */
+	public long getDroppedLogEntryCount() {
+		return dispatcher.getDroppedCount();
+	}
+
+	/**
+	 * Stops the threads calling the asynchronous log listeners.
+	 */
+	void shutdown() {
+		dispatcher.shutdown();
+	}
 }
@@ -0,0 +1,245 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.eclipse.equinox.log.internal;
+
+import java.util.*;
+import org.eclipse.equinox.log.BatchLogListener;
+import org.osgi.service.log.LogEntry;
+import org.osgi.service.log.LogListener;
+
+/**
+ * LogListenerDispatcher delivers log entries to the asynchronous log listeners on a
+ * pool of long-lived threads.
+ * <p>
+ * Every listener has its own queue, a ring buffer served by at most one thread at a
+ * time, so a listener receives the entries in the order they were logged. The queues
+ * waiting for a thread are served in turn, a batch of entries each. A
+ * {@link BatchLogListener} receives the batch in one call.
+ * </p>
+ * <p>
+ * When a capacity is set, an entry logged to a full queue is either dropped and
+ * counted, or the logging thread waits for the queue to drain. The dispatcher threads
+ * never wait, as the queues could then never drain; their entries are dropped instead.
+ * </p>
+ */
+public class LogListenerDispatcher {
+	private static final int MAX_BATCH = 64;
+	private static final int INITIAL_CAPACITY = 16;
+
+	private final int threads;
+	private final int capacity; // 0 if unbounded
+	private final boolean block;
+
+	// guarded by this
+	private final LinkedList ready = new LinkedList(); // queues with entries and no thread
+	private int workers = 0;
+	private int idleWorkers = 0;
+	private boolean stopped = false;
+	private long dropped = 0;
+
+	/**
+	 * A ring buffer of the log entries for a listener.
+	 */
+	final class ListenerQueue {
+		final LogListener listener;
+		private Object[] entries;
+		private int head = 0;
+		private int size = 0;
+		private boolean scheduled = false; // in the ready list or served by a thread
+		private long unreported = 0; // dropped since the last report
+
+		ListenerQueue(LogListener listener) {
+			this.listener = listener;
+			entries = new Object[capacity > 0 ? Math.min(capacity, INITIAL_CAPACITY) : INITIAL_CAPACITY];
+		}
+
+		// Called while holding the dispatcher lock
+		boolean isFull() {
+			return capacity > 0 && size >= capacity;
+		}
+
+		// Called while holding the dispatcher lock
+		void add(LogEntry entry) {
+			if (size == entries.length) {
+				// grow up to the capacity
+				int length = entries.length * 2;
+				if (capacity > 0 && length > capacity)
+					length = capacity;
+				Object[] grown = new Object[length];
+				for (int i = 0; i < size; i++)
+					grown[i] = entries[(head + i) % entries.length];
+				entries = grown;
+				head = 0;
+			}
+			entries[(head + size) % entries.length] = entry;
+			size++;
+		}
+
+		// Called while holding the dispatcher lock
+		LogEntry[] remove(int max) {
+			LogEntry[] result = new LogEntry[Math.min(size, max)];
+			for (int i = 0; i < result.length; i++) {
+				result[i] = (LogEntry) entries[head];
+				entries[head] = null;
+				head = (head + 1) % entries.length;
+			}
+			size -= result.length;
+			return result;
+		}
+
+		// Called while holding the dispatcher lock
+		void drop() {
+			unreported++;
+			dropped++;
+		}
+	}
+
+	/**
+	 * @param threads the number of threads delivering the entries
+	 * @param capacity the number of entries a queue holds, or 0 for no limit
+	 * @param block true if logging to a full queue waits, false if the entry is dropped
+	 */
+	public LogListenerDispatcher(int threads, int capacity, boolean block) {
+		this.threads = Math.max(threads, 1);
+		this.capacity = Math.max(capacity, 0);
+		this.block = block;
+	}
+
+	/**
+	 * Creates the queue of a listener.
+	 */
+	ListenerQueue createQueue(LogListener listener) {
+		return new ListenerQueue(listener);
+	}
+
+	/**
+	 * Queues the entry unless the queue is full and logging has to wait for it.
+	 *
+	 * @return false if the entry must be added with {@link #put(ListenerQueue, LogEntry)}
+	 */
+	synchronized boolean offer(ListenerQueue queue, LogEntry entry) {
+		if (queue.isFull() && block && !stopped && !(Thread.currentThread() instanceof Worker))
+			return false;
+		put(queue, entry);
+		return true;
+	}
+
+	/**
+	 * Queues the entry, waiting for room in the queue or dropping the entry when it is
+	 * full, depending on the policy.
+	 */
+	synchronized void put(ListenerQueue queue, LogEntry entry) {
+		if (queue.isFull() && block && !(Thread.currentThread() instanceof Worker)) {
+			boolean interrupted = false;
+			while (!stopped && queue.isFull()) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted)
+				Thread.currentThread().interrupt();
+		}
+		if (stopped)
+			return;
+		if (queue.isFull()) {
+			queue.drop();
+			return;
+		}
+		queue.add(entry);
+		if (!queue.scheduled) {
+			queue.scheduled = true;
+			ready.addLast(queue);
+			if (idleWorkers < ready.size() && workers < threads)
+				startWorker();
+			else if (idleWorkers > 0)
+				notifyAll();
+		}
+	}
+
+	/**
+	 * Returns the number of entries dropped because a queue was full.
+	 */
+	public synchronized long getDroppedCount() {
+		return dropped;
+	}
+
+	/**
+	 * Stops the threads. The queued entries are dropped.
+	 */
+	public synchronized void shutdown() {
+		stopped = true;
+		ready.clear();
+		notifyAll();
+	}
+
+	// Called while holding the lock
+	private void startWorker() {
+		Worker worker = new Worker("Equinox Log Listener Thread " + workers); //$NON-NLS-1$
+		workers++;
+		worker.start();
+	}
+
+	private final class Worker extends Thread {
+		Worker(String name) {
+			super(name);
+			setDaemon(true);
+		}
+
+		public void run() {
+			while (true) {
+				ListenerQueue queue;
+				LogEntry[] batch;
+				long unreported;
+				synchronized (LogListenerDispatcher.this) {
+					idleWorkers++;
+					while (!stopped && ready.isEmpty()) {
+						try {
+							LogListenerDispatcher.this.wait();
+						} catch (InterruptedException e) {
+							// ignore -- only shutdown ends the threads
+						}
+					}
+					idleWorkers--;
+					if (stopped) {
+						workers--;
+						return;
+					}
+					queue = (ListenerQueue) ready.removeFirst();
+					batch = queue.remove(MAX_BATCH);
+					unreported = queue.unreported;
+					queue.unreported = 0;
+					if (block)
+						LogListenerDispatcher.this.notifyAll(); // loggers may be waiting for room
+				}
+				if (unreported > 0)
+					ExtendedLogReaderServiceFactory.reportDropped(queue.listener, unreported);
+				deliver(queue.listener, batch);
+				synchronized (LogListenerDispatcher.this) {
+					if (queue.size > 0 && !stopped)
+						ready.addLast(queue);
+					else
+						queue.scheduled = false;
+				}
+			}
+		}
+
+		private void deliver(LogListener listener, LogEntry[] batch) {
+			if (listener instanceof BatchLogListener) {
+				List entries = new ArrayList(batch.length);
+				for (int i = 0; i < batch.length; i++)
+					entries.add(batch[i]);
+				ExtendedLogReaderServiceFactory.safeLogged((BatchLogListener) listener, entries);
+				return;
+			}
+			for (int i = 0; i < batch.length; i++)
+				ExtendedLogReaderServiceFactory.safeLogged(listener, batch[i]);
+		}
+	}
+}
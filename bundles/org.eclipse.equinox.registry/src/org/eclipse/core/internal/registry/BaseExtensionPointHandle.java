@@ -62,16 +62,26 @@ public class BaseExtensionPointHandle extends Handle implements IExtensionPoint
 	}
 
 	public IConfigurationElement[] getConfigurationElements() {
-		//get the actual extension objects since we'll need to get the configuration elements information.
-		Extension[] tmpExtensions = (Extension[]) objectManager.getObjects(getExtensionPoint().getRawChildren(), RegistryObjectManager.EXTENSION);
-		if (tmpExtensions.length == 0)
-			return ConfigurationElementHandle.EMPTY_ARRAY;
-
-		ArrayList result = new ArrayList();
-		for (int i = 0; i < tmpExtensions.length; i++) {
-			result.addAll(Arrays.asList(objectManager.getHandles(tmpExtensions[i].getRawChildren(), RegistryObjectManager.CONFIGURATION_ELEMENT)));
+		ExtensionPoint extensionPoint = getExtensionPoint();
+		IConfigurationElement[] snapshot = extensionPoint.getConfigurationElementsSnapshot();
+		if (snapshot == null) {
+			int[] extensions = extensionPoint.getRawChildren();
+			//get the actual extension objects since we'll need to get the configuration elements information.
+			Extension[] tmpExtensions = (Extension[]) objectManager.getObjects(extensions, RegistryObjectManager.EXTENSION);
+			if (tmpExtensions.length == 0)
+				return ConfigurationElementHandle.EMPTY_ARRAY;
+
+			ArrayList result = new ArrayList();
+			for (int i = 0; i < tmpExtensions.length; i++) {
+				result.addAll(Arrays.asList(objectManager.getHandles(tmpExtensions[i].getRawChildren(), RegistryObjectManager.CONFIGURATION_ELEMENT)));
+			}
+			snapshot = (IConfigurationElement[]) result.toArray(new IConfigurationElement[result.size()]);
+			extensionPoint.setConfigurationElementsSnapshot(extensions, snapshot);
 		}
-		return (IConfigurationElement[]) result.toArray(new IConfigurationElement[result.size()]);
+		if (snapshot.length == 0)
+			return ConfigurationElementHandle.EMPTY_ARRAY;
+		// callers may modify the returned array
+		return (IConfigurationElement[]) snapshot.clone();
 	}
 
 	public String getLabelAsIs() {
@@ -0,0 +1,79 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.internal.registry;
+
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+
+/**
+ * Saves the registry cache in the background once the registry contents have
+ * not changed for a given delay. Saving while the registry is running keeps the
+ * cache on disk close to the registry contents, so that a crash does not lose
+ * it and stopping the registry rarely has to write it.
+ */
+public class CacheWriterThread extends Thread {
+	private ExtensionRegistry registry;
+	private long delay;
+	private long lastChange = 0; // 0 if there is no change to save
+	private boolean stopped = false;
+
+	public CacheWriterThread(ExtensionRegistry registry, long delay) {
+		super("Extension Registry Cache Writer"); //$NON-NLS-1$
+		setDaemon(true);
+		setPriority(Thread.MIN_PRIORITY);
+		this.registry = registry;
+		this.delay = delay;
+	}
+
+	/**
+	 * Notes that the registry contents changed; the cache is saved once no other
+	 * change happened for the delay.
+	 */
+	public synchronized void changed() {
+		lastChange = System.currentTimeMillis();
+		notifyAll();
+	}
+
+	/**
+	 * Stops the thread. A save in progress is not interrupted.
+	 */
+	public synchronized void shutdown() {
+		stopped = true;
+		notifyAll();
+	}
+
+	public void run() {
+		while (true) {
+			synchronized (this) {
+				try {
+					while (!stopped && lastChange == 0)
+						wait();
+					if (stopped)
+						return;
+					long remaining = lastChange + delay - System.currentTimeMillis();
+					if (remaining > 0) {
+						wait(remaining);
+						continue;
+					}
+				} catch (InterruptedException e) {
+					return;
+				}
+				lastChange = 0;
+			}
+			try {
+				registry.saveCacheInBackground();
+			} catch (RuntimeException e) {
+				// keep saving later changes, the registry stays marked as changed
+				registry.log(new Status(IStatus.ERROR, RegistryMessages.OWNER_NAME, IStatus.ERROR, RegistryMessages.meta_registryCacheWriteProblems, e));
+			}
+		}
+	}
+}
@@ -0,0 +1,177 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.internal.registry;
+
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Holds back registry change events and merges consecutive ones into a single event,
+ * so that a burst of contributions added or removed together reaches every listener
+ * once instead of once per contribution.
+ * <p>
+ * The first change held back is delivered at the latest after the window. A change that
+ * cannot be merged with the ones held back, because it is of the other kind (additions
+ * and removals are never merged) or the listeners changed in between, first delivers them.
+ * Events are thus always delivered in the order of the changes.
+ * </p>
+ */
+public class ChangeEventCoalescer extends Thread {
+	private ExtensionRegistry registry;
+	private long window;
+	private int limit;
+	private boolean started = false;
+	private boolean stopped = false;
+
+	// the changes held back; null if there are none
+	private Object[] pendingListeners = null;
+	private Map pendingDeltas = null;
+	private long pendingSince;
+	private int pendingCount;
+
+	/**
+	 * @param registry the registry
+	 * @param window the longest time in milliseconds a change is held back
+	 * @param limit the number of changes after which the changes held back are delivered
+	 */
+	public ChangeEventCoalescer(ExtensionRegistry registry, long window, int limit) {
+		super("Extension Registry Event Coalescer"); //$NON-NLS-1$
+		setDaemon(true);
+		this.registry = registry;
+		this.window = window;
+		this.limit = limit;
+	}
+
+	/**
+	 * Adds the deltas of a registry change.
+	 *
+	 * @param listeners the listeners to notify
+	 * @param deltas the deltas by namespace, with the combined delta of the change
+	 */
+	public synchronized void add(Object[] listeners, Map deltas) {
+		if (stopped) {
+			registry.dispatchChangeEvent(listeners, deltas);
+			return;
+		}
+		if (pendingDeltas != null && !merge(listeners, deltas))
+			flush();
+		if (pendingDeltas == null) {
+			pendingListeners = listeners;
+			pendingDeltas = deltas;
+			pendingSince = System.currentTimeMillis();
+			pendingCount = 0;
+			if (!started) {
+				started = true;
+				start();
+			}
+			notifyAll();
+		}
+		if (++pendingCount >= limit)
+			flush();
+	}
+
+	/**
+	 * Delivers the changes held back.
+	 */
+	public synchronized void flush() {
+		if (pendingDeltas == null)
+			return;
+		registry.dispatchChangeEvent(pendingListeners, pendingDeltas);
+		pendingListeners = null;
+		pendingDeltas = null;
+	}
+
+	/**
+	 * Delivers the changes held back and stops the thread. Later changes are delivered
+	 * right away.
+	 */
+	public synchronized void shutdown() {
+		flush();
+		stopped = true;
+		notifyAll();
+	}
+
+	public void run() {
+		synchronized (this) {
+			while (true) {
+				try {
+					while (!stopped && pendingDeltas == null)
+						wait();
+					if (stopped)
+						return;
+					long remaining = pendingSince + window - System.currentTimeMillis();
+					if (remaining > 0) {
+						wait(remaining);
+						continue;
+					}
+				} catch (InterruptedException e) {
+					return;
+				}
+				flush();
+			}
+		}
+	}
+
+	// Merges the deltas into the pending ones; returns false, leaving both untouched, if they cannot be merged
+	private boolean merge(Object[] listeners, Map deltas) {
+		// a listener added in between must not hear of the earlier changes. The listener
+		// list returns the same array as long as it does not change.
+		if (listeners != pendingListeners)
+			return false;
+		for (Iterator iter = deltas.entrySet().iterator(); iter.hasNext();) {
+			Map.Entry entry = (Map.Entry) iter.next();
+			Object pending = pendingDeltas.get(entry.getKey());
+			if (pending == null)
+				continue;
+			if (entry.getValue() instanceof CombinedEventDelta) {
+				CombinedEventDelta pendingDelta = (CombinedEventDelta) pending;
+				CombinedEventDelta delta = (CombinedEventDelta) entry.getValue();
+				if (pendingDelta.isAddition() != delta.isAddition() || !canMerge(pendingDelta.getObjectManager(), delta.getObjectManager()))
+					return false;
+			} else if (!canMerge(((RegistryDelta) pending).getObjectManager(), ((RegistryDelta) entry.getValue()).getObjectManager()))
+				return false;
+		}
+		for (Iterator iter = deltas.entrySet().iterator(); iter.hasNext();) {
+			Map.Entry entry = (Map.Entry) iter.next();
+			Object pending = pendingDeltas.get(entry.getKey());
+			if (pending == null) {
+				pendingDeltas.put(entry.getKey(), entry.getValue());
+			} else if (entry.getValue() instanceof CombinedEventDelta) {
+				CombinedEventDelta pendingDelta = (CombinedEventDelta) pending;
+				CombinedEventDelta delta = (CombinedEventDelta) entry.getValue();
+				pendingDelta.merge(delta);
+				pendingDelta.setObjectManager(mergeObjectManagers(pendingDelta.getObjectManager(), delta.getObjectManager()));
+			} else {
+				RegistryDelta pendingDelta = (RegistryDelta) pending;
+				RegistryDelta delta = (RegistryDelta) entry.getValue();
+				pendingDelta.merge(delta);
+				pendingDelta.setObjectManager(mergeObjectManagers(pendingDelta.getObjectManager(), delta.getObjectManager()));
+			}
+		}
+		return true;
+	}
+
+	// The merged deltas must find the objects of both changes through one object manager
+	private static boolean canMerge(IObjectManager target, IObjectManager source) {
+		if (target == null || source == null || target == source)
+			return true;
+		return target instanceof TemporaryObjectManager && source instanceof TemporaryObjectManager;
+	}
+
+	private static IObjectManager mergeObjectManagers(IObjectManager target, IObjectManager source) {
+		if (target == null)
+			return source;
+		if (source == null || target == source)
+			return target;
+		((TemporaryObjectManager) target).addObjects((TemporaryObjectManager) source);
+		return target;
+	}
+}
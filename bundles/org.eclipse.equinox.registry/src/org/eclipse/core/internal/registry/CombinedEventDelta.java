@@ -124,6 +124,31 @@ public class CombinedEventDelta {
 			rememberExtension(extensionPoint, exts[i]);
 	}
 
+	/**
+	 * Appends the objects recorded by the given delta of the same kind. The object
+	 * manager is left to the caller.
+	 * 
+	 * @param delta the delta recorded after this one
+	 */
+	public void merge(CombinedEventDelta delta) {
+		if (delta.extensionsByID != null) {
+			for (Iterator iter = delta.extensionsByID.entrySet().iterator(); iter.hasNext();) {
+				Map.Entry entry = (Map.Entry) iter.next();
+				getExtensionsBucket((String) entry.getKey()).addAll((List) entry.getValue());
+			}
+		}
+		if (delta.extPointsByID != null) {
+			for (Iterator iter = delta.extPointsByID.entrySet().iterator(); iter.hasNext();) {
+				Map.Entry entry = (Map.Entry) iter.next();
+				getExtPointsBucket((String) entry.getKey()).addAll((List) entry.getValue());
+			}
+		}
+		if (delta.allExtensions != null)
+			getExtensionsGlobal().addAll(delta.allExtensions);
+		if (delta.allExtensionPoints != null)
+			getExtPointsGlobal().addAll(delta.allExtensionPoints);
+	}
+
 	public IExtensionPoint[] getExtensionPoints(String id) {
 		List extensionPoints = null;
 		if (id != null && extPointsByID != null)
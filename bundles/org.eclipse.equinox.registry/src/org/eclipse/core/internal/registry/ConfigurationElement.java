@@ -31,9 +31,10 @@ public class ConfigurationElement extends RegistryObject {
 	//	[p1, v1, p2, v2, configurationElementValue]
 	//If the array size is even, there is no "configurationElementValue (ie getValue returns null)".
 	//The properties and their values are alternated (v1 is the value of p1). 
+	//The property names are interned.
 	protected String[] propertiesAndValue;
 
-	//The name of the configuration element
+	//The name of the configuration element, interned
 	private String name;
 
 	//ID of the actual contributor of this element 
@@ -41,6 +42,48 @@ public class ConfigurationElement extends RegistryObject {
 	//This happens when the configuration is obtained from a delta containing removed extension.
 	private String contributorId;
 
+	//The parsed executable extension specification last used by createExecutableExtension, or null
+	private ExecutableSpec executableSpec;
+
+	/**
+	 * The components of an executable extension specified as "[contributor/]class[:initData]".
+	 * Instances are immutable and can be shared between threads.
+	 */
+	private static final class ExecutableSpec {
+		final String attributeName;
+		final String property;
+		final String contributorName;
+		final String className;
+		final String initData;
+
+		ExecutableSpec(String attributeName, String property) {
+			this.attributeName = attributeName;
+			this.property = property;
+			String executable;
+			int i = property.indexOf(':');
+			if (i != -1) {
+				executable = property.substring(0, i).trim();
+				initData = property.substring(i + 1).trim();
+			} else {
+				executable = property;
+				initData = null;
+			}
+
+			i = executable.indexOf('/');
+			if (i != -1) {
+				contributorName = executable.substring(0, i).trim();
+				className = executable.substring(i + 1).trim();
+			} else {
+				contributorName = null;
+				className = executable;
+			}
+		}
+
+		boolean describes(String name, String value) {
+			return (attributeName == null ? name == null : attributeName.equals(name)) && property.equals(value);
+		}
+	}
+
 	protected ConfigurationElement(ExtensionRegistry registry, boolean persist) {
 		super(registry, persist);
 	}
@@ -50,7 +93,7 @@ public class ConfigurationElement extends RegistryObject {
 
 		setObjectId(self);
 		this.contributorId = contributorId;
-		this.name = name;
+		this.name = name; // interned by the cache reader
 		this.propertiesAndValue = propertiesAndValue;
 		setRawChildren(children);
 		setExtraDataOffset(extraDataOffset);
@@ -77,14 +120,44 @@ public class ConfigurationElement extends RegistryObject {
 	}
 
 	String getAttributeAsIs(String attrName) {
+		int index = indexOfAttribute(attrName);
+		return index == -1 ? null : propertiesAndValue[index + 1];
+	}
+
+	/**
+	 * Returns the index of the given property name in the properties and value array, 
+	 * or -1 if the element has no such property. Property names are interned, so names 
+	 * passed as literals are found without comparing characters.
+	 */
+	int indexOfAttribute(String attrName) {
 		if (propertiesAndValue.length <= 1)
-			return null;
+			return -1;
+		//round down to an even size
 		int size = propertiesAndValue.length - (propertiesAndValue.length % 2);
+		for (int i = 0; i < size; i += 2) {
+			if (propertiesAndValue[i] == attrName)
+				return i;
+		}
 		for (int i = 0; i < size; i += 2) {
 			if (propertiesAndValue[i].equals(attrName))
-				return propertiesAndValue[i + 1];
+				return i;
 		}
-		return null;
+		return -1;
+	}
+
+	private static String intern(String string) {
+		return string == null ? null : string.intern();
+	}
+
+	// interns the property names of the given array in place
+	private static String[] internNames(String[] value) {
+		if (value == null)
+			return null;
+		int size = value.length - (value.length % 2);
+		for (int i = 0; i < size; i += 2) {
+			value[i] = intern(value[i]);
+		}
+		return value;
 	}
 
 	protected String[] getAttributeNames() {
@@ -100,7 +173,7 @@ public class ConfigurationElement extends RegistryObject {
 	}
 
 	void setProperties(String[] value) {
-		propertiesAndValue = value;
+		propertiesAndValue = internNames(value);
 	}
 
 	protected String[] getPropertiesAndValue() {
@@ -139,7 +212,7 @@ public class ConfigurationElement extends RegistryObject {
 		RegistryObjectManager objectManager = registry.getObjectManager();
 		for (int i = 0; i < children.length; i++) {
 			ConfigurationElement toTest = (ConfigurationElement) objectManager.getObject(children[i], noExtraData() ? RegistryObjectManager.CONFIGURATION_ELEMENT : RegistryObjectManager.THIRDLEVEL_CONFIGURATION_ELEMENT);
-			if (toTest.name.equals(childrenName)) {
+			if (toTest.name == childrenName || toTest.name.equals(childrenName)) {
 				if (idx != 0) {
 					ConfigurationElement[] copy = new ConfigurationElement[result.length + 1];
 					System.arraycopy(result, 0, copy, 0, result.length);
@@ -162,7 +235,7 @@ public class ConfigurationElement extends RegistryObject {
 	}
 
 	void setName(String name) {
-		this.name = name;
+		this.name = intern(name);
 	}
 
 	void setParentType(byte type) {
@@ -175,7 +248,6 @@ public class ConfigurationElement extends RegistryObject {
 
 	protected Object createExecutableExtension(String attributeName) throws CoreException {
 		String prop = null;
-		String executable;
 		String contributorName = null;
 		String className = null;
 		Object initData = null;
@@ -222,20 +294,15 @@ public class ConfigurationElement extends RegistryObject {
 				throwException(NLS.bind(RegistryMessages.exExt_extDefNotFound, attributeName), null);
 			}
 		} else {
-			// simple property or element value, parse it into its components
-			i = prop.indexOf(':');
-			if (i != -1) {
-				executable = prop.substring(0, i).trim();
-				initData = prop.substring(i + 1).trim();
-			} else
-				executable = prop;
-
-			i = executable.indexOf('/');
-			if (i != -1) {
-				contributorName = executable.substring(0, i).trim();
-				className = executable.substring(i + 1).trim();
-			} else
-				className = executable;
+			// simple property or element value, parse it into its components unless already done
+			ExecutableSpec spec = executableSpec;
+			if (spec == null || !spec.describes(attributeName, prop)) {
+				spec = new ExecutableSpec(attributeName, prop);
+				executableSpec = spec;
+			}
+			contributorName = spec.contributorName;
+			className = spec.className;
+			initData = spec.initData;
 		}
 
 		// create a new instance
@@ -30,19 +30,10 @@ public class ConfigurationElementMulti extends ConfigurationElement {
 	}
 
 	String getAttribute(String attrName, String locale) {
-		if (propertiesAndValue.length <= 1)
-			return null;
-		//round down to an even size
-		int size = propertiesAndValue.length - (propertiesAndValue.length % 2);
-		int index = -1;
-		for (int i = 0, j = 0; i < size; i += 2, j++) {
-			if (!(propertiesAndValue[i].equals(attrName)))
-				continue;
-			index = j;
-			break;
-		}
-		if (index == -1)
+		int propertyIndex = indexOfAttribute(attrName);
+		if (propertyIndex == -1)
 			return null;
+		int index = propertyIndex / 2;
 
 		String result = getTranslatedAtIndex(index, locale);
 		if (result != null)
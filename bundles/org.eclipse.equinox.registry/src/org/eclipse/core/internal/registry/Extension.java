@@ -89,6 +89,14 @@ public class Extension extends RegistryObject {
 		return result;
 	}
 
+	// Returns the extra data if it is in memory, without loading it
+	String[] getLoadedExtraData() {
+		Object info = extraInformation;
+		if (info instanceof SoftReference)
+			return (String[]) ((SoftReference) info).get();
+		return (String[]) info;
+	}
+
 	String getLabel() {
 		String s = getExtraData()[LABEL];
 		if (s == null)
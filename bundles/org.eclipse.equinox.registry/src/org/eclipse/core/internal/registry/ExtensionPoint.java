@@ -12,6 +12,7 @@ package org.eclipse.core.internal.registry;
 
 import java.io.File;
 import java.lang.ref.SoftReference;
+import org.eclipse.core.runtime.IConfigurationElement;
 import org.eclipse.core.runtime.IContributor;
 
 /**
@@ -32,6 +33,10 @@ public class ExtensionPoint extends RegistryObject {
 	private static final byte CONTRIBUTOR_ID = 4; //The ID of the actual contributor of the extension point
 	private static final int EXTRA_SIZE = 5;
 
+	//Handles to the configuration elements of the extensions, as {int[] extensions, IConfigurationElement[] handles}.
+	//The handles are only valid while the extensions are the same array; changing the extensions replaces the array.
+	private volatile Object[] configurationElements = null;
+
 	protected ExtensionPoint(ExtensionRegistry registry, boolean persist) {
 		super(registry, persist);
 	}
@@ -44,6 +49,17 @@ public class ExtensionPoint extends RegistryObject {
 		setExtraDataOffset(dataOffset);
 	}
 
+	IConfigurationElement[] getConfigurationElementsSnapshot() {
+		Object[] snapshot = configurationElements;
+		if (snapshot == null || snapshot[0] != getRawChildren())
+			return null;
+		return (IConfigurationElement[]) snapshot[1];
+	}
+
+	void setConfigurationElementsSnapshot(int[] extensions, IConfigurationElement[] handles) {
+		configurationElements = new Object[] {extensions, handles};
+	}
+
 	protected String getSimpleIdentifier() {
 		return getUniqueIdentifier().substring(getUniqueIdentifier().lastIndexOf('.') + 1);
 	}
@@ -65,6 +81,14 @@ public class ExtensionPoint extends RegistryObject {
 		return result;
 	}
 
+	// Returns the extra data if it is in memory, without loading it
+	String[] getLoadedExtraData() {
+		Object info = extraInformation;
+		if (info instanceof SoftReference)
+			return (String[]) ((SoftReference) info).get();
+		return (String[]) info;
+	}
+
 	/**
 	 * At the end of this method, extra information will be a string[]
 	 */
@@ -88,10 +88,46 @@ public class ExtensionRegistry implements IExtensionRegistry, IDynamicExtensionR
 	// have we already logged a error on usage of an unsupported multi-language method?
 	private boolean mlErrorLogged = false;
 
+	// saves the cache in the background after changes; null until the first change
+	private CacheWriterThread cacheWriter = null;
+	private boolean cacheWriterStopped = false;
+	private final Object cacheWriterLock = new Object();
+	// held while the cache files are written
+	private final Object cacheSaveLock = new Object();
+	// set by stop(), after which the cache can no longer be saved in the background
+	private boolean cacheClosed = false;
+
+	// default delay in milliseconds between the last change and saving the cache in the background
+	private static final long DEFAULT_CACHE_SAVE_DELAY = 30000;
+
+	// merges the events of consecutive changes; null unless enabled
+	private final ChangeEventCoalescer eventCoalescer;
+
+	// default number of changes merged into one event
+	private static final int DEFAULT_EVENT_COALESCING_LIMIT = 256;
+
 	public RegistryObjectManager getObjectManager() {
 		return registryObjects;
 	}
 
+	/**
+	 * Returns a snapshot of the memory held by the registry and of the activity of
+	 * its object cache, for diagnostics.
+	 * 
+	 * @return the statistics
+	 */
+	public RegistryStatistics getStatistics() {
+		access.enterRead();
+		try {
+			RegistryStatistics statistics = new RegistryStatistics();
+			registryObjects.collectStatistics(statistics);
+			theTableReader.collectStatistics(statistics);
+			return statistics;
+		} finally {
+			access.exitRead();
+		}
+	}
+
 	/**
 	 * Sets new cache file manager. If existing file manager was owned by the registry,
 	 * closes it.
@@ -262,6 +298,8 @@ public class ExtensionRegistry implements IExtensionRegistry, IDynamicExtensionR
 	 * Broadcasts (asynchronously) the event to all interested parties.
 	 */
 	private void fireRegistryChangeEvent() {
+		// every change of the registry contents ends up here
+		scheduleCacheSave();
 		// pack new extended delta together with the rest of deltas using invalid namespace
 		deltas.put(notNamespace, eventDelta);
 		// if there is nothing to say, just bail out
@@ -275,7 +313,24 @@ public class ExtensionRegistry implements IExtensionRegistry, IDynamicExtensionR
 		// the deltas have been saved for notification - we can clear them now
 		deltas.clear();
 		// do the notification asynchronously
-		strategy.scheduleChangeEvent(tmpListeners, tmpDeltas, this);
+		if (eventCoalescer != null)
+			eventCoalescer.add(tmpListeners, tmpDeltas);
+		else
+			strategy.scheduleChangeEvent(tmpListeners, tmpDeltas, this);
+	}
+
+	void dispatchChangeEvent(Object[] listenerInfos, Map scheduledDeltas) {
+		strategy.scheduleChangeEvent(listenerInfos, scheduledDeltas, this);
+	}
+
+	/**
+	 * Delivers the registry change events held back to be merged with the events
+	 * of later changes. Events are only held back if the
+	 * <code>eclipse.registry.eventCoalescingWindow</code> property is set.
+	 */
+	public void flushChangeEvents() {
+		if (eventCoalescer != null)
+			eventCoalescer.flush();
 	}
 
 	/*
@@ -382,12 +437,8 @@ public class ExtensionRegistry implements IExtensionRegistry, IDynamicExtensionR
 	 * @see org.eclipse.core.runtime.IExtensionRegistry#getExtensionPoint(java.lang.String)
 	 */
 	public IExtensionPoint getExtensionPoint(String xptUniqueId) {
-		access.enterRead();
-		try {
-			return registryObjects.getExtensionPointHandle(xptUniqueId);
-		} finally {
-			access.exitRead();
-		}
+		// no need to lock - the object manager serves the lookup from an immutable snapshot
+		return registryObjects.getExtensionPointHandle(xptUniqueId);
 	}
 
 	/*
@@ -395,12 +446,8 @@ public class ExtensionRegistry implements IExtensionRegistry, IDynamicExtensionR
 	 * @see org.eclipse.core.runtime.IExtensionRegistry#getExtensionPoint(java.lang.String, java.lang.String)
 	 */
 	public IExtensionPoint getExtensionPoint(String elementName, String xpt) {
-		access.enterRead();
-		try {
-			return registryObjects.getExtensionPointHandle(elementName + '.' + xpt);
-		} finally {
-			access.exitRead();
-		}
+		// no need to lock - the object manager serves the lookup from an immutable snapshot
+		return registryObjects.getExtensionPointHandle(elementName + '.' + xpt);
 	}
 
 	/*
@@ -651,6 +698,11 @@ public class ExtensionRegistry implements IExtensionRegistry, IDynamicExtensionR
 
 	public ExtensionRegistry(RegistryStrategy registryStrategy, Object masterToken, Object userToken) {
 		isMultiLanguage = "true".equals(RegistryProperties.getProperty(IRegistryConstants.PROP_MULTI_LANGUAGE)); //$NON-NLS-1$
+		long eventCoalescingWindow = getLongProperty(IRegistryConstants.PROP_EVENT_COALESCING_WINDOW, 0);
+		if (eventCoalescingWindow > 0)
+			eventCoalescer = new ChangeEventCoalescer(this, eventCoalescingWindow, (int) getLongProperty(IRegistryConstants.PROP_EVENT_COALESCING_LIMIT, DEFAULT_EVENT_COALESCING_LIMIT));
+		else
+			eventCoalescer = null;
 
 		if (registryStrategy != null)
 			strategy = registryStrategy;
@@ -740,17 +792,93 @@ public class ExtensionRegistry implements IExtensionRegistry, IDynamicExtensionR
 		// Do extra stop processing if specified in the registry strategy
 		strategy.onStop(this);
 
+		if (eventCoalescer != null)
+			eventCoalescer.shutdown();
 		stopChangeEventScheduler();
+		stopCacheWriter();
 
 		if (cacheStorageManager == null)
 			return;
 
-		if (!registryObjects.isDirty() || cacheStorageManager.isReadOnly()) {
-			cacheStorageManager.close();
+		synchronized (cacheSaveLock) {
+			cacheClosed = true;
+			if (registryObjects.isDirty() && !cacheStorageManager.isReadOnly())
+				saveCache();
 			theTableReader.close();
+			cacheStorageManager.close();
+		}
+	}
+
+	/**
+	 * Saves the cache if the registry changed since it was last saved. Called by the
+	 * {@link CacheWriterThread} once the registry contents have not changed for a while.
+	 */
+	void saveCacheInBackground() {
+		synchronized (cacheSaveLock) {
+			if (cacheClosed || cacheStorageManager == null || cacheStorageManager.isReadOnly())
+				return;
+			// keep the contents from changing while they are written
+			access.enterRead();
+			try {
+				if (!registryObjects.isDirty())
+					return;
+				registryObjects.clearDirty();
+				boolean saved = false;
+				try {
+					saved = saveCache();
+				} finally {
+					if (!saved)
+						registryObjects.markDirty();
+				}
+			} finally {
+				access.exitRead();
+			}
+		}
+	}
+
+	private void scheduleCacheSave() {
+		if (cacheStorageManager == null || cacheStorageManager.isReadOnly())
 			return;
+		synchronized (cacheWriterLock) {
+			if (cacheWriterStopped)
+				return;
+			if (cacheWriter == null) {
+				long delay = getCacheSaveDelay();
+				if (delay <= 0)
+					return;
+				cacheWriter = new CacheWriterThread(this, delay);
+				cacheWriter.start();
+			}
+			cacheWriter.changed();
 		}
+	}
 
+	private void stopCacheWriter() {
+		synchronized (cacheWriterLock) {
+			if (cacheWriter != null)
+				cacheWriter.shutdown();
+			cacheWriterStopped = true;
+		}
+	}
+
+	private static long getCacheSaveDelay() {
+		return getLongProperty(IRegistryConstants.PROP_CACHE_SAVE_DELAY, DEFAULT_CACHE_SAVE_DELAY);
+	}
+
+	private static long getLongProperty(String name, long defaultValue) {
+		String value = RegistryProperties.getProperty(name);
+		if (value != null) {
+			try {
+				return Long.parseLong(value);
+			} catch (NumberFormatException e) {
+				// use the default
+			}
+		}
+		return defaultValue;
+	}
+
+	// Writes the cache files and returns whether they were updated
+	private boolean saveCache() {
 		File tableFile = null;
 		File mainFile = null;
 		File extraFile = null;
@@ -784,8 +912,7 @@ public class ExtensionRegistry implements IExtensionRegistry, IDynamicExtensionR
 			theTableWriter.setNamespacesFile(namespacesFile);
 			theTableWriter.setOrphansFile(orphansFile);
 		} catch (IOException e) {
-			cacheStorageManager.close();
-			return; //Ignore the exception since we can recompute the cache
+			return false; //Ignore the exception since we can recompute the cache
 		}
 		try {
 			long timestamp;
@@ -799,13 +926,14 @@ public class ExtensionRegistry implements IExtensionRegistry, IDynamicExtensionR
 			else
 				timestamp = strategy.getContributionsTimestamp(); // use legacy approach
 
-			if (theTableWriter.saveCache(registryObjects, timestamp))
+			if (theTableWriter.saveCache(registryObjects, timestamp)) {
 				cacheStorageManager.update(new String[] {TableReader.TABLE, TableReader.MAIN, TableReader.EXTRA, TableReader.CONTRIBUTIONS, TableReader.CONTRIBUTORS, TableReader.NAMESPACES, TableReader.ORPHANS}, new String[] {tableFile.getName(), mainFile.getName(), extraFile.getName(), contributionsFile.getName(), contributorsFile.getName(), namespacesFile.getName(), orphansFile.getName()});
+				return true;
+			}
 		} catch (IOException e) {
 			//Ignore the exception since we can recompute the cache
 		}
-		theTableReader.close();
-		cacheStorageManager.close();
+		return false;
 	}
 
 	/*
@@ -1044,6 +1172,30 @@ public class ExtensionRegistry implements IExtensionRegistry, IDynamicExtensionR
 	}
 
 	public boolean addContribution(InputStream is, IContributor contributor, boolean persist, String contributionName, ResourceBundle translationBundle, Object key) {
+		try {
+			return basicAddContribution(new InputSource(is), null, contributor, persist, contributionName, translationBundle, key);
+		} finally {
+			try {
+				is.close();
+			} catch (IOException ioe) {
+				// nothing to do
+			}
+		}
+	}
+
+	/**
+	 * Adds a contribution whose manifest was already parsed into a {@link ManifestRecording}.
+	 * The registry objects, their identifiers and the change events are the same as if the
+	 * manifest had been passed as a stream.
+	 */
+	public boolean addContribution(ManifestRecording recording, IContributor contributor, boolean persist, String contributionName, ResourceBundle translationBundle, Object key, long timestamp) {
+		boolean result = basicAddContribution(null, recording, contributor, persist, contributionName, translationBundle, key);
+		if (timestamp != 0)
+			aggregatedTimestamp.add(timestamp);
+		return result;
+	}
+
+	private boolean basicAddContribution(InputSource in, ManifestRecording recording, IContributor contributor, boolean persist, String contributionName, ResourceBundle translationBundle, Object key) {
 		if (!checkReadWriteAccess(key, persist))
 			throw new IllegalArgumentException("Unauthorized access to the ExtensionRegistry.addContribution() method. Check if proper access token is supplied."); //$NON-NLS-1$
 		if (contributionName == null)
@@ -1059,7 +1211,10 @@ public class ExtensionRegistry implements IExtensionRegistry, IDynamicExtensionR
 		Contribution contribution = getElementFactory().createContribution(internalContributor.getActualId(), persist);
 
 		try {
-			parser.parseManifest(strategy.getXMLParser(), new InputSource(is), contributionName, getObjectManager(), contribution, translationBundle);
+			if (recording != null)
+				parser.parseManifest(recording, contributionName, getObjectManager(), contribution, translationBundle);
+			else
+				parser.parseManifest(strategy.getXMLParser(), in, contributionName, getObjectManager(), contribution, translationBundle);
 			int status = problems.getSeverity();
 			if (status != IStatus.OK) {
 				log(problems);
@@ -1075,12 +1230,6 @@ public class ExtensionRegistry implements IExtensionRegistry, IDynamicExtensionR
 		} catch (IOException e) {
 			logError(ownerName, contributionName, e);
 			return false;
-		} finally {
-			try {
-				is.close();
-			} catch (IOException ioe) {
-				// nothing to do
-			}
 		}
 		add(contribution); // the add() method does synchronization
 		return true;
@@ -13,8 +13,7 @@ package org.eclipse.core.internal.registry;
 
 import java.io.IOException;
 import java.util.*;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.parsers.SAXParserFactory;
+import javax.xml.parsers.*;
 import org.eclipse.core.runtime.*;
 import org.eclipse.osgi.util.NLS;
 import org.xml.sax.*;
@@ -395,14 +394,19 @@ public class ExtensionsParser extends DefaultHandler {
 			locationName = in.getSystemId();
 			if (locationName == null)
 				locationName = manifestName;
-			factory.setNamespaceAware(true);
-			try {
-				factory.setFeature("http://xml.org/sax/features/string-interning", true); //$NON-NLS-1$
-			} catch (SAXException se) {
-				// ignore; we can still operate without string-interning
+			SAXParser parser;
+			// the factory may be shared with threads recording manifests
+			synchronized (factory) {
+				factory.setNamespaceAware(true);
+				try {
+					factory.setFeature("http://xml.org/sax/features/string-interning", true); //$NON-NLS-1$
+				} catch (SAXException se) {
+					// ignore; we can still operate without string-interning
+				}
+				factory.setValidating(false);
+				parser = factory.newSAXParser();
 			}
-			factory.setValidating(false);
-			factory.newSAXParser().parse(in, this);
+			parser.parse(in, this);
 			return (Contribution) objectStack.pop();
 		} finally {
 			if (registry.debug()) {
@@ -412,6 +416,21 @@ public class ExtensionsParser extends DefaultHandler {
 		}
 	}
 
+	/**
+	 * Same as {@link #parseManifest(SAXParserFactory, InputSource, String, RegistryObjectManager, Contribution, ResourceBundle)}
+	 * for a manifest that was already parsed into a {@link ManifestRecording}.
+	 */
+	public Contribution parseManifest(ManifestRecording recording, String manifestName, RegistryObjectManager registryObjects, Contribution currentNamespace, ResourceBundle bundle) throws ParserConfigurationException, SAXException, IOException {
+		this.resources = bundle;
+		this.objectManager = registryObjects;
+		this.contribution = currentNamespace;
+		locationName = recording.getSystemId();
+		if (locationName == null)
+			locationName = manifestName;
+		recording.replay(this);
+		return (Contribution) objectStack.pop();
+	}
+
 	private void parseConfigurationElementAttributes(Attributes attributes) {
 		ConfigurationElement parentConfigurationElement = (ConfigurationElement) objectStack.peek();
 
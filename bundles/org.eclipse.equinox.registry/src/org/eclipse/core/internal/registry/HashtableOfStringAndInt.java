@@ -40,20 +40,15 @@ public final class HashtableOfStringAndInt implements Cloneable {
 		this.valueTable = new int[extraRoom];
 	}
 
-	public Object clone() throws CloneNotSupportedException {
-		throw new CloneNotSupportedException();
-		//		HashtableOfStringAndInt result = (HashtableOfStringAndInt) super.clone();
-		//		result.elementSize = this.elementSize;
-		//		result.threshold = this.threshold;
-		//
-		//		int length = this.keyTable.length;
-		//		result.keyTable = new char[length][];
-		//		System.arraycopy(this.keyTable, 0, result.keyTable, 0, length);
-		//
-		//		length = this.valueTable.length;
-		//		result.valueTable = new Object[length];
-		//		System.arraycopy(this.valueTable, 0, result.valueTable, 0, length);
-		//		return result;
+	public Object clone() {
+		try {
+			HashtableOfStringAndInt result = (HashtableOfStringAndInt) super.clone();
+			result.keyTable = (String[]) this.keyTable.clone();
+			result.valueTable = (int[]) this.valueTable.clone();
+			return result;
+		} catch (CloneNotSupportedException e) {
+			throw new InternalError(); // can't happen, this class is Cloneable
+		}
 	}
 
 	public boolean containsKey(String key) {
@@ -30,6 +30,10 @@ public interface IRegistryConstants {
 	public static final String PROP_DEFAULT_REGISTRY = "eclipse.createRegistry"; //$NON-NLS-1$
 	public static final String PROP_REGISTRY_NULL_USER_TOKEN = "eclipse.registry.nulltoken"; //$NON-NLS-1$
 	public static final String PROP_MULTI_LANGUAGE = "eclipse.registry.MultiLanguage"; //$NON-NLS-1$
+	public static final String PROP_PARSER_THREADS = "eclipse.registry.parserThreads"; //$NON-NLS-1$
+	public static final String PROP_CACHE_SAVE_DELAY = "eclipse.registry.cacheSaveDelay"; //$NON-NLS-1$
+	public static final String PROP_EVENT_COALESCING_WINDOW = "eclipse.registry.eventCoalescingWindow"; //$NON-NLS-1$
+	public static final String PROP_EVENT_COALESCING_LIMIT = "eclipse.registry.eventCoalescingLimit"; //$NON-NLS-1$
 
 	// OSGI system properties
 	public static final String PROP_NL = "osgi.nl"; //$NON-NLS-1$
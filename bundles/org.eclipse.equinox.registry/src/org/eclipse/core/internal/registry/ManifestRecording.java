@@ -0,0 +1,225 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.internal.registry;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import javax.xml.parsers.*;
+import org.xml.sax.*;
+import org.xml.sax.helpers.*;
+
+/**
+ * The parsed form of a plugin.xml or fragment.xml that is not yet part of any registry.
+ * <p>
+ * {@link #record(SAXParserFactory, InputSource)} runs the XML parser and keeps the SAX
+ * events it reports, together with the document location of each event and the exception
+ * that ended the parse, if any. Recording does not touch the registry, so several manifests
+ * can be recorded on different threads. {@link #replay(DefaultHandler)} later reports the
+ * same events to an {@link ExtensionsParser}, which then creates exactly the registry objects
+ * it would have created reading the manifest directly.
+ * </p>
+ */
+public class ManifestRecording extends DefaultHandler {
+
+	private static final int START_DOCUMENT = 0;
+	private static final int END_DOCUMENT = 1;
+	private static final int START_ELEMENT = 2;
+	private static final int END_ELEMENT = 3;
+	private static final int CHARACTERS = 4;
+	private static final int PROCESSING_INSTRUCTION = 5;
+	private static final int WARNING = 6;
+	private static final int ERROR = 7;
+	private static final int FATAL_ERROR = 8;
+
+	private ArrayList events = new ArrayList();
+	private Locator locator = null;
+	private String systemId = null;
+	private Exception failure = null;
+
+	private static class Event {
+		int type;
+		int lineNumber;
+		int columnNumber;
+		String uri;
+		String name;
+		String qName;
+		Attributes attributes;
+		String text;
+		SAXParseException exception;
+
+		Event(int type) {
+			this.type = type;
+		}
+	}
+
+	/**
+	 * Parses the manifest and records what the parser reports. Problems are not thrown
+	 * but kept to be thrown by {@link #replay(DefaultHandler)}.
+	 *
+	 * @param factory the parser factory, or <code>null</code> if none is available
+	 * @param in the manifest
+	 */
+	public void record(SAXParserFactory factory, InputSource in) {
+		if (factory == null) {
+			failure = new SAXException(RegistryMessages.parse_xmlParserNotAvailable);
+			return;
+		}
+		systemId = in.getSystemId();
+		try {
+			SAXParser parser;
+			// the factory is shared with the other recording threads and the registry itself
+			synchronized (factory) {
+				factory.setNamespaceAware(true);
+				try {
+					factory.setFeature("http://xml.org/sax/features/string-interning", true); //$NON-NLS-1$
+				} catch (SAXException se) {
+					// ignore; we can still operate without string-interning
+				}
+				factory.setValidating(false);
+				parser = factory.newSAXParser();
+			}
+			parser.parse(in, this);
+		} catch (ParserConfigurationException e) {
+			failure = e;
+		} catch (SAXException e) {
+			failure = e;
+		} catch (IOException e) {
+			failure = e;
+		}
+	}
+
+	/**
+	 * Reports the recorded events to the given handler in their original order and
+	 * then throws the exception that ended the parse, if any.
+	 *
+	 * @param handler the handler
+	 */
+	public void replay(DefaultHandler handler) throws ParserConfigurationException, SAXException, IOException {
+		LocatorImpl replayLocator = null;
+		if (locator != null) {
+			replayLocator = new LocatorImpl();
+			replayLocator.setSystemId(systemId);
+			handler.setDocumentLocator(replayLocator);
+		}
+		for (int i = 0; i < events.size(); i++) {
+			Event event = (Event) events.get(i);
+			if (replayLocator != null) {
+				replayLocator.setLineNumber(event.lineNumber);
+				replayLocator.setColumnNumber(event.columnNumber);
+			}
+			switch (event.type) {
+				case START_DOCUMENT :
+					handler.startDocument();
+					break;
+				case END_DOCUMENT :
+					handler.endDocument();
+					break;
+				case START_ELEMENT :
+					handler.startElement(event.uri, event.name, event.qName, event.attributes);
+					break;
+				case END_ELEMENT :
+					handler.endElement(event.uri, event.name, event.qName);
+					break;
+				case CHARACTERS :
+					handler.characters(event.text.toCharArray(), 0, event.text.length());
+					break;
+				case PROCESSING_INSTRUCTION :
+					handler.processingInstruction(event.name, event.text);
+					break;
+				case WARNING :
+					handler.warning(event.exception);
+					break;
+				case ERROR :
+					handler.error(event.exception);
+					break;
+				case FATAL_ERROR :
+					handler.fatalError(event.exception);
+					break;
+			}
+		}
+		if (failure instanceof ParserConfigurationException)
+			throw (ParserConfigurationException) failure;
+		if (failure instanceof SAXException)
+			throw (SAXException) failure;
+		if (failure instanceof IOException)
+			throw (IOException) failure;
+	}
+
+	/**
+	 * Returns the system identifier of the recorded manifest.
+	 *
+	 * @return the system identifier or <code>null</code> if it was not known
+	 */
+	public String getSystemId() {
+		return systemId;
+	}
+
+	private Event addEvent(int type) {
+		Event event = new Event(type);
+		if (locator != null) {
+			event.lineNumber = locator.getLineNumber();
+			event.columnNumber = locator.getColumnNumber();
+		}
+		events.add(event);
+		return event;
+	}
+
+	public void setDocumentLocator(Locator locator) {
+		this.locator = locator;
+	}
+
+	public void startDocument() {
+		addEvent(START_DOCUMENT);
+	}
+
+	public void endDocument() {
+		addEvent(END_DOCUMENT);
+	}
+
+	public void startElement(String uri, String elementName, String qName, Attributes attributes) {
+		Event event = addEvent(START_ELEMENT);
+		event.uri = uri;
+		event.name = elementName;
+		event.qName = qName;
+		// the parser reuses its attributes object
+		event.attributes = new AttributesImpl(attributes);
+	}
+
+	public void endElement(String uri, String elementName, String qName) {
+		Event event = addEvent(END_ELEMENT);
+		event.uri = uri;
+		event.name = elementName;
+		event.qName = qName;
+	}
+
+	public void characters(char[] ch, int start, int length) {
+		addEvent(CHARACTERS).text = new String(ch, start, length);
+	}
+
+	public void processingInstruction(String target, String data) {
+		Event event = addEvent(PROCESSING_INSTRUCTION);
+		event.name = target;
+		event.text = data;
+	}
+
+	public void warning(SAXParseException ex) {
+		addEvent(WARNING).exception = ex;
+	}
+
+	public void error(SAXParseException ex) {
+		addEvent(ERROR).exception = ex;
+	}
+
+	public void fatalError(SAXParseException ex) throws SAXException {
+		addEvent(FATAL_ERROR).exception = ex;
+		throw ex;
+	}
+}
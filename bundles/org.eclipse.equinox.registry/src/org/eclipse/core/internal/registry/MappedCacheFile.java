@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.internal.registry;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Provides random reads from a registry cache file mapped into memory.
+ * <p>
+ * Every call to {@link #open(int)} returns a stream over its own view of the
+ * mapping, so several threads can read from the file at the same time without
+ * synchronization. This class requires java.nio; callers must be prepared for
+ * a {@link LinkageError} on platforms that do not provide it.
+ * </p>
+ */
+public class MappedCacheFile {
+
+	private volatile ByteBuffer buffer; // null once the file is closed
+	private final long length;
+	private final String filePath; // Canonical path to the underlying file used for logging
+
+	public MappedCacheFile(File file) throws IOException {
+		filePath = file.getCanonicalPath();
+		RandomAccessFile inputFile = new RandomAccessFile(file, "r"); //$NON-NLS-1$
+		try {
+			FileChannel channel = inputFile.getChannel();
+			// the mapping stays valid after the file is closed
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			length = buffer.capacity();
+		} finally {
+			inputFile.close();
+		}
+	}
+
+	/**
+	 * Returns a new stream reading the file from the given offset.
+	 *
+	 * @param offset offset
+	 * @return a stream that must only be used by the calling thread
+	 * @throws IOException if the file is closed or the offset is outside of the file
+	 */
+	public DataInputStream open(int offset) throws IOException {
+		ByteBuffer current = buffer;
+		if (current == null)
+			throw new IOException("Stream closed: " + filePath); //$NON-NLS-1$
+		if (offset < 0 || offset > current.limit())
+			throw new EOFException(filePath);
+		ByteBuffer view = current.duplicate();
+		view.position(offset);
+		return new DataInputStream(new ByteBufferInputStream(view));
+	}
+
+	/**
+	 * Supplies functionality of the {@link java.io.RandomAccessFile#length()}.
+	 * @return file length
+	 */
+	public long length() {
+		return length;
+	}
+
+	/**
+	 * Closes the file; later calls to {@link #open(int)} fail like reads from a
+	 * closed stream. The mapping is released once the streams already opened
+	 * are garbage collected.
+	 */
+	public void close() {
+		buffer = null;
+	}
+
+	public String toString() {
+		return filePath;
+	}
+
+	private static class ByteBufferInputStream extends InputStream {
+
+		private final ByteBuffer view;
+
+		ByteBufferInputStream(ByteBuffer view) {
+			this.view = view;
+		}
+
+		public int read() {
+			if (!view.hasRemaining())
+				return -1;
+			return view.get() & 0xFF;
+		}
+
+		public int read(byte b[], int off, int len) {
+			if (len == 0)
+				return 0;
+			if (!view.hasRemaining())
+				return -1;
+			int count = Math.min(len, view.remaining());
+			view.get(b, off, count);
+			return count;
+		}
+
+		public long skip(long n) {
+			if (n <= 0)
+				return 0;
+			int count = (int) Math.min(n, view.remaining());
+			view.position(view.position() + count);
+			return count;
+		}
+
+		public int available() {
+			return view.remaining();
+		}
+	}
+
+}
@@ -23,6 +23,7 @@
 package org.eclipse.core.internal.registry;
 
 import java.lang.ref.*;
+import java.util.ArrayList;
 
 /**
  *  Hashtable-based map with integer keys that allows values to be removed 
@@ -208,6 +209,11 @@ public class ReferenceMap {
 	 */
 	int valueType;
 
+	/**
+	 *  Number of mappings removed because their value was reclaimed.
+	 */
+	private long reclaimed;
+
 	/**
 	 *  Constructs a new <Code>ReferenceMap</Code> with the
 	 *  specified reference type, load factor and initial
@@ -331,7 +337,10 @@ public class ReferenceMap {
 	private void purge() {
 		Reference ref = queue.poll();
 		while (ref != null) {
+			int oldSize = size;
 			doRemove(((IEntry) ref).getKey(), true);
+			if (size < oldSize)
+				reclaimed++;
 			ref.clear();
 			ref = queue.poll();
 		}
@@ -385,6 +394,35 @@ public class ReferenceMap {
 		return doRemove(key, false);
 	}
 
+	/**
+	 *  Returns the values currently in the map.
+	 *
+	 *  @return the values not reclaimed yet
+	 */
+	public Object[] values() {
+		purge();
+		ArrayList result = new ArrayList(size);
+		for (int i = 0; i < table.length; i++) {
+			for (IEntry entry = table[i]; entry != null; entry = entry.getNext()) {
+				Object value = entry.getValue();
+				if (value != null)
+					result.add(value);
+			}
+		}
+		return result.toArray();
+	}
+
+	/**
+	 *  Returns the number of mappings removed because the garbage collector
+	 *  reclaimed their value.
+	 *
+	 *  @return the number of reclaimed values
+	 */
+	public long getReclaimedCount() {
+		purge();
+		return reclaimed;
+	}
+
 	/**
 	 *  Resizes this hash table by doubling its capacity.
 	 *  This is an expensive operation, as entries must
@@ -62,6 +62,16 @@ public class RegistryDelta {
 		((ExtensionDelta) extensionDelta).setContainingDelta(this);
 	}
 
+	/**
+	 * Moves the extension deltas of the given delta into this one. The object manager
+	 * is left to the caller.
+	 */
+	void merge(RegistryDelta delta) {
+		for (Iterator extDeltasIter = delta.extensionDeltas.iterator(); extDeltasIter.hasNext();)
+			addExtensionDelta((IExtensionDelta) extDeltasIter.next());
+		delta.extensionDeltas.clear();
+	}
+
 	public String toString() {
 		return "\n\tHost " + ": " + extensionDeltas; //$NON-NLS-1$//$NON-NLS-2$
 	}
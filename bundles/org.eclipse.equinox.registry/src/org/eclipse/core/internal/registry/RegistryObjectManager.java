@@ -40,6 +40,7 @@ public class RegistryObjectManager implements IObjectManager {
 
 	// key: extensionPointName, value: object id
 	private HashtableOfStringAndInt extensionPoints; //This is loaded on startup. Then entries can be added when loading a new plugin from the xml.
+	private volatile HashtableOfStringAndInt extensionPointsSnapshot = null; //Copy of extensionPoints that is never modified. Discarded on every change of extensionPoints and taken again on the next lookup.
 	// key: object id, value: an object
 	private ReferenceMap cache; //Entries are added by getter. The structure is not thread safe.
 	//key: int, value: int
@@ -67,6 +68,11 @@ public class RegistryObjectManager implements IObjectManager {
 
 	private boolean fromCache = false;
 
+	//Lookups of objects by id, and objects loaded from the cache files. Only updated while holding the lock.
+	private long cacheHits = 0;
+	private long cacheMisses = 0;
+	private long diskReads = 0;
+
 	private ExtensionRegistry registry;
 
 	// TODO this option is not used
@@ -96,6 +102,7 @@ public class RegistryObjectManager implements IObjectManager {
 		}
 		fileOffsets = (OffsetTable) results[0];
 		extensionPoints = (HashtableOfStringAndInt) results[1];
+		extensionPointsSnapshot = null;
 		nextId = ((Integer) results[2]).intValue();
 		fromCache = true;
 
@@ -259,18 +266,69 @@ public class RegistryObjectManager implements IObjectManager {
 		heldObjects.remove(toRelease);
 	}
 
-	public synchronized Object getObject(int id, byte type) {
-		return basicGetObject(id, type);
+	public Object getObject(int id, byte type) {
+		if ((type == CONFIGURATION_ELEMENT || type == EXTENSION) && registry.getTableReader().supportsConcurrentLoading())
+			return concurrentGetObject(id, type);
+		synchronized (this) {
+			return basicGetObject(id, type);
+		}
+	}
+
+	// Configuration elements and extensions are self-contained records in the cache. When the 
+	// cache files are memory mapped they are decoded outside of the lock, so that threads 
+	// resolving different handles do not wait on each other.
+	private Object concurrentGetObject(int id, byte type) {
+		int offset;
+		synchronized (this) {
+			Object result = cache.get(id);
+			if (result != null) {
+				cacheHits++;
+				return result;
+			}
+			cacheMisses++;
+			offset = getFileOffset(id);
+		}
+		Object result = null;
+		if (offset != Integer.MIN_VALUE) {
+			TableReader reader = registry.getTableReader();
+			if (type == CONFIGURATION_ELEMENT)
+				result = reader.loadConfigurationElement(offset);
+			else
+				result = reader.loadExtension(offset);
+		}
+		if (result == null)
+			throw new InvalidRegistryObjectException();
+		synchronized (this) {
+			diskReads++;
+			Object current = cache.get(id);
+			if (current != null)
+				return current; // loaded by another thread in the meantime
+			if (getFileOffset(id) != offset)
+				throw new InvalidRegistryObjectException(); // removed in the meantime
+			cache.put(id, result);
+			return result;
+		}
+	}
+
+	// Called from a synchronized method only
+	private int getFileOffset(int id) {
+		if (!fromCache || fileOffsets == null)
+			return Integer.MIN_VALUE;
+		return fileOffsets.get(id);
 	}
 
 	private Object basicGetObject(int id, byte type) {
 		Object result = cache.get(id);
-		if (result != null)
+		if (result != null) {
+			cacheHits++;
 			return result;
+		}
+		cacheMisses++;
 		if (fromCache)
 			result = load(id, type);
 		if (result == null)
 			throw new InvalidRegistryObjectException();
+		diskReads++;
 		cache.put(id, result);
 		return result;
 	}
@@ -283,7 +341,7 @@ public class RegistryObjectManager implements IObjectManager {
 	// of this method would have to retrieved the object from disk and check
 	// its "dynamic" status. The problem is that id alone is not enough to get the object
 	// from the disk; object type is needed as well.
-	public boolean shouldPersist(int id) {
+	public synchronized boolean shouldPersist(int id) {
 		Object result = cache.get(id);
 		if (result != null)
 			return ((RegistryObject) result).shouldPersist();
@@ -393,13 +451,25 @@ public class RegistryObjectManager implements IObjectManager {
 		return (ExtensionPointHandle[]) getHandles(extensionPoints.getValues(), EXTENSION_POINT);
 	}
 
-	synchronized ExtensionPointHandle getExtensionPointHandle(String xptUniqueId) {
-		int id = extensionPoints.get(xptUniqueId);
+	// Doesn't need to be synchronized - looks up the extension point in the snapshot
+	ExtensionPointHandle getExtensionPointHandle(String xptUniqueId) {
+		HashtableOfStringAndInt snapshot = extensionPointsSnapshot;
+		if (snapshot == null)
+			snapshot = takeExtensionPointsSnapshot();
+		int id = snapshot.get(xptUniqueId);
 		if (id == HashtableOfStringAndInt.MISSING_ELEMENT)
 			return null;
 		return (ExtensionPointHandle) getHandle(id, EXTENSION_POINT);
 	}
 
+	// The snapshot is only taken and discarded while holding the lock, so a snapshot 
+	// taken before a change can never be published after it.
+	private synchronized HashtableOfStringAndInt takeExtensionPointsSnapshot() {
+		if (extensionPointsSnapshot == null)
+			extensionPointsSnapshot = (HashtableOfStringAndInt) extensionPoints.clone();
+		return extensionPointsSnapshot;
+	}
+
 	private Object load(int id, byte type) {
 		TableReader reader = registry.getTableReader();
 		if (fileOffsets == null)
@@ -438,6 +508,7 @@ public class RegistryObjectManager implements IObjectManager {
 			return false;
 		add(currentExtPoint, hold);
 		extensionPoints.put(uniqueId, currentExtPoint.getObjectId());
+		extensionPointsSnapshot = null;
 		return true;
 	}
 
@@ -445,6 +516,7 @@ public class RegistryObjectManager implements IObjectManager {
 		int pointId = extensionPoints.removeKey(extensionPointId);
 		if (pointId == HashtableOfStringAndInt.MISSING_ELEMENT)
 			return;
+		extensionPointsSnapshot = null;
 		remove(pointId, true);
 	}
 
@@ -456,6 +528,10 @@ public class RegistryObjectManager implements IObjectManager {
 		isDirty = true;
 	}
 
+	void clearDirty() {
+		isDirty = false;
+	}
+
 	synchronized void removeContribution(Object contributorId) {
 		boolean removed = newContributions.removeByKey(contributorId);
 		if (removed == false) {
@@ -748,6 +824,57 @@ public class RegistryObjectManager implements IObjectManager {
 		}
 	}
 
+	/**
+	 * Records the state of the objects in memory into the given statistics.
+	 */
+	synchronized void collectStatistics(RegistryStatistics statistics) {
+		statistics.softCache = cache.valueType == ReferenceMap.SOFT;
+		statistics.cacheHits = cacheHits;
+		statistics.cacheMisses = cacheMisses;
+		statistics.diskReads = diskReads;
+		statistics.reclaimedObjects = cache.getReclaimedCount();
+		statistics.heldObjects = heldObjects.size();
+		statistics.extensionPoints = extensionPoints.size();
+		statistics.namespaces = getNamespacesIndex().size();
+
+		for (Iterator iter = getContributors().values().iterator(); iter.hasNext();) {
+			RegistryContributor contributor = (RegistryContributor) iter.next();
+			statistics.contributorNames.put(contributor.getActualId(), contributor.getActualName());
+		}
+		statistics.contributors = statistics.contributorNames.size();
+
+		for (Iterator iter = getOrphans().values().iterator(); iter.hasNext();)
+			statistics.orphanExtensions += ((int[]) iter.next()).length;
+
+		// only the contributions know the contributors of extensions and extension points
+		// without loading their extra data
+		Map owners = new HashMap();
+		KeyedElement[] newElements = newContributions.elements();
+		KeyedElement[] formerElements = getFormerContributions().elements();
+		statistics.contributions = newElements.length + formerElements.length;
+		for (int i = 0; i < statistics.contributions; i++) {
+			Contribution contribution = (Contribution) (i < newElements.length ? newElements[i] : formerElements[i - newElements.length]);
+			String contributorId = contribution.getContributorId();
+			int[] extensionPointIds = contribution.getExtensionPoints();
+			for (int j = 0; j < extensionPointIds.length; j++)
+				owners.put(new Integer(extensionPointIds[j]), contributorId);
+			int[] extensionIds = contribution.getExtensions();
+			for (int j = 0; j < extensionIds.length; j++)
+				owners.put(new Integer(extensionIds[j]), contributorId);
+		}
+
+		Object[] objects = cache.values();
+		for (int i = 0; i < objects.length; i++) {
+			RegistryObject object = (RegistryObject) objects[i];
+			String contributorId;
+			if (object instanceof ConfigurationElement)
+				contributorId = ((ConfigurationElement) object).getContributorId();
+			else
+				contributorId = (String) owners.get(new Integer(object.getObjectId()));
+			statistics.addObject(object, contributorId);
+		}
+	}
+
 	public void close() {
 		//do nothing.
 	}
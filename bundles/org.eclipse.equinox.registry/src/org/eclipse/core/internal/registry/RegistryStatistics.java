@@ -0,0 +1,286 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.internal.registry;
+
+import java.util.*;
+
+/**
+ * A snapshot of the memory held by an extension registry and of the activity of its
+ * object cache, taken by {@link ExtensionRegistry#getStatistics()}.
+ * <p>
+ * Sizes are estimates of the registry objects currently in memory, assuming a 64-bit
+ * VM with compressed references and two bytes per character. Objects that were not
+ * loaded from the cache files, or were reclaimed since, are not counted. The names of
+ * configuration elements and of their properties are shared and counted once, with
+ * the strings of the cache files.
+ * </p>
+ */
+public class RegistryStatistics {
+	// the types of the registry objects counted
+	public static final int CONFIGURATION_ELEMENT = 0;
+	public static final int EXTENSION = 1;
+	public static final int EXTENSION_POINT = 2;
+	private static final int TYPE_COUNT = 3;
+
+	// estimated sizes of the objects themselves, without the arrays and strings they refer to
+	private static final int CONFIGURATION_ELEMENT_SIZE = 48;
+	private static final int EXTENSION_SIZE = 40;
+	private static final int EXTENSION_POINT_SIZE = 40;
+
+	boolean softCache;
+	private final int[] objectCounts = new int[TYPE_COUNT];
+	private final long[] objectBytes = new long[TYPE_COUNT];
+	int heldObjects;
+	long cacheHits;
+	long cacheMisses;
+	long reclaimedObjects;
+	long diskReads;
+	int extensionPoints;
+	int contributions;
+	int contributors;
+	int namespaces;
+	int orphanExtensions;
+	int loadedStrings;
+	int strings;
+	long stringBytes;
+
+	private final Map contributorFootprints = new HashMap(); // contributor ID -> long[] {objects, bytes}
+	final Map contributorNames = new HashMap(); // contributor ID -> contributor name
+
+	RegistryStatistics() {
+		// created by the registry
+	}
+
+	/**
+	 * Counts the given registry object.
+	 *
+	 * @param object an object in memory
+	 * @param contributorId the ID of its contributor or <code>null</code> if not known
+	 */
+	void addObject(RegistryObject object, String contributorId) {
+		int type;
+		long bytes = sizeOf(object.getRawChildren());
+		if (object instanceof ConfigurationElement) {
+			type = CONFIGURATION_ELEMENT;
+			String[] propertiesAndValue = ((ConfigurationElement) object).propertiesAndValue;
+			bytes += CONFIGURATION_ELEMENT_SIZE + sizeOfArray(propertiesAndValue.length);
+			// the property names are shared; the values are at odd indexes, and last for an odd length
+			for (int i = 1; i < propertiesAndValue.length; i += 2)
+				bytes += sizeOf(propertiesAndValue[i]);
+			if (propertiesAndValue.length % 2 == 1)
+				bytes += sizeOf(propertiesAndValue[propertiesAndValue.length - 1]);
+		} else if (object instanceof Extension) {
+			type = EXTENSION;
+			Extension extension = (Extension) object;
+			bytes += EXTENSION_SIZE + sizeOf(extension.getSimpleIdentifier()) + sizeOf(extension.getLoadedExtraData());
+		} else if (object instanceof ExtensionPoint) {
+			type = EXTENSION_POINT;
+			bytes += EXTENSION_POINT_SIZE + sizeOf(((ExtensionPoint) object).getLoadedExtraData());
+		} else
+			return;
+		objectCounts[type]++;
+		objectBytes[type] += bytes;
+
+		if (contributorId == null)
+			return;
+		long[] footprint = (long[]) contributorFootprints.get(contributorId);
+		if (footprint == null) {
+			footprint = new long[2];
+			contributorFootprints.put(contributorId, footprint);
+		}
+		footprint[0]++;
+		footprint[1] += bytes;
+	}
+
+	static long sizeOf(String value) {
+		if (value == null)
+			return 0;
+		return 24 + align(16 + 2 * value.length());
+	}
+
+	static long sizeOf(int[] values) {
+		if (values == null || values.length == 0)
+			return 0; // the empty arrays are shared
+		return align(16 + 4 * values.length);
+	}
+
+	private static long sizeOf(String[] values) {
+		if (values == null)
+			return 0;
+		long result = sizeOfArray(values.length);
+		for (int i = 0; i < values.length; i++)
+			result += sizeOf(values[i]);
+		return result;
+	}
+
+	private static long sizeOfArray(int length) {
+		return align(16 + 4 * length);
+	}
+
+	private static long align(long size) {
+		return (size + 7) & ~7L;
+	}
+
+	/**
+	 * Returns whether the registry objects are kept through soft references, so that
+	 * they can be reclaimed when memory runs low.
+	 */
+	public boolean isSoftCache() {
+		return softCache;
+	}
+
+	/**
+	 * Returns the number of registry objects of the given type in memory.
+	 *
+	 * @param type {@link #CONFIGURATION_ELEMENT}, {@link #EXTENSION} or {@link #EXTENSION_POINT}
+	 */
+	public int getObjectCount(int type) {
+		return objectCounts[type];
+	}
+
+	/**
+	 * Returns the estimated size in bytes of the registry objects of the given type in memory.
+	 *
+	 * @param type {@link #CONFIGURATION_ELEMENT}, {@link #EXTENSION} or {@link #EXTENSION_POINT}
+	 */
+	public long getObjectBytes(int type) {
+		return objectBytes[type];
+	}
+
+	/**
+	 * Returns the number of objects that cannot be reclaimed, such as the ones
+	 * contributed without being saved in the cache files.
+	 */
+	public int getHeldObjectCount() {
+		return heldObjects;
+	}
+
+	/**
+	 * Returns the number of object lookups that found the object in memory.
+	 */
+	public long getCacheHits() {
+		return cacheHits;
+	}
+
+	/**
+	 * Returns the number of object lookups that did not find the object in memory.
+	 */
+	public long getCacheMisses() {
+		return cacheMisses;
+	}
+
+	/**
+	 * Returns the number of objects reclaimed by the garbage collector.
+	 */
+	public long getReclaimedObjectCount() {
+		return reclaimedObjects;
+	}
+
+	/**
+	 * Returns the number of objects loaded from the cache files.
+	 */
+	public long getDiskReads() {
+		return diskReads;
+	}
+
+	public int getExtensionPointCount() {
+		return extensionPoints;
+	}
+
+	public int getContributionCount() {
+		return contributions;
+	}
+
+	public int getContributorCount() {
+		return contributors;
+	}
+
+	public int getNamespaceCount() {
+		return namespaces;
+	}
+
+	/**
+	 * Returns the number of extensions whose extension point is not available.
+	 */
+	public int getOrphanExtensionCount() {
+		return orphanExtensions;
+	}
+
+	/**
+	 * Returns the number of strings read from the cache files so far.
+	 */
+	public int getLoadedStringCount() {
+		return loadedStrings;
+	}
+
+	/**
+	 * Returns the number of strings in the cache files.
+	 */
+	public int getStringCount() {
+		return strings;
+	}
+
+	/**
+	 * Returns the estimated size in bytes of the strings read from the cache files.
+	 */
+	public long getStringBytes() {
+		return stringBytes;
+	}
+
+	/**
+	 * Returns the estimated size in bytes of the registry objects and strings in memory.
+	 */
+	public long getTotalBytes() {
+		long result = stringBytes;
+		for (int i = 0; i < TYPE_COUNT; i++)
+			result += objectBytes[i];
+		return result;
+	}
+
+	/**
+	 * Returns the IDs of the contributors of objects in memory, the one with the
+	 * largest estimated size first.
+	 */
+	public String[] getContributorIds() {
+		String[] result = (String[]) contributorFootprints.keySet().toArray(new String[contributorFootprints.size()]);
+		Arrays.sort(result, new Comparator() {
+			public int compare(Object o1, Object o2) {
+				long bytes1 = getContributorBytes((String) o1);
+				long bytes2 = getContributorBytes((String) o2);
+				return bytes1 < bytes2 ? 1 : (bytes1 > bytes2 ? -1 : 0);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Returns the name of the given contributor, or <code>null</code> if it is not known.
+	 */
+	public String getContributorName(String contributorId) {
+		return (String) contributorNames.get(contributorId);
+	}
+
+	/**
+	 * Returns the number of objects in memory from the given contributor.
+	 */
+	public long getContributorObjectCount(String contributorId) {
+		long[] footprint = (long[]) contributorFootprints.get(contributorId);
+		return footprint == null ? 0 : footprint[0];
+	}
+
+	/**
+	 * Returns the estimated size in bytes of the objects in memory from the given contributor.
+	 */
+	public long getContributorBytes(String contributorId) {
+		long[] footprint = (long[]) contributorFootprints.get(contributorId);
+		return footprint == null ? 0 : footprint[1];
+	}
+}
@@ -23,28 +23,40 @@ public class TableReader {
 	static final int OBJECT = 1;
 
 	//The version of the cache
-	static final int CACHE_VERSION = 7;
+	static final int CACHE_VERSION = 9;
 	// Version 1 -> 2: the contributor Ids changed from "long" to "String"
 	// Version 2 -> 3: added namespace index and the table of contributors
 	// Version 3 -> 4: offset table saved in a binary form (performance)
 	// Version 4 -> 5: remove support added in version 4 to save offset table in a binary form (performance)
 	// Version 5 -> 6: replace HashtableOfInt with OffsetTable (memory usage optimization)
 	// Version 6 -> 7: added option for multi-language support
+	// Version 7 -> 8: names of configuration elements and their properties saved once in the table file
+	// Version 8 -> 9: the other strings of the data files saved once at the end of the extra data file
 
 	//Informations representing the MAIN file
 	static final String MAIN = ".mainData"; //$NON-NLS-1$
 	BufferedRandomInputStream mainDataFile = null;
 	DataInputStream mainInput = null;
+	MappedCacheFile mainDataMap = null;
 
 	//Informations representing the EXTRA file
 	static final String EXTRA = ".extraData"; //$NON-NLS-1$
 	BufferedRandomInputStream extraDataFile = null;
 	DataInputStream extraInput = null;
+	MappedCacheFile extraDataMap = null;
 
 	//The table file
 	static final String TABLE = ".table"; //$NON-NLS-1$
 	File tableFile;
 
+	//The interned names of configuration elements and of their properties, read from the table file
+	private String[] names = RegistryObjectManager.EMPTY_STRING_ARRAY;
+
+	//The offsets in the extra data file of the other strings of the data files, and the strings read so far.
+	//Each string is read once and then shared by all the objects referring to it.
+	private int[] stringOffsets = RegistryObjectManager.EMPTY_INT_ARRAY;
+	private String[] strings = RegistryObjectManager.EMPTY_STRING_ARRAY;
+
 	//The contributions file
 	static final String CONTRIBUTIONS = ".contributions"; //$NON-NLS-1$
 	File contributionsFile;
@@ -70,15 +82,43 @@ public class TableReader {
 	private ExtensionRegistry registry;
 
 	void setMainDataFile(File main) throws IOException {
+		mainDataMap = mapFile(main);
+		if (mainDataMap != null)
+			return;
 		mainDataFile = new BufferedRandomInputStream(main);
 		mainInput = new DataInputStream(mainDataFile);
 	}
 
 	void setExtraDataFile(File extra) throws IOException {
+		extraDataMap = mapFile(extra);
+		if (extraDataMap != null)
+			return;
 		extraDataFile = new BufferedRandomInputStream(extra);
 		extraInput = new DataInputStream(extraDataFile);
 	}
 
+	// Objects loaded lazily are read from a memory mapping of the file, which unlike the 
+	// buffered stream can be shared by concurrent readers. Returns null if the file can't be mapped.
+	private MappedCacheFile mapFile(File file) {
+		if (!registry.useLazyCacheLoading())
+			return null;
+		try {
+			return new MappedCacheFile(file);
+		} catch (IOException e) {
+			return null; // fall back to buffered reads
+		} catch (LinkageError e) {
+			return null; // java.nio is not available
+		}
+	}
+
+	/**
+	 * Returns whether the objects of the main and extra data files can be loaded
+	 * by several threads at the same time.
+	 */
+	boolean supportsConcurrentLoading() {
+		return mainDataMap != null && extraDataMap != null;
+	}
+
 	void setTableFile(File table) {
 		tableFile = table;
 	}
@@ -117,6 +157,8 @@ public class TableReader {
 			OffsetTable offsets = OffsetTable.load(tableInput);
 			extensionPoints = new HashtableOfStringAndInt();
 			extensionPoints.load(tableInput);
+			loadNames(tableInput);
+			loadStrings(tableInput);
 			return new Object[] {offsets, extensionPoints, nextId};
 		} catch (IOException e) {
 			log(new Status(IStatus.ERROR, RegistryMessages.OWNER_NAME, fileError, RegistryMessages.meta_registryCacheReadProblems, e));
@@ -132,6 +174,30 @@ public class TableReader {
 
 	}
 
+	private void loadNames(DataInputStream in) throws IOException {
+		String[] result = new String[in.readInt()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = in.readUTF().intern();
+		}
+		names = result;
+	}
+
+	// The strings are read when first needed from a mapped extra data file. The buffered stream
+	// is positioned by the object being read, so then all the strings are read up front.
+	private void loadStrings(DataInputStream in) throws IOException {
+		int[] offsets = readArray(in);
+		String[] result = new String[offsets.length];
+		if (extraDataMap == null && offsets.length != 0) {
+			goToExtraFile(offsets[0]); // the strings are saved one after the other
+			for (int i = 0; i < result.length; i++) {
+				result[i] = extraInput.readUTF();
+			}
+			goToExtraFile(0); // readAllCache() reads the file from the start
+		}
+		stringOffsets = offsets;
+		strings = result;
+	}
+
 	//	Check various aspect of the cache to see if it's valid 
 	private boolean checkCacheValidity(DataInputStream in, long expectedTimestamp) {
 		int version;
@@ -163,8 +229,8 @@ public class TableReader {
 			if (!validTime || !validInstall || !validOS || !validWS || !validNL || !validMultiLang)
 				return false;
 
-			boolean validMain = (mainDataFileSize == mainDataFile.length());
-			boolean validExtra = (extraDataFileSize == extraDataFile.length());
+			boolean validMain = (mainDataFileSize == (mainDataMap != null ? mainDataMap.length() : mainDataFile.length()));
+			boolean validExtra = (extraDataFileSize == (extraDataMap != null ? extraDataMap.length() : extraDataFile.length()));
 			boolean validContrib = (contributionsFileSize == contributionsFile.length());
 			boolean validContributors = (contributorsFileSize == contributorsFile.length());
 			boolean validNamespace = (namespacesFileSize == namespacesFile.length());
@@ -179,12 +245,14 @@ public class TableReader {
 
 	public Object loadConfigurationElement(int offset) {
 		try {
+			if (mainDataMap != null)
+				return basicLoadConfigurationElement(mainDataMap.open(offset), null);
 			synchronized (mainDataFile) {
 				goToInputFile(offset);
 				return basicLoadConfigurationElement(mainInput, null);
 			}
 		} catch (IOException e) {
-			String message = NLS.bind(RegistryMessages.meta_regCacheIOExceptionReading, mainDataFile);
+			String message = NLS.bind(RegistryMessages.meta_regCacheIOExceptionReading, getMainDataName());
 			log(new Status(IStatus.ERROR, RegistryMessages.OWNER_NAME, fileError, message, e));
 			if (DEBUG)
 				log(new Status(IStatus.ERROR, RegistryMessages.OWNER_NAME, fileError, "Error reading a configuration element (" + offset + ") from the registry cache", e)); //$NON-NLS-1$//$NON-NLS-2$
@@ -194,8 +262,8 @@ public class TableReader {
 
 	private ConfigurationElement basicLoadConfigurationElement(DataInputStream is, String actualContributorId) throws IOException {
 		int self = is.readInt();
-		String contributorId = readStringOrNull(is);
-		String name = readStringOrNull(is);
+		String contributorId = readString(is);
+		String name = readName(is);
 		int parentId = is.readInt();
 		byte parentType = is.readByte();
 		int misc = is.readInt();//this is set in second level CEs, to indicate where in the extra data file the children CEs are
@@ -228,19 +296,21 @@ public class TableReader {
 			return null;
 		String[] result = new String[size];
 		for (int i = 0; i < size; i++) {
-			result[i] = readStringOrNull(is);
+			result[i] = readString(is);
 		}
 		return result;
 	}
 
 	public Object loadThirdLevelConfigurationElements(int offset, RegistryObjectManager objectManager) {
 		try {
+			if (extraDataMap != null)
+				return loadConfigurationElementAndChildren(null, extraDataMap.open(offset), 3, Integer.MAX_VALUE, objectManager, null);
 			synchronized (extraDataFile) {
 				goToExtraFile(offset);
 				return loadConfigurationElementAndChildren(null, extraInput, 3, Integer.MAX_VALUE, objectManager, null);
 			}
 		} catch (IOException e) {
-			String message = NLS.bind(RegistryMessages.meta_regCacheIOExceptionReading, extraDataFile);
+			String message = NLS.bind(RegistryMessages.meta_regCacheIOExceptionReading, getExtraDataName());
 			log(new Status(IStatus.ERROR, RegistryMessages.OWNER_NAME, fileError, message, e));
 			if (DEBUG)
 				log(new Status(IStatus.ERROR, RegistryMessages.OWNER_NAME, fileError, "Error reading a third level configuration element (" + offset + ") from the registry cache", e)); //$NON-NLS-1$//$NON-NLS-2$
@@ -273,20 +343,35 @@ public class TableReader {
 		if (numberOfProperties == 0)
 			return RegistryObjectManager.EMPTY_STRING_ARRAY;
 		String[] properties = new String[numberOfProperties];
+		int size = numberOfProperties - (numberOfProperties % 2);
 		for (int i = 0; i < numberOfProperties; i++) {
-			properties[i] = readStringOrNull(inputStream);
+			if (i < size && i % 2 == 0)
+				properties[i] = readName(inputStream);
+			else
+				properties[i] = readString(inputStream);
 		}
 		return properties;
 	}
 
+	private String readName(DataInputStream in) throws IOException {
+		int index = in.readInt();
+		if (index == -1)
+			return null;
+		if (index < 0 || index >= names.length)
+			throw new IOException("Invalid name index " + index); //$NON-NLS-1$
+		return names[index];
+	}
+
 	public Object loadExtension(int offset) {
 		try {
+			if (mainDataMap != null)
+				return basicLoadExtension(mainDataMap.open(offset));
 			synchronized (mainDataFile) {
 				goToInputFile(offset);
 				return basicLoadExtension(mainInput);
 			}
 		} catch (IOException e) {
-			String message = NLS.bind(RegistryMessages.meta_regCacheIOExceptionReading, mainDataFile);
+			String message = NLS.bind(RegistryMessages.meta_regCacheIOExceptionReading, getMainDataName());
 			log(new Status(IStatus.ERROR, RegistryMessages.OWNER_NAME, fileError, message, e));
 			if (DEBUG)
 				log(new Status(IStatus.ERROR, RegistryMessages.OWNER_NAME, fileError, "Error reading an extension (" + offset + ") from the registry cache", e)); //$NON-NLS-1$//$NON-NLS-2$
@@ -296,36 +381,23 @@ public class TableReader {
 
 	private Extension basicLoadExtension(DataInputStream inputStream) throws IOException {
 		int self = inputStream.readInt();
-		String simpleId = readStringOrNull(mainInput);
-		String namespace = readStringOrNull(mainInput);
-		int[] children = readArray(mainInput);
-		int extraData = mainInput.readInt();
+		String simpleId = readString(inputStream);
+		String namespace = readString(inputStream);
+		int[] children = readArray(inputStream);
+		int extraData = inputStream.readInt();
 		return getObjectFactory().createExtension(self, simpleId, namespace, children, extraData, true);
 	}
 
 	public ExtensionPoint loadExtensionPointTree(int offset, RegistryObjectManager objects) {
 		try {
+			if (mainDataMap != null)
+				return basicLoadExtensionPointTree(mainDataMap.open(offset), objects);
 			synchronized (mainDataFile) {
-				ExtensionPoint xpt = (ExtensionPoint) loadExtensionPoint(offset);
-				int[] children = xpt.getRawChildren();
-				int nbrOfExtension = children.length;
-				for (int i = 0; i < nbrOfExtension; i++) {
-					Extension loaded = basicLoadExtension(mainInput);
-					objects.add(loaded, holdObjects);
-				}
-
-				for (int i = 0; i < nbrOfExtension; i++) {
-					int nbrOfCe = mainInput.readInt();
-					for (int j = 0; j < nbrOfCe; j++) {
-						// note that max depth is set to 2 and extra input is never going to 
-						// be used in this call to the loadConfigurationElementAndChildren().
-						objects.add(loadConfigurationElementAndChildren(mainInput, null, 1, 2, objects, null), holdObjects);
-					}
-				}
-				return xpt;
+				goToInputFile(offset);
+				return basicLoadExtensionPointTree(mainInput, objects);
 			}
 		} catch (IOException e) {
-			String message = NLS.bind(RegistryMessages.meta_regCacheIOExceptionReading, mainDataFile);
+			String message = NLS.bind(RegistryMessages.meta_regCacheIOExceptionReading, getMainDataName());
 			log(new Status(IStatus.ERROR, RegistryMessages.OWNER_NAME, fileError, message, e));
 			if (DEBUG)
 				log(new Status(IStatus.ERROR, RegistryMessages.OWNER_NAME, fileError, "Error reading an extension point tree (" + offset + ") from the registry cache", e)); //$NON-NLS-1$//$NON-NLS-2$
@@ -333,23 +405,30 @@ public class TableReader {
 		}
 	}
 
-	private Object loadExtensionPoint(int offset) {
-		try {
-			goToInputFile(offset);
-			return basicLoadExtensionPoint();
-		} catch (IOException e) {
-			String message = NLS.bind(RegistryMessages.meta_regCacheIOExceptionReading, mainDataFile);
-			log(new Status(IStatus.ERROR, RegistryMessages.OWNER_NAME, fileError, message, e));
-			if (DEBUG)
-				log(new Status(IStatus.ERROR, RegistryMessages.OWNER_NAME, fileError, "Error reading an extension point (" + offset + ") from the registry cache", e)); //$NON-NLS-1$ //$NON-NLS-2$
-			return null;
+	private ExtensionPoint basicLoadExtensionPointTree(DataInputStream inputStream, RegistryObjectManager objects) throws IOException {
+		ExtensionPoint xpt = basicLoadExtensionPoint(inputStream);
+		int[] children = xpt.getRawChildren();
+		int nbrOfExtension = children.length;
+		for (int i = 0; i < nbrOfExtension; i++) {
+			Extension loaded = basicLoadExtension(inputStream);
+			objects.add(loaded, holdObjects);
 		}
+
+		for (int i = 0; i < nbrOfExtension; i++) {
+			int nbrOfCe = inputStream.readInt();
+			for (int j = 0; j < nbrOfCe; j++) {
+				// note that max depth is set to 2 and extra input is never going to 
+				// be used in this call to the loadConfigurationElementAndChildren().
+				objects.add(loadConfigurationElementAndChildren(inputStream, null, 1, 2, objects, null), holdObjects);
+			}
+		}
+		return xpt;
 	}
 
-	private ExtensionPoint basicLoadExtensionPoint() throws IOException {
-		int self = mainInput.readInt();
-		int[] children = readArray(mainInput);
-		int extraData = mainInput.readInt();
+	private ExtensionPoint basicLoadExtensionPoint(DataInputStream inputStream) throws IOException {
+		int self = inputStream.readInt();
+		int[] children = readArray(inputStream);
+		int extraData = inputStream.readInt();
 		return getObjectFactory().createExtensionPoint(self, children, extraData, true);
 	}
 
@@ -364,6 +443,14 @@ public class TableReader {
 		return result;
 	}
 
+	private String getMainDataName() {
+		return String.valueOf(mainDataMap != null ? (Object) mainDataMap : mainDataFile);
+	}
+
+	private String getExtraDataName() {
+		return String.valueOf(extraDataMap != null ? (Object) extraDataMap : extraDataFile);
+	}
+
 	private void goToInputFile(int offset) throws IOException {
 		mainDataFile.seek(offset);
 	}
@@ -372,6 +459,21 @@ public class TableReader {
 		extraDataFile.seek(offset);
 	}
 
+	private String readString(DataInputStream in) throws IOException {
+		int index = in.readInt();
+		if (index == -1)
+			return null;
+		if (index < 0 || index >= strings.length)
+			throw new IOException("Invalid string index " + index); //$NON-NLS-1$
+		String result = strings[index];
+		if (result == null) {
+			// several threads may read the same string; either copy can be kept
+			result = extraDataMap.open(stringOffsets[index]).readUTF();
+			strings[index] = result;
+		}
+		return result;
+	}
+
 	private String readStringOrNull(DataInputStream in) throws IOException {
 		byte type = in.readByte();
 		if (type == NULL)
@@ -381,12 +483,14 @@ public class TableReader {
 
 	public String[] loadExtensionExtraData(int dataPosition) {
 		try {
+			if (extraDataMap != null)
+				return basicLoadExtensionExtraData(extraDataMap.open(dataPosition));
 			synchronized (extraDataFile) {
 				goToExtraFile(dataPosition);
-				return basicLoadExtensionExtraData();
+				return basicLoadExtensionExtraData(extraInput);
 			}
 		} catch (IOException e) {
-			String message = NLS.bind(RegistryMessages.meta_regCacheIOExceptionReading, extraDataFile);
+			String message = NLS.bind(RegistryMessages.meta_regCacheIOExceptionReading, getExtraDataName());
 			log(new Status(IStatus.ERROR, RegistryMessages.OWNER_NAME, fileError, message, e));
 			if (DEBUG)
 				log(new Status(IStatus.ERROR, RegistryMessages.OWNER_NAME, fileError, "Error reading extension label (" + dataPosition + ") from the registry cache", e)); //$NON-NLS-1$ //$NON-NLS-2$
@@ -394,18 +498,20 @@ public class TableReader {
 		}
 	}
 
-	private String[] basicLoadExtensionExtraData() throws IOException {
-		return new String[] {readStringOrNull(extraInput), readStringOrNull(extraInput), readStringOrNull(extraInput)};
+	private String[] basicLoadExtensionExtraData(DataInputStream inputStream) throws IOException {
+		return new String[] {readString(inputStream), readString(inputStream), readString(inputStream)};
 	}
 
 	public String[] loadExtensionPointExtraData(int offset) {
 		try {
+			if (extraDataMap != null)
+				return basicLoadExtensionPointExtraData(extraDataMap.open(offset));
 			synchronized (extraDataFile) {
 				goToExtraFile(offset);
-				return basicLoadExtensionPointExtraData();
+				return basicLoadExtensionPointExtraData(extraInput);
 			}
 		} catch (IOException e) {
-			String message = NLS.bind(RegistryMessages.meta_regCacheIOExceptionReading, extraDataFile);
+			String message = NLS.bind(RegistryMessages.meta_regCacheIOExceptionReading, getExtraDataName());
 			log(new Status(IStatus.ERROR, RegistryMessages.OWNER_NAME, fileError, message, e));
 			if (DEBUG)
 				log(new Status(IStatus.ERROR, RegistryMessages.OWNER_NAME, fileError, "Error reading extension point data (" + offset + ") from the registry cache", e)); //$NON-NLS-1$ //$NON-NLS-2$
@@ -413,13 +519,13 @@ public class TableReader {
 		}
 	}
 
-	private String[] basicLoadExtensionPointExtraData() throws IOException {
+	private String[] basicLoadExtensionPointExtraData(DataInputStream inputStream) throws IOException {
 		String[] result = new String[5];
-		result[0] = readStringOrNull(extraInput); //the label
-		result[1] = readStringOrNull(extraInput); //the schema
-		result[2] = readStringOrNull(extraInput); //the fully qualified name
-		result[3] = readStringOrNull(extraInput); //the namespace
-		result[4] = readStringOrNull(extraInput); //the contributor Id 
+		result[0] = readString(inputStream); //the label
+		result[1] = readString(inputStream); //the schema
+		result[2] = readString(inputStream); //the fully qualified name
+		result[3] = readString(inputStream); //the namespace
+		result[4] = readString(inputStream); //the contributor Id 
 		return result;
 	}
 
@@ -541,7 +647,7 @@ public class TableReader {
 			}
 			loadAllOrphans(objectManager);
 		} catch (IOException e) {
-			String message = NLS.bind(RegistryMessages.meta_regCacheIOExceptionReading, mainDataFile);
+			String message = NLS.bind(RegistryMessages.meta_regCacheIOExceptionReading, getMainDataName());
 			log(new Status(IStatus.ERROR, RegistryMessages.OWNER_NAME, fileError, message, e));
 			return false;
 		}
@@ -566,8 +672,8 @@ public class TableReader {
 	}
 
 	private ExtensionPoint loadFullExtensionPoint() throws IOException { //TODO I don't like this. 
-		ExtensionPoint xpt = basicLoadExtensionPoint();
-		String[] tmp = basicLoadExtensionPointExtraData();
+		ExtensionPoint xpt = basicLoadExtensionPoint(mainInput);
+		String[] tmp = basicLoadExtensionPointExtraData(extraInput);
 		xpt.setLabel(tmp[0]);
 		xpt.setSchema(tmp[1]);
 		xpt.setUniqueIdentifier(tmp[2]);
@@ -579,7 +685,7 @@ public class TableReader {
 	private Extension loadFullExtension(RegistryObjectManager objectManager) throws IOException {
 		String[] tmp;
 		Extension loaded = basicLoadExtension(mainInput);
-		tmp = basicLoadExtensionExtraData();
+		tmp = basicLoadExtensionExtraData(extraInput);
 		loaded.setLabel(tmp[0]);
 		loaded.setExtensionPointIdentifier(tmp[1]);
 		loaded.setContributorId(tmp[2]);
@@ -626,12 +732,35 @@ public class TableReader {
 		return registry.getElementFactory();
 	}
 
+	/**
+	 * Records the strings read from the cache files into the given statistics.
+	 */
+	void collectStatistics(RegistryStatistics statistics) {
+		String[] names = this.names;
+		String[] strings = this.strings;
+		statistics.strings = names.length + strings.length;
+		statistics.loadedStrings = names.length;
+		for (int i = 0; i < names.length; i++)
+			statistics.stringBytes += RegistryStatistics.sizeOf(names[i]);
+		for (int i = 0; i < strings.length; i++) {
+			String string = strings[i];
+			if (string != null) {
+				statistics.loadedStrings++;
+				statistics.stringBytes += RegistryStatistics.sizeOf(string);
+			}
+		}
+	}
+
 	// Returns a file name used to test if cache is actually present at a given location
 	public static String getTestFileName() {
 		return TABLE;
 	}
 
 	public void close() {
+		if (mainDataMap != null)
+			mainDataMap.close();
+		if (extraDataMap != null)
+			extraDataMap.close();
 		try {
 			if (mainInput != null)
 				mainInput.close();
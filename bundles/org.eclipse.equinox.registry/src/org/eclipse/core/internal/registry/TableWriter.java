@@ -61,9 +61,22 @@ public class TableWriter {
 
 	private OffsetTable offsets;
 
+	//Names of configuration elements and of their properties, saved once in the table file
+	private HashtableOfStringAndInt nameIndexes;
+	private ArrayList names;
+
+	//The other strings of the main and extra data files, saved once at the end of the extra data file
+	private HashtableOfStringAndInt stringIndexes;
+	private ArrayList strings;
+	private int[] stringOffsets;
+
 	private ExtensionRegistry registry;
 	private RegistryObjectManager objectManager;
 
+	// Taken together with the extension points to write, see saveExtensionRegistry()
+	private int nextId;
+	private HashtableOfStringAndInt extensionPoints;
+
 	public TableWriter(ExtensionRegistry registry) {
 		this.registry = registry;
 	}
@@ -137,15 +150,29 @@ public class TableWriter {
 	}
 
 	private void saveExtensionRegistry(long timestamp) throws IOException {
-		ExtensionPointHandle[] points = objectManager.getExtensionPointsHandles();
-		offsets = new OffsetTable(objectManager.getNextId());
+		ExtensionPointHandle[] points;
+		HashMap contributors;
+		// The parser adds objects without holding the registry lock, so take the tables
+		// to write in one go; objects added meanwhile are left for the next save.
+		synchronized (objectManager) {
+			points = objectManager.getExtensionPointsHandles();
+			nextId = objectManager.getNextId();
+			extensionPoints = (HashtableOfStringAndInt) objectManager.getExtensionPoints().clone();
+			contributors = new HashMap(objectManager.getContributors());
+		}
+		offsets = new OffsetTable(nextId);
+		nameIndexes = new HashtableOfStringAndInt();
+		names = new ArrayList();
+		stringIndexes = new HashtableOfStringAndInt();
+		strings = new ArrayList();
 		for (int i = 0; i < points.length; i++) {
 			saveExtensionPoint(points[i]);
 		}
 		saveOrphans();
 		saveContributions(objectManager.getContributions());
-		saveContributors(objectManager.getContributors());
+		saveContributors(contributors);
 		saveNamespaces(objectManager.getNamespacesIndex());
+		saveStrings();
 		closeFiles(); //Close the files here so we can write the appropriate size information in the table file.
 		saveTables(timestamp); //Write the table last so if that is something went wrong we can know
 	}
@@ -254,9 +281,14 @@ public class TableWriter {
 		FileOutputStream fosTable = new FileOutputStream(tableFile);
 		DataOutputStream outputTable = new DataOutputStream(new BufferedOutputStream(fosTable));
 		writeCacheHeader(outputTable, registryTimeStamp);
-		outputTable.writeInt(objectManager.getNextId());
+		outputTable.writeInt(nextId);
 		offsets.save(outputTable);
-		objectManager.getExtensionPoints().save(outputTable, objectManager); // uses writer to filter contents
+		extensionPoints.save(outputTable, objectManager); // uses writer to filter contents
+		outputTable.writeInt(names.size());
+		for (int i = 0; i < names.size(); i++) {
+			outputTable.writeUTF((String) names.get(i));
+		}
+		saveArray(stringOffsets, outputTable);
 		outputTable.flush();
 		fosTable.getFD().sync();
 		outputTable.close();
@@ -308,8 +340,8 @@ public class TableWriter {
 			return;
 		offsets.put(ext.getId(), outputStream.size());
 		outputStream.writeInt(ext.getId());
-		writeStringOrNull(ext.getSimpleIdentifier(), outputStream);
-		writeStringOrNull(ext.getNamespaceIdentifier(), outputStream);
+		writeString(ext.getSimpleIdentifier(), outputStream);
+		writeString(ext.getNamespaceIdentifier(), outputStream);
 		saveArray(filter(ext.getObject().getRawChildren()), outputStream);
 		outputStream.writeInt(getExtraDataPosition());
 		saveExtensionData(ext);
@@ -318,7 +350,7 @@ public class TableWriter {
 	private void writeStringArray(String[] array, DataOutputStream outputStream) throws IOException {
 		outputStream.writeInt(array == null ? 0 : array.length);
 		for (int i = 0; i < (array == null ? 0 : array.length); i++) {
-			writeStringOrNull(array[i], outputStream);
+			writeString(array[i], outputStream);
 		}
 	}
 
@@ -327,10 +359,36 @@ public class TableWriter {
 		if (array == null)
 			return;
 		for (int i = 0; i < size; i++) {
-			writeStringOrNull(array[i], outputStream);
+			writeString(array[i], outputStream);
 		}
 	}
 
+	//The property names are written as indexes in the name table, the values as strings
+	private void writePropertiesAndValue(String[] propertiesAndValue, DataOutputStream outputStream) throws IOException {
+		outputStream.writeInt(propertiesAndValue.length);
+		int size = propertiesAndValue.length - (propertiesAndValue.length % 2);
+		for (int i = 0; i < propertiesAndValue.length; i++) {
+			if (i < size && i % 2 == 0)
+				writeName(propertiesAndValue[i], outputStream);
+			else
+				writeString(propertiesAndValue[i], outputStream);
+		}
+	}
+
+	private void writeName(String name, DataOutputStream outputStream) throws IOException {
+		if (name == null) {
+			outputStream.writeInt(-1);
+			return;
+		}
+		int index = nameIndexes.get(name);
+		if (index == HashtableOfStringAndInt.MISSING_ELEMENT) {
+			index = names.size();
+			names.add(name);
+			nameIndexes.put(name, index);
+		}
+		outputStream.writeInt(index);
+	}
+
 	//Save Configuration elements depth first
 	private void saveConfigurationElement(ConfigurationElementHandle element, DataOutputStream outputStream, DataOutputStream extraOutputStream, int depth) throws IOException {
 		if (!element.shouldPersist())
@@ -344,12 +402,12 @@ public class TableWriter {
 		currentOutput.writeInt(element.getId());
 		ConfigurationElement actualCe = (ConfigurationElement) element.getObject();
 
-		writeStringOrNull(actualCe.getContributorId(), currentOutput);
-		writeStringOrNull(actualCe.getName(), currentOutput);
+		writeString(actualCe.getContributorId(), currentOutput);
+		writeName(actualCe.getName(), currentOutput);
 		currentOutput.writeInt(actualCe.parentId);
 		currentOutput.writeByte(actualCe.parentType);
 		currentOutput.writeInt(depth > 1 ? extraOutputStream.size() : -1);
-		writeStringArray(actualCe.getPropertiesAndValue(), currentOutput);
+		writePropertiesAndValue(actualCe.getPropertiesAndValue(), currentOutput);
 		//save the children
 		saveArray(filter(actualCe.getRawChildren()), currentOutput);
 
@@ -400,17 +458,40 @@ public class TableWriter {
 	}
 
 	private void saveExtensionPointData(ExtensionPointHandle xpt) throws IOException {
-		writeStringOrNull(xpt.getLabelAsIs(), extraOutput);
-		writeStringOrNull(xpt.getSchemaReference(), extraOutput);
-		writeStringOrNull(xpt.getUniqueIdentifier(), extraOutput);
-		writeStringOrNull(xpt.getNamespaceIdentifier(), extraOutput);
-		writeStringOrNull(((ExtensionPoint) xpt.getObject()).getContributorId(), extraOutput);
+		writeString(xpt.getLabelAsIs(), extraOutput);
+		writeString(xpt.getSchemaReference(), extraOutput);
+		writeString(xpt.getUniqueIdentifier(), extraOutput);
+		writeString(xpt.getNamespaceIdentifier(), extraOutput);
+		writeString(((ExtensionPoint) xpt.getObject()).getContributorId(), extraOutput);
 	}
 
 	private void saveExtensionData(ExtensionHandle extension) throws IOException {
-		writeStringOrNull(extension.getLabelAsIs(), extraOutput);
-		writeStringOrNull(extension.getExtensionPointUniqueIdentifier(), extraOutput);
-		writeStringOrNull(extension.getContributorId(), extraOutput);
+		writeString(extension.getLabelAsIs(), extraOutput);
+		writeString(extension.getExtensionPointUniqueIdentifier(), extraOutput);
+		writeString(extension.getContributorId(), extraOutput);
+	}
+
+	//Strings of the main and extra data files are written as indexes in the string table
+	private void writeString(String string, DataOutputStream out) throws IOException {
+		if (string == null) {
+			out.writeInt(-1);
+			return;
+		}
+		int index = stringIndexes.get(string);
+		if (index == HashtableOfStringAndInt.MISSING_ELEMENT) {
+			index = strings.size();
+			strings.add(string);
+			stringIndexes.put(string, index);
+		}
+		out.writeInt(index);
+	}
+
+	private void saveStrings() throws IOException {
+		stringOffsets = new int[strings.size()];
+		for (int i = 0; i < stringOffsets.length; i++) {
+			stringOffsets[i] = extraOutput.size();
+			extraOutput.writeUTF((String) strings.get(i));
+		}
 	}
 
 	private void writeStringOrNull(String string, DataOutputStream out) throws IOException {
@@ -10,6 +10,7 @@
  *******************************************************************************/
 package org.eclipse.core.internal.registry;
 
+import java.util.HashMap;
 import java.util.Map;
 import org.eclipse.core.runtime.InvalidRegistryObjectException;
 
@@ -131,6 +132,17 @@ public class TemporaryObjectManager implements IObjectManager {
 		return results;
 	}
 
+	/**
+	 * Makes the objects of the given manager available through this one as well.
+	 */
+	public synchronized void addObjects(TemporaryObjectManager manager) {
+		if (manager.actualObjects == null)
+			return;
+		if (actualObjects == null)
+			actualObjects = new HashMap(manager.actualObjects.size());
+		actualObjects.putAll(manager.actualObjects);
+	}
+
 	public synchronized void close() {
 		actualObjects = null;
 	}
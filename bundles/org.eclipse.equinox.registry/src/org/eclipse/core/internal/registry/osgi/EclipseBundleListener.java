@@ -13,8 +13,8 @@ package org.eclipse.core.internal.registry.osgi;
 import java.io.*;
 import java.net.URL;
 import java.util.*;
-import org.eclipse.core.internal.registry.ExtensionRegistry;
-import org.eclipse.core.internal.registry.RegistryMessages;
+import javax.xml.parsers.SAXParserFactory;
+import org.eclipse.core.internal.registry.*;
 import org.eclipse.core.internal.runtime.ResourceTranslator;
 import org.eclipse.core.internal.runtime.RuntimeLog;
 import org.eclipse.core.runtime.*;
@@ -34,6 +34,7 @@ import org.osgi.framework.*;
 public class EclipseBundleListener implements SynchronousBundleListener {
 	private static final String PLUGIN_MANIFEST = "plugin.xml"; //$NON-NLS-1$
 	private static final String FRAGMENT_MANIFEST = "fragment.xml"; //$NON-NLS-1$	
+	private static final int DEFAULT_MAX_PARSER_THREADS = 4;
 
 	private ExtensionRegistry registry;
 	private RegistryStrategyOSGI strategy;
@@ -79,18 +80,60 @@ public class EclipseBundleListener implements SynchronousBundleListener {
 				addBundle(bundle, true);
 				break;
 			case BundleEvent.UNRESOLVED :
+				strategy.bundleUnresolved(bundle);
 				removeBundle(bundle);
 				break;
 		}
 	}
 
 	public void processBundles(Bundle[] bundles) {
+		ManifestRecorder recorder = startRecorder(bundles);
+		try {
+			for (int i = 0; i < bundles.length; i++) {
+				ManifestRecording recording = (recorder == null) ? null : recorder.take(i);
+				if (isBundleResolved(bundles[i]))
+					addBundle(bundles[i], false, recording);
+				else
+					removeBundle(bundles[i]);
+			}
+		} finally {
+			if (recorder != null)
+				recorder.stop();
+		}
+	}
+
+	/*
+	 * Starts parsing the manifests of the resolved bundles on worker threads, or returns null 
+	 * if the bundles should be processed on the calling thread alone. The bundles are still 
+	 * added in their original order, so object identifiers and events do not change.
+	 */
+	private ManifestRecorder startRecorder(Bundle[] bundles) {
+		int threads = getParserThreads();
+		if (threads <= 1 || bundles.length <= 1)
+			return null;
+		SAXParserFactory factory = strategy.getXMLParser();
+		if (factory == null)
+			return null;
+		URL[] manifests = new URL[bundles.length];
 		for (int i = 0; i < bundles.length; i++) {
 			if (isBundleResolved(bundles[i]))
-				addBundle(bundles[i], false);
-			else
-				removeBundle(bundles[i]);
+				manifests[i] = getExtensionURL(bundles[i], false);
+		}
+		ManifestRecorder recorder = new ManifestRecorder(manifests, factory);
+		recorder.start(Math.min(threads, bundles.length));
+		return recorder;
+	}
+
+	private static int getParserThreads() {
+		String value = RegistryProperties.getProperty(IRegistryConstants.PROP_PARSER_THREADS);
+		if (value != null) {
+			try {
+				return Integer.parseInt(value);
+			} catch (NumberFormatException e) {
+				// use the default
+			}
 		}
+		return Math.min(Runtime.getRuntime().availableProcessors(), DEFAULT_MAX_PARSER_THREADS);
 	}
 
 	private boolean isBundleResolved(Bundle bundle) {
@@ -150,6 +193,10 @@ public class EclipseBundleListener implements SynchronousBundleListener {
 	}
 
 	private void addBundle(Bundle bundle, boolean checkNLSFragments) {
+		addBundle(bundle, checkNLSFragments, null);
+	}
+
+	private void addBundle(Bundle bundle, boolean checkNLSFragments, ManifestRecording recording) {
 		if (checkNLSFragments)
 			checkForNLSFragment(bundle);
 		// if the given bundle already exists in the registry then return.
@@ -160,14 +207,16 @@ public class EclipseBundleListener implements SynchronousBundleListener {
 		URL pluginManifest = getExtensionURL(bundle, true);
 		if (pluginManifest == null)
 			return;
-		InputStream is;
-		try {
-			is = new BufferedInputStream(pluginManifest.openStream());
-		} catch (IOException ex) {
-			is = null;
+		InputStream is = null;
+		if (recording == null) {
+			try {
+				is = new BufferedInputStream(pluginManifest.openStream());
+			} catch (IOException ex) {
+				is = null;
+			}
+			if (is == null)
+				return;
 		}
-		if (is == null)
-			return;
 
 		ResourceBundle translationBundle = null;
 		try {
@@ -178,7 +227,10 @@ public class EclipseBundleListener implements SynchronousBundleListener {
 		long timestamp = 0;
 		if (strategy.checkContributionsTimestamp())
 			timestamp = strategy.getExtendedTimestamp(bundle, pluginManifest);
-		registry.addContribution(is, contributor, true, pluginManifest.getPath(), translationBundle, token, timestamp);
+		if (recording != null)
+			registry.addContribution(recording, contributor, true, pluginManifest.getPath(), translationBundle, token, timestamp);
+		else
+			registry.addContribution(is, contributor, true, pluginManifest.getPath(), translationBundle, token, timestamp);
 	}
 
 	private void checkForNLSFragment(Bundle bundle) {
@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.internal.registry.osgi;
+
+import java.io.*;
+import java.net.URL;
+import javax.xml.parsers.SAXParserFactory;
+import org.eclipse.core.internal.registry.ManifestRecording;
+import org.xml.sax.InputSource;
+
+/**
+ * Parses a list of extension manifests on a few worker threads ahead of the thread that
+ * adds them to the registry.
+ * <p>
+ * The workers take the manifests in list order and stop at most {@link #WINDOW} manifests
+ * ahead of the consumer, which bounds the memory held by parsed manifests waiting to be
+ * added. The consumer calls {@link #take(int)} for every index in order; a manifest that
+ * could not be read yields <code>null</code> and is left to the regular code path.
+ * </p>
+ */
+public class ManifestRecorder implements Runnable {
+	private static final int WINDOW = 64;
+
+	private URL[] manifests;
+	private ManifestRecording[] recordings;
+	private boolean[] done;
+	private SAXParserFactory factory;
+	private int next = 0; // the next manifest to record
+	private int consumed = 0; // the manifests before this one were taken
+	private boolean stopped = false;
+
+	/**
+	 * @param manifests the manifests to parse; <code>null</code> entries are skipped
+	 * @param factory the parser factory
+	 */
+	public ManifestRecorder(URL[] manifests, SAXParserFactory factory) {
+		this.manifests = manifests;
+		this.factory = factory;
+		recordings = new ManifestRecording[manifests.length];
+		done = new boolean[manifests.length];
+	}
+
+	/**
+	 * Starts the given number of worker threads.
+	 *
+	 * @param threads the number of threads
+	 */
+	public void start(int threads) {
+		for (int i = 0; i < threads; i++) {
+			Thread worker = new Thread(this, "Registry manifest parser " + i); //$NON-NLS-1$
+			worker.setDaemon(true);
+			worker.start();
+		}
+	}
+
+	/**
+	 * Stops the worker threads. Manifests not taken yet are dropped.
+	 */
+	public synchronized void stop() {
+		stopped = true;
+		recordings = new ManifestRecording[0];
+		notifyAll();
+	}
+
+	/**
+	 * Waits until the manifest at the given index is parsed and returns it. The indexes
+	 * must be taken in ascending order.
+	 *
+	 * @param index the index of the manifest
+	 * @return the parsed manifest or <code>null</code> if there is none
+	 */
+	public synchronized ManifestRecording take(int index) {
+		boolean interrupted = false;
+		while (!done[index] && !stopped) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+		if (stopped)
+			return null;
+		ManifestRecording result = recordings[index];
+		recordings[index] = null;
+		consumed = index + 1;
+		notifyAll();
+		return result;
+	}
+
+	public void run() {
+		while (true) {
+			int index;
+			synchronized (this) {
+				while (!stopped && next < manifests.length && next >= consumed + WINDOW) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						// only stop() ends the workers; the consumer may be waiting for them
+					}
+				}
+				if (stopped || next >= manifests.length)
+					return;
+				index = next++;
+			}
+			ManifestRecording recording = null;
+			try {
+				recording = record(manifests[index]);
+			} catch (RuntimeException e) {
+				// leave the manifest to the regular code path, which reports the problem
+			} finally {
+				synchronized (this) {
+					if (!stopped)
+						recordings[index] = recording;
+					done[index] = true;
+					notifyAll();
+				}
+			}
+		}
+	}
+
+	private ManifestRecording record(URL manifest) {
+		if (manifest == null)
+			return null;
+		InputStream is;
+		try {
+			is = new BufferedInputStream(manifest.openStream());
+		} catch (IOException ex) {
+			return null;
+		}
+		try {
+			ManifestRecording recording = new ManifestRecording();
+			recording.record(factory, new InputSource(is));
+			return recording;
+		} finally {
+			try {
+				is.close();
+			} catch (IOException ioe) {
+				// nothing to do
+			}
+		}
+	}
+}
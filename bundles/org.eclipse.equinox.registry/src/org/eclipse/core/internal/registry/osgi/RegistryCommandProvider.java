@@ -12,6 +12,8 @@
 
 package org.eclipse.core.internal.registry.osgi;
 
+import org.eclipse.core.internal.registry.ExtensionRegistry;
+import org.eclipse.core.internal.registry.RegistryStatistics;
 import org.eclipse.core.runtime.*;
 import org.eclipse.osgi.framework.console.CommandInterpreter;
 import org.eclipse.osgi.framework.console.CommandProvider;
@@ -47,6 +49,10 @@ public class RegistryCommandProvider implements CommandProvider {
 			sb.append("\tpt [-v] uniqueExtensionPointId - display the extension point and extensions; add -v to display config elements"); //$NON-NLS-1$
 			sb.append(NEW_LINE);
 		}
+		if (all || "regstats".equals(commandName)) { //$NON-NLS-1$
+			sb.append("\tregstats [-v] - display the estimated memory and the object cache activity of the registry; add -v to display the memory by contributor"); //$NON-NLS-1$
+			sb.append(NEW_LINE);
+		}
 		return sb.toString();
 	}
 
@@ -100,6 +106,37 @@ public class RegistryCommandProvider implements CommandProvider {
 		}
 	}
 
+	public void _regstats(CommandInterpreter ci) throws Exception {
+		verbose = "-v".equals(ci.nextArgument()); //$NON-NLS-1$
+		IExtensionRegistry registry = RegistryFactory.getRegistry();
+		if (!(registry instanceof ExtensionRegistry)) {
+			ci.println("No registry statistics available"); //$NON-NLS-1$
+			return;
+		}
+		RegistryStatistics stats = ((ExtensionRegistry) registry).getStatistics();
+		ci.println("Registry memory (estimated): " + stats.getTotalBytes() + " bytes"); //$NON-NLS-1$ //$NON-NLS-2$
+		ci.println("-------------------"); //$NON-NLS-1$
+		ci.println("Objects in memory (" + (stats.isSoftCache() ? "soft" : "hard") + " references):"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+		displayObjects(ci, "configuration elements", stats, RegistryStatistics.CONFIGURATION_ELEMENT); //$NON-NLS-1$
+		displayObjects(ci, "extensions", stats, RegistryStatistics.EXTENSION); //$NON-NLS-1$
+		displayObjects(ci, "extension points", stats, RegistryStatistics.EXTENSION_POINT); //$NON-NLS-1$
+		ci.println(indent + "held: " + stats.getHeldObjectCount()); //$NON-NLS-1$
+		ci.println("Object cache: " + stats.getCacheHits() + " hits, " + stats.getCacheMisses() + " misses, " + stats.getReclaimedObjectCount() + " reclaimed, " + stats.getDiskReads() + " read from disk"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+		ci.println("Cache file strings: " + stats.getLoadedStringCount() + " of " + stats.getStringCount() + " in memory, " + stats.getStringBytes() + " bytes"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+		ci.println("Contributions: " + stats.getContributionCount() + ", contributors: " + stats.getContributorCount() + ", namespaces: " + stats.getNamespaceCount()); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		ci.println("Extension points: " + stats.getExtensionPointCount() + ", orphan extensions: " + stats.getOrphanExtensionCount()); //$NON-NLS-1$ //$NON-NLS-2$
+
+		if (verbose) {
+			ci.println("\nContributor(s) by estimated memory:"); //$NON-NLS-1$
+			ci.println("-------------------"); //$NON-NLS-1$
+			String[] contributorIds = stats.getContributorIds();
+			for (int i = 0; i < contributorIds.length; i++) {
+				String name = stats.getContributorName(contributorIds[i]);
+				ci.println((name == null ? contributorIds[i] : name) + " [" + contributorIds[i] + "]: " + stats.getContributorObjectCount(contributorIds[i]) + " objects, " + stats.getContributorBytes(contributorIds[i]) + " bytes"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+			}
+		}
+	}
+
 	/**
 	 * Handles the help command
 	 * 
@@ -132,6 +169,10 @@ public class RegistryCommandProvider implements CommandProvider {
 		return firstParm;
 	}
 
+	private void displayObjects(CommandInterpreter ci, String title, RegistryStatistics stats, int type) {
+		ci.println(indent + title + ": " + stats.getObjectCount(type) + ", " + stats.getObjectBytes(type) + " bytes"); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
 	private void displayExtensionPoint(IExtensionPoint extentionPoint, CommandInterpreter ci) {
 		if (extentionPoint == null)
 			return;
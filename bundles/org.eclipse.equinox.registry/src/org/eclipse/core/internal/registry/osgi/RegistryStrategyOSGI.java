@@ -12,9 +12,10 @@ package org.eclipse.core.internal.registry.osgi;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
 import java.net.URL;
-import java.util.Locale;
-import java.util.ResourceBundle;
+import java.util.*;
 import javax.xml.parsers.SAXParserFactory;
 import org.eclipse.core.internal.registry.*;
 import org.eclipse.core.internal.runtime.ResourceTranslator;
@@ -155,6 +156,24 @@ public class RegistryStrategyOSGI extends RegistryStrategy {
 	/////////////////////////////////////////////////////////////////////////////////////
 	// Executable extensions: bundle-based class loading
 
+	/**
+	 * For performance, we cache the public no-argument constructors of the executable
+	 * extension classes, by contributing bundle ID and class name. The constructors of
+	 * a bundle are dropped when it is unresolved, as its class loader is then discarded.
+	 */
+	private final Map constructorCache = new HashMap();
+
+	/**
+	 * The number of times a bundle was unresolved, by bundle ID. A constructor is only
+	 * cached if the bundle was not unresolved since its class was loaded; otherwise it
+	 * may come from a discarded class loader.
+	 */
+	private final Map unresolvedCounts = new HashMap();
+
+	private static final Object[] NO_ARGUMENTS = new Object[0];
+
+	private static final int RESOLVED_STATES = Bundle.RESOLVED | Bundle.STARTING | Bundle.ACTIVE | Bundle.STOPPING;
+
 	/* (non-Javadoc)
 	 * @see org.eclipse.core.runtime.spi.RegistryStrategy#createExecutableExtension(org.eclipse.core.runtime.spi.RegistryContributor, java.lang.String, java.lang.String)
 	 */
@@ -168,6 +187,13 @@ public class RegistryStrategyOSGI extends RegistryStrategy {
 		if (contributingBundle == null)
 			throwException(NLS.bind(RegistryMessages.plugin_loadClassError, "UNKNOWN BUNDLE", className), new InvalidRegistryObjectException()); //$NON-NLS-1$ 
 
+		Constructor constructor = getCachedConstructor(contributingBundle, className);
+		if (constructor != null)
+			return newInstance(constructor, contributingBundle, className);
+
+		// read before loading the class, so that a refresh while loading is noticed
+		int generation = getGeneration(contributingBundle);
+
 		// load the requested class from this bundle
 		Class classInstance = null;
 		try {
@@ -178,6 +204,19 @@ public class RegistryStrategyOSGI extends RegistryStrategy {
 			throwException(NLS.bind(RegistryMessages.plugin_loadClassError, contributingBundle.getSymbolicName(), className), e);
 		}
 
+		try {
+			constructor = classInstance.getConstructor(new Class[0]);
+		} catch (Exception e) {
+			// no public constructor; let Class.newInstance() report the problem
+		} catch (LinkageError e) {
+			// let Class.newInstance() report the problem
+		}
+		if (constructor != null) {
+			Object result = newInstance(constructor, contributingBundle, className);
+			cacheConstructor(contributingBundle, className, constructor, generation);
+			return result;
+		}
+
 		// create a new instance
 		Object result = null;
 		try {
@@ -190,6 +229,67 @@ public class RegistryStrategyOSGI extends RegistryStrategy {
 		return result;
 	}
 
+	// Same as Class.newInstance(), which reports the exceptions thrown by the constructor as they are
+	private Object newInstance(Constructor constructor, Bundle contributingBundle, String className) throws CoreException {
+		Object result = null;
+		try {
+			result = constructor.newInstance(NO_ARGUMENTS);
+		} catch (InvocationTargetException e) {
+			Throwable target = e.getTargetException();
+			if (target instanceof Error && !(target instanceof LinkageError))
+				throw (Error) target;
+			throwException(NLS.bind(RegistryMessages.plugin_instantiateClassError, contributingBundle.getSymbolicName(), className), target);
+		} catch (Exception e) {
+			throwException(NLS.bind(RegistryMessages.plugin_instantiateClassError, contributingBundle.getSymbolicName(), className), e);
+		} catch (LinkageError e1) {
+			throwException(NLS.bind(RegistryMessages.plugin_instantiateClassError, contributingBundle.getSymbolicName(), className), e1);
+		}
+		return result;
+	}
+
+	private Constructor getCachedConstructor(Bundle bundle, String className) {
+		synchronized (constructorCache) {
+			Map constructors = (Map) constructorCache.get(new Long(bundle.getBundleId()));
+			return constructors == null ? null : (Constructor) constructors.get(className);
+		}
+	}
+
+	private int getGeneration(Bundle bundle) {
+		synchronized (constructorCache) {
+			Integer count = (Integer) unresolvedCounts.get(new Long(bundle.getBundleId()));
+			return count == null ? 0 : count.intValue();
+		}
+	}
+
+	private void cacheConstructor(Bundle bundle, String className, Constructor constructor, int generation) {
+		synchronized (constructorCache) {
+			// a bundle unresolved meanwhile, even if resolved again, has already been dropped from the cache
+			if ((bundle.getState() & RESOLVED_STATES) == 0 || getGeneration(bundle) != generation)
+				return;
+			Long bundleId = new Long(bundle.getBundleId());
+			Map constructors = (Map) constructorCache.get(bundleId);
+			if (constructors == null) {
+				constructors = new HashMap();
+				constructorCache.put(bundleId, constructors);
+			}
+			constructors.put(className, constructor);
+		}
+	}
+
+	/**
+	 * Drops the cached executable extension constructors of the given bundle.
+	 * Called when the bundle is unresolved.
+	 * 
+	 * @param bundle the bundle
+	 */
+	void bundleUnresolved(Bundle bundle) {
+		synchronized (constructorCache) {
+			Long bundleId = new Long(bundle.getBundleId());
+			constructorCache.remove(bundleId);
+			unresolvedCounts.put(bundleId, new Integer(getGeneration(bundle) + 1));
+		}
+	}
+
 	private void throwException(String message, Throwable exception) throws CoreException {
 		throw new CoreException(new Status(IStatus.ERROR, RegistryMessages.OWNER_NAME, IRegistryConstants.PLUGIN_ERROR, message, exception));
 	}